@@ -0,0 +1,79 @@
+package com.gallery.benchmark;
+
+import com.gallery.controller.LinkTemplate;
+import com.gallery.controller.PhotoController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+
+/**
+ * Measures building of HATEOAS links to pictures with a proxy per link and
+ * by expanding a single {@link LinkTemplate}, for a default sized and for
+ * the largest allowed page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LinkBuildingBenchmark {
+    @Param({"48", "500"})
+    private int links;
+
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        this.names = new String[this.links];
+        for (int i = 0; i < this.links; i++) {
+            this.names[i] = SyntheticFiles.name(i);
+        }
+    }
+
+    @Benchmark
+    public List<Link> buildLinks() {
+        final List<Link> result = new ArrayList<>(this.names.length);
+        for (String name : this.names) {
+            result.add(linkTo(methodOn(PhotoController.class).renderSinglePicture(name, null, null, null)).withRel(name));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Link> expandLinkTemplate() {
+        final LinkTemplate template = LinkTemplate.of(methodOn(PhotoController.class)
+                .renderSinglePicture(LinkTemplate.VARIABLE, null, null, null));
+        final List<Link> result = new ArrayList<>(this.names.length);
+        for (String name : this.names) {
+            result.add(template.expand(name, name));
+        }
+        return result;
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+}
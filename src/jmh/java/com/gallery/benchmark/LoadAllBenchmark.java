@@ -0,0 +1,74 @@
+package com.gallery.benchmark;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.FilePage;
+import com.gallery.service.HotFileCache;
+import com.gallery.service.IoScheduler;
+import com.gallery.service.StorageServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures listing of stored files, both as a whole with
+ * {@link StorageServiceImpl#loadAll()} and as a single gallery page.
+ * Storage is filled with empty files, as listings never read content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadAllBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    private int files;
+
+    private Path storage;
+    private StorageServiceImpl storageService;
+    private String middle;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.storage = Files.createTempDirectory("bench-storage-");
+        for (int i = 0; i < this.files; i++) {
+            Files.createFile(this.storage.resolve(SyntheticFiles.name(i)));
+        }
+        this.middle = SyntheticFiles.name(this.files / 2);
+
+        final GalleryProperties properties = SyntheticFiles.properties(this.storage);
+        this.storageService = new StorageServiceImpl(properties, new HotFileCache(properties),
+                SyntheticFiles.metrics(), new IoScheduler(properties, SyntheticFiles.metrics()));
+        this.storageService.init();
+    }
+
+    @Benchmark
+    public void loadAll(final Blackhole blackhole) {
+        this.storageService.loadAll().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public FilePage loadPage() {
+        return this.storageService.loadPage(this.middle, null, 48);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.storageService.shutdown();
+        SyntheticFiles.delete(this.storage);
+    }
+}
@@ -0,0 +1,82 @@
+package com.gallery.benchmark;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ChangeDetection;
+import com.gallery.service.HotFileCache;
+import com.gallery.service.IoScheduler;
+import com.gallery.service.StorageServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link StorageServiceImpl#loadAsResource(String)} followed by
+ * reading the whole resource, with and without the hot file cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadAsResourceBenchmark {
+    private static final int FILES = 256;
+
+    @Param({"65536"})
+    private int fileSize;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private Path source;
+    private Path storage;
+    private StorageServiceImpl storageService;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.source = Files.createTempDirectory("bench-source-");
+        this.storage = Files.createTempDirectory("bench-storage-");
+        SyntheticFiles.createTree(this.source, FILES, this.fileSize);
+
+        final GalleryProperties properties = SyntheticFiles.properties(this.storage);
+        properties.getCache().setEnabled(this.cached);
+        properties.getCache().setMaxBytes((long) FILES * this.fileSize);
+        this.storageService = new StorageServiceImpl(properties, new HotFileCache(properties),
+                SyntheticFiles.metrics(), new IoScheduler(properties, SyntheticFiles.metrics()));
+        this.storageService.init();
+        this.storageService.save(this.source, ChangeDetection.NONE);
+    }
+
+    @Benchmark
+    public long loadAsResource() throws IOException {
+        final Resource resource = this.storageService.loadAsResource(SyntheticFiles.name(this.next++ % FILES));
+        try (InputStream in = resource.getInputStream()) {
+            return StreamUtils.drain(in);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.storageService.shutdown();
+        SyntheticFiles.delete(this.source);
+        SyntheticFiles.delete(this.storage);
+    }
+}
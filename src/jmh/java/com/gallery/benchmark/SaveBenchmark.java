@@ -0,0 +1,76 @@
+package com.gallery.benchmark;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.SaveResult;
+import com.gallery.service.HotFileCache;
+import com.gallery.service.IoScheduler;
+import com.gallery.service.StorageServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link StorageServiceImpl#save(Path, ChangeDetection)} of
+ * synthetic directory trees. With {@link ChangeDetection#NONE} every file
+ * is copied again, with {@link ChangeDetection#METADATA} every file is
+ * found unchanged, which is the cost of re-importing a directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SaveBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int files;
+
+    @Param({"16384"})
+    private int fileSize;
+
+    @Param({"NONE", "METADATA"})
+    private ChangeDetection detection;
+
+    private Path source;
+    private Path storage;
+    private StorageServiceImpl storageService;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.source = Files.createTempDirectory("bench-source-");
+        this.storage = Files.createTempDirectory("bench-storage-");
+        SyntheticFiles.createTree(this.source, this.files, this.fileSize);
+
+        final GalleryProperties properties = SyntheticFiles.properties(this.storage);
+        this.storageService = new StorageServiceImpl(properties, new HotFileCache(properties),
+                SyntheticFiles.metrics(), new IoScheduler(properties, SyntheticFiles.metrics()));
+        this.storageService.init();
+        this.storageService.save(this.source, ChangeDetection.NONE);
+    }
+
+    @Benchmark
+    public SaveResult save() {
+        return this.storageService.save(this.source, this.detection);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.storageService.shutdown();
+        SyntheticFiles.delete(this.source);
+        SyntheticFiles.delete(this.storage);
+    }
+}
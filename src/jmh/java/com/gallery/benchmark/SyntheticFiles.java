@@ -0,0 +1,88 @@
+package com.gallery.benchmark;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.service.GalleryMetrics;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * The {@link SyntheticFiles} class creates directory trees and storage
+ * settings used by benchmarks.
+ */
+final class SyntheticFiles {
+    private static final int FILES_PER_DIRECTORY = 500;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private SyntheticFiles() {
+    }
+
+    /**
+     * Creates tree of png files of given size, spread over nested
+     * directories of at most {@value #FILES_PER_DIRECTORY} files each.
+     *
+     * @param root  directory to create files in.
+     * @param count number of files.
+     * @param size  size of every file in bytes.
+     * @throws IOException on error.
+     */
+    static void createTree(final Path root, final int count, final int size) throws IOException {
+        final Random random = new Random(count);
+        final byte[] content = new byte[size];
+        for (int i = 0; i < count; i++) {
+            final Path directory = root.resolve("d" + i / FILES_PER_DIRECTORY);
+            Files.createDirectories(directory);
+            random.nextBytes(content);
+            System.arraycopy(PNG_SIGNATURE, 0, content, 0, Math.min(size, PNG_SIGNATURE.length));
+            Files.write(directory.resolve(name(i)), content);
+        }
+    }
+
+    /**
+     * @param i index of the file.
+     * @return name of the file of given index.
+     */
+    static String name(final int i) {
+        return String.format("picture-%08d.png", i);
+    }
+
+    /**
+     * @param storage storage directory.
+     * @return settings of storage kept in given directory.
+     */
+    static GalleryProperties properties(final Path storage) {
+        final GalleryProperties properties = new GalleryProperties();
+        properties.getStorage().setLocation(storage.toString());
+        return properties;
+    }
+
+    /**
+     * @return metrics discarding all measurements, so benchmarks measure storage alone.
+     */
+    static GalleryMetrics metrics() {
+        return new GalleryMetrics(new CounterService() {
+            @Override
+            public void increment(final String metricName) {
+            }
+
+            @Override
+            public void decrement(final String metricName) {
+            }
+
+            @Override
+            public void reset(final String metricName) {
+            }
+        }, (metricName, value) -> {
+        });
+    }
+
+    static void delete(final Path path) {
+        if (path != null) {
+            FileSystemUtils.deleteRecursively(path.toFile());
+        }
+    }
+}
@@ -1,19 +1,38 @@
 package com.gallery;
 
+import com.gallery.config.GalleryProperties;
+import com.gallery.controller.GalleryPageCacheFilter;
+import com.gallery.controller.MetricsInterceptor;
 import com.gallery.service.DestroyService;
+import com.gallery.service.GalleryMetrics;
+import com.gallery.service.GalleryService;
 import com.gallery.service.InitService;
+import com.gallery.service.StorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
+import java.util.List;
+
 @SpringBootApplication
+@EnableConfigurationProperties(GalleryProperties.class)
 public class Application extends WebMvcConfigurerAdapter {
     private static final Logger LOG = LoggerFactory.getLogger(Application.class);
+    @Autowired
+    private GalleryMetrics metrics;
+    @Autowired
+    private GalleryProperties properties;
 
     public static void main(final String[] args) {
         LOG.info("Starting spring application...");
@@ -26,13 +45,60 @@ public class Application extends WebMvcConfigurerAdapter {
         registry.addViewController("/").setViewName("redirect:/photo");
     }
 
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(new MetricsInterceptor(this.metrics));
+    }
+
+    /**
+     * Streams response bodies, such as exported archives, on a bounded pool,
+     * so that long downloads don't hold request threads.
+     */
+    @Override
+    public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(this.streamingExecutor());
+        configurer.setDefaultTimeout(this.properties.getExport().getTimeout());
+    }
+
+    @Bean
+    ThreadPoolTaskExecutor streamingExecutor() {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(this.properties.getExport().getThreads());
+        executor.setMaxPoolSize(this.properties.getExport().getThreads());
+        executor.setQueueCapacity(this.properties.getExport().getQueueCapacity());
+        executor.setThreadNamePrefix("export-");
+        return executor;
+    }
+
+    /**
+     * Caches rendered gallery pages, if enabled, until the content they show changes.
+     */
+    @Bean
+    FilterRegistrationBean galleryPageCache(final StorageService storageService,
+                                            final GalleryService galleryService,
+                                            final GalleryProperties properties) {
+        final FilterRegistrationBean registration = new FilterRegistrationBean(new GalleryPageCacheFilter(
+                storageService, galleryService, this.metrics, properties.getPages().getCacheEntries()));
+        registration.addUrlPatterns("/photo/gallery", "/photo/gallery/wh/*",
+                "/photo/gallery/darkbackground", "/photo/gallery/original");
+        registration.setEnabled(properties.getPages().isCacheEnabled());
+        return registration;
+    }
+
+    /**
+     * Wipes server storage left by the previous run unless storage is
+     * configured as persistent, then initializes all services.
+     */
     @Bean
-    CommandLineRunner init(final InitService initService,
-                           final DestroyService destroyService) {
+    CommandLineRunner init(final List<InitService> initServices,
+                           final List<DestroyService> destroyServices,
+                           final GalleryProperties properties) {
         return (args) -> {
             LOG.info("Initializing server storage...");
-            destroyService.destroy();
-            initService.init();
+            if (!properties.getStorage().isPersistent()) {
+                destroyServices.forEach(DestroyService::destroy);
+            }
+            initServices.forEach(InitService::init);
         };
     }
 }
@@ -0,0 +1,903 @@
+package com.gallery.config;
+
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.PictureType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link GalleryProperties} class holds all externally configurable
+ * settings of the gallery, bound from the <code>gallery.*</code> namespace
+ * of <code>application.yml</code>.
+ */
+@ConfigurationProperties(prefix = "gallery")
+public class GalleryProperties {
+    private final Storage storage = new Storage();
+    private final Thumbnail thumbnail = new Thumbnail();
+    private final Tiles tiles = new Tiles();
+    private final Http http = new Http();
+    private final Cache cache = new Cache();
+    private final Paging paging = new Paging();
+    private final Pages pages = new Pages();
+    private final Jobs jobs = new Jobs();
+    private final Uploads uploads = new Uploads();
+    private final Export export = new Export();
+    private final Io io = new Io();
+
+    public Storage getStorage() {
+        return this.storage;
+    }
+
+    public Http getHttp() {
+        return this.http;
+    }
+
+    public Cache getCache() {
+        return this.cache;
+    }
+
+    public Paging getPaging() {
+        return this.paging;
+    }
+
+    public Pages getPages() {
+        return this.pages;
+    }
+
+    public Jobs getJobs() {
+        return this.jobs;
+    }
+
+    public Uploads getUploads() {
+        return this.uploads;
+    }
+
+    public Export getExport() {
+        return this.export;
+    }
+
+    public Io getIo() {
+        return this.io;
+    }
+
+    public Thumbnail getThumbnail() {
+        return this.thumbnail;
+    }
+
+    public Tiles getTiles() {
+        return this.tiles;
+    }
+
+    /**
+     * Settings of the server storage.
+     */
+    public static class Storage {
+        /**
+         * Directory in which uploaded pictures are stored.
+         */
+        private String location = "server-storage";
+
+        /**
+         * Number of files copied to storage concurrently during a single save.
+         */
+        private int ingestThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Strategy used to skip files whose stored copies are up to date.
+         */
+        private ChangeDetection changeDetection = ChangeDetection.METADATA;
+
+        /**
+         * Placement of stored files inside storage directory.
+         */
+        private Layout layout = Layout.FLAT;
+
+        /**
+         * Number of nested directory levels of the sharded layout, each
+         * holding up to 256 directories.
+         */
+        private int shardLevels = 2;
+
+        /**
+         * Size in bytes after which the packed layout starts a new pack file.
+         */
+        private long packSize = 268435456L;
+
+        /**
+         * Share of replaced content at which a full pack file of the packed
+         * layout is compacted.
+         */
+        private double packGarbageRatio = 0.5;
+
+        /**
+         * Keep stored files across restarts and load their index from the manifest.
+         */
+        private boolean persistent;
+
+        /**
+         * Number of manifest log records after which a new manifest snapshot is written.
+         */
+        private int manifestCompaction = 50000;
+
+        /**
+         * Types of pictures picked up by save, detected from leading bytes of file content.
+         */
+        private List<PictureType> acceptedTypes = new ArrayList<>(Collections.singletonList(PictureType.PNG));
+
+        /**
+         * Maximum number of found files waiting to be copied during a single
+         * save. Directory scan pauses until copying catches up.
+         */
+        private int scanQueueCapacity = 1024;
+
+        public String getLocation() {
+            return this.location;
+        }
+
+        public void setLocation(final String location) {
+            this.location = location;
+        }
+
+        public int getIngestThreads() {
+            return this.ingestThreads;
+        }
+
+        public void setIngestThreads(final int ingestThreads) {
+            this.ingestThreads = ingestThreads;
+        }
+
+        public ChangeDetection getChangeDetection() {
+            return this.changeDetection;
+        }
+
+        public void setChangeDetection(final ChangeDetection changeDetection) {
+            this.changeDetection = changeDetection;
+        }
+
+        public Layout getLayout() {
+            return this.layout;
+        }
+
+        public void setLayout(final Layout layout) {
+            this.layout = layout;
+        }
+
+        public int getShardLevels() {
+            return this.shardLevels;
+        }
+
+        public void setShardLevels(final int shardLevels) {
+            this.shardLevels = shardLevels;
+        }
+
+        public long getPackSize() {
+            return this.packSize;
+        }
+
+        public void setPackSize(final long packSize) {
+            this.packSize = packSize;
+        }
+
+        public double getPackGarbageRatio() {
+            return this.packGarbageRatio;
+        }
+
+        public void setPackGarbageRatio(final double packGarbageRatio) {
+            this.packGarbageRatio = packGarbageRatio;
+        }
+
+        public boolean isPersistent() {
+            return this.persistent;
+        }
+
+        public void setPersistent(final boolean persistent) {
+            this.persistent = persistent;
+        }
+
+        public int getManifestCompaction() {
+            return this.manifestCompaction;
+        }
+
+        public void setManifestCompaction(final int manifestCompaction) {
+            this.manifestCompaction = manifestCompaction;
+        }
+
+        public List<PictureType> getAcceptedTypes() {
+            return this.acceptedTypes;
+        }
+
+        public void setAcceptedTypes(final List<PictureType> acceptedTypes) {
+            this.acceptedTypes = acceptedTypes;
+        }
+
+        public int getScanQueueCapacity() {
+            return this.scanQueueCapacity;
+        }
+
+        public void setScanQueueCapacity(final int scanQueueCapacity) {
+            this.scanQueueCapacity = scanQueueCapacity;
+        }
+    }
+
+    /**
+     * Settings of resumable uploads.
+     */
+    public static class Uploads {
+        /**
+         * Largest size in bytes of an uploaded file.
+         */
+        private long maxSize = 50L * 1024 * 1024;
+
+        /**
+         * Number of uploads that may be in progress at the same time.
+         */
+        private int maxActive = 256;
+
+        /**
+         * Seconds after which an idle upload is dropped.
+         */
+        private long expiry = 3600;
+
+        public long getMaxSize() {
+            return this.maxSize;
+        }
+
+        public void setMaxSize(final long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxActive() {
+            return this.maxActive;
+        }
+
+        public void setMaxActive(final int maxActive) {
+            this.maxActive = maxActive;
+        }
+
+        public long getExpiry() {
+            return this.expiry;
+        }
+
+        public void setExpiry(final long expiry) {
+            this.expiry = expiry;
+        }
+    }
+
+    /**
+     * Settings of archives streamed to clients.
+     */
+    public static class Export {
+        /**
+         * Number of archives streamed at the same time, on threads apart
+         * from the ones serving requests.
+         */
+        private int threads = 2;
+
+        /**
+         * Number of archives waiting for a free thread. Further downloads are rejected.
+         */
+        private int queueCapacity = 8;
+
+        /**
+         * Time in milliseconds after which streaming of an archive is aborted.
+         */
+        private long timeout = 3600000;
+
+        public int getThreads() {
+            return this.threads;
+        }
+
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return this.queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getTimeout() {
+            return this.timeout;
+        }
+
+        public void setTimeout(final long timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    /**
+     * Settings of asynchronous import jobs.
+     */
+    public static class Jobs {
+        /**
+         * Number of imports running at the same time.
+         */
+        private int threads = 2;
+
+        /**
+         * Number of imports waiting to run. Further imports are rejected.
+         */
+        private int queueCapacity = 16;
+
+        /**
+         * Number of jobs whose status is kept after they finish.
+         */
+        private int history = 100;
+
+        public int getThreads() {
+            return this.threads;
+        }
+
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return this.queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getHistory() {
+            return this.history;
+        }
+
+        public void setHistory(final int history) {
+            this.history = history;
+        }
+    }
+
+    /**
+     * Settings of rendered gallery pages.
+     */
+    public static class Pages {
+        /**
+         * Keep rendered gallery pages in memory until the gallery changes.
+         */
+        private boolean cacheEnabled;
+
+        /**
+         * Maximum number of rendered gallery pages kept in memory.
+         */
+        private int cacheEntries = 256;
+
+        public boolean isCacheEnabled() {
+            return this.cacheEnabled;
+        }
+
+        public void setCacheEnabled(final boolean cacheEnabled) {
+            this.cacheEnabled = cacheEnabled;
+        }
+
+        public int getCacheEntries() {
+            return this.cacheEntries;
+        }
+
+        public void setCacheEntries(final int cacheEntries) {
+            this.cacheEntries = cacheEntries;
+        }
+    }
+
+    /**
+     * Settings of gallery listings.
+     */
+    public static class Paging {
+        /**
+         * Number of pictures on a gallery page.
+         */
+        private int size = 48;
+
+        /**
+         * Largest page size a client may request.
+         */
+        private int maxSize = 500;
+
+        public int getSize() {
+            return this.size;
+        }
+
+        public void setSize(final int size) {
+            this.size = size;
+        }
+
+        public int getMaxSize() {
+            return this.maxSize;
+        }
+
+        public void setMaxSize(final int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Settings of the off-heap cache of frequently requested pictures.
+     */
+    public static class Cache {
+        /**
+         * Whether pictures are cached in direct memory.
+         */
+        private boolean enabled;
+
+        /**
+         * Total size in bytes of cached content. Direct memory limit of the
+         * JVM (-XX:MaxDirectMemorySize) has to be set above this value.
+         */
+        private long maxBytes = 64L * 1024 * 1024;
+
+        /**
+         * Size in bytes above which pictures are never cached.
+         */
+        private long maxEntryBytes = 4L * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxBytes() {
+            return this.maxBytes;
+        }
+
+        public void setMaxBytes(final long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public long getMaxEntryBytes() {
+            return this.maxEntryBytes;
+        }
+
+        public void setMaxEntryBytes(final long maxEntryBytes) {
+            this.maxEntryBytes = maxEntryBytes;
+        }
+    }
+
+    /**
+     * Settings of disk access shared by pictures being served and pictures being stored.
+     */
+    public static class Io {
+        /**
+         * Maximum number of concurrent reads of stored content for serving
+         * or resizing requested pictures. Further reads wait until one of
+         * them completes.
+         */
+        private int interactiveConcurrency = 64;
+
+        /**
+         * Maximum number of concurrent reads of stored content by background
+         * work, such as preparing variants or exporting archives.
+         */
+        private int backgroundConcurrency = 2;
+
+        /**
+         * Time in milliseconds a background read waits while pictures are
+         * being served.
+         */
+        private long backgroundYield = 10;
+
+        /**
+         * Maximum number of files written to storage concurrently, by saves
+         * and completed uploads together.
+         */
+        private int ingestConcurrency = 2;
+
+        /**
+         * Bytes per second files may be written to storage at, 0 for no limit.
+         */
+        private long ingestBytesPerSecond;
+
+        /**
+         * Time in milliseconds a file waits before being written to storage
+         * while pictures are being served.
+         */
+        private long ingestYield = 50;
+
+        public int getInteractiveConcurrency() {
+            return this.interactiveConcurrency;
+        }
+
+        public void setInteractiveConcurrency(final int interactiveConcurrency) {
+            this.interactiveConcurrency = interactiveConcurrency;
+        }
+
+        public int getBackgroundConcurrency() {
+            return this.backgroundConcurrency;
+        }
+
+        public void setBackgroundConcurrency(final int backgroundConcurrency) {
+            this.backgroundConcurrency = backgroundConcurrency;
+        }
+
+        public long getBackgroundYield() {
+            return this.backgroundYield;
+        }
+
+        public void setBackgroundYield(final long backgroundYield) {
+            this.backgroundYield = backgroundYield;
+        }
+
+        public int getIngestConcurrency() {
+            return this.ingestConcurrency;
+        }
+
+        public void setIngestConcurrency(final int ingestConcurrency) {
+            this.ingestConcurrency = ingestConcurrency;
+        }
+
+        public long getIngestBytesPerSecond() {
+            return this.ingestBytesPerSecond;
+        }
+
+        public void setIngestBytesPerSecond(final long ingestBytesPerSecond) {
+            this.ingestBytesPerSecond = ingestBytesPerSecond;
+        }
+
+        public long getIngestYield() {
+            return this.ingestYield;
+        }
+
+        public void setIngestYield(final long ingestYield) {
+            this.ingestYield = ingestYield;
+        }
+    }
+
+    /**
+     * Settings of HTTP responses serving pictures.
+     */
+    public static class Http {
+        /**
+         * Time in seconds for which clients and proxies may reuse a picture
+         * without revalidating it.
+         */
+        private long cacheMaxAge = 86400;
+
+        /**
+         * Whether shared caches, such as CDNs, may store pictures.
+         */
+        private boolean cachePublic = true;
+
+        /**
+         * Whether caches must revalidate pictures once they become stale.
+         */
+        private boolean mustRevalidate;
+
+        public long getCacheMaxAge() {
+            return this.cacheMaxAge;
+        }
+
+        public void setCacheMaxAge(final long cacheMaxAge) {
+            this.cacheMaxAge = cacheMaxAge;
+        }
+
+        public boolean isCachePublic() {
+            return this.cachePublic;
+        }
+
+        public void setCachePublic(final boolean cachePublic) {
+            this.cachePublic = cachePublic;
+        }
+
+        public boolean isMustRevalidate() {
+            return this.mustRevalidate;
+        }
+
+        public void setMustRevalidate(final boolean mustRevalidate) {
+            this.mustRevalidate = mustRevalidate;
+        }
+    }
+
+    /**
+     * Settings of the on-demand thumbnail engine.
+     */
+    public static class Thumbnail {
+        /**
+         * Directory in which resized variants are cached.
+         */
+        private String location = "server-storage-variants";
+
+        /**
+         * Number of worker threads used to resize pictures.
+         */
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Number of resize tasks allowed to wait for a free worker.
+         */
+        private int queueCapacity = 256;
+
+        /**
+         * Maximum width and height of a variant that may be requested.
+         */
+        private int maxSize = 2048;
+
+        /**
+         * Trade-off between resize speed and output quality.
+         */
+        private Quality quality = Quality.BALANCED;
+
+        /**
+         * Compression quality in range [0, 1] applied to JPEG variants.
+         */
+        private float jpegQuality = 0.85f;
+
+        /**
+         * Widths of variants generated in background for every stored picture
+         * and offered to browsers through srcset.
+         */
+        private List<Integer> variantWidths = new ArrayList<>(Arrays.asList(320, 640, 1280));
+
+        /**
+         * Generate JPEG variants next to variants in the original format.
+         */
+        private boolean jpegVariants = true;
+
+        /**
+         * Number of worker threads generating variants in background.
+         */
+        private int variantThreads = 1;
+
+        /**
+         * Number of stored pictures allowed to wait for variant generation.
+         */
+        private int variantQueueCapacity = 1024;
+
+        /**
+         * Largest number of thumbnails on a single contact sheet.
+         */
+        private int sheetSize = 64;
+
+        /**
+         * Maximum width and height of a contact sheet. Fewer thumbnails are
+         * laid out on a sheet when their cells would not fit otherwise.
+         */
+        private int sheetMaxSize = 2048;
+
+        /**
+         * Maximum width and height of a thumbnail drawn from a contact sheet.
+         * Larger thumbnails are served one by one.
+         */
+        private int sheetCellMaxSize = 256;
+
+        /**
+         * Number of composed contact sheets kept on disk. Least recently
+         * served sheets are removed first and composed again on request.
+         */
+        private int sheetEntries = 256;
+
+        public String getLocation() {
+            return this.location;
+        }
+
+        public void setLocation(final String location) {
+            this.location = location;
+        }
+
+        public int getThreads() {
+            return this.threads;
+        }
+
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return this.queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getMaxSize() {
+            return this.maxSize;
+        }
+
+        public void setMaxSize(final int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Quality getQuality() {
+            return this.quality;
+        }
+
+        public void setQuality(final Quality quality) {
+            this.quality = quality;
+        }
+
+        public float getJpegQuality() {
+            return this.jpegQuality;
+        }
+
+        public void setJpegQuality(final float jpegQuality) {
+            this.jpegQuality = jpegQuality;
+        }
+
+        public List<Integer> getVariantWidths() {
+            return this.variantWidths;
+        }
+
+        public void setVariantWidths(final List<Integer> variantWidths) {
+            this.variantWidths = variantWidths;
+        }
+
+        public boolean isJpegVariants() {
+            return this.jpegVariants;
+        }
+
+        public void setJpegVariants(final boolean jpegVariants) {
+            this.jpegVariants = jpegVariants;
+        }
+
+        public int getVariantThreads() {
+            return this.variantThreads;
+        }
+
+        public void setVariantThreads(final int variantThreads) {
+            this.variantThreads = variantThreads;
+        }
+
+        public int getVariantQueueCapacity() {
+            return this.variantQueueCapacity;
+        }
+
+        public void setVariantQueueCapacity(final int variantQueueCapacity) {
+            this.variantQueueCapacity = variantQueueCapacity;
+        }
+
+        public int getSheetSize() {
+            return this.sheetSize;
+        }
+
+        public void setSheetSize(final int sheetSize) {
+            this.sheetSize = sheetSize;
+        }
+
+        public int getSheetMaxSize() {
+            return this.sheetMaxSize;
+        }
+
+        public void setSheetMaxSize(final int sheetMaxSize) {
+            this.sheetMaxSize = sheetMaxSize;
+        }
+
+        public int getSheetCellMaxSize() {
+            return this.sheetCellMaxSize;
+        }
+
+        public void setSheetCellMaxSize(final int sheetCellMaxSize) {
+            this.sheetCellMaxSize = sheetCellMaxSize;
+        }
+
+        public int getSheetEntries() {
+            return this.sheetEntries;
+        }
+
+        public void setSheetEntries(final int sheetEntries) {
+            this.sheetEntries = sheetEntries;
+        }
+    }
+
+    /**
+     * Settings of Deep Zoom tiles of pictures shown in original resolution.
+     */
+    public static class Tiles {
+        /**
+         * Directory in which cut tiles are cached.
+         */
+        private String location = "server-storage-tiles";
+
+        /**
+         * Size of a tile in pixels, not counting the overlap.
+         */
+        private int tileSize = 254;
+
+        /**
+         * Number of pixels a tile shares with each of its neighbours.
+         */
+        private int overlap = 1;
+
+        /**
+         * Number of worker threads cutting tiles.
+         */
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Number of tiles allowed to wait for a free worker.
+         */
+        private int queueCapacity = 256;
+
+        public String getLocation() {
+            return this.location;
+        }
+
+        public void setLocation(final String location) {
+            this.location = location;
+        }
+
+        public int getTileSize() {
+            return this.tileSize;
+        }
+
+        public void setTileSize(final int tileSize) {
+            this.tileSize = tileSize;
+        }
+
+        public int getOverlap() {
+            return this.overlap;
+        }
+
+        public void setOverlap(final int overlap) {
+            this.overlap = overlap;
+        }
+
+        public int getThreads() {
+            return this.threads;
+        }
+
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return this.queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * Layouts of the server storage directory.
+     */
+    public enum Layout {
+        /**
+         * Every file is stored under its own name directly in storage directory.
+         */
+        FLAT,
+        /**
+         * Content is stored once per distinct SHA-256 hash, file names are
+         * kept in the storage index.
+         */
+        CONTENT_ADDRESSED,
+        /**
+         * Every file is stored under its own name in nested directories
+         * named after the hash of the file name.
+         */
+        SHARDED,
+        /**
+         * Files are appended to large pack files and read through memory
+         * mapped slices of them, file names are kept in the storage index.
+         */
+        PACKED
+    }
+
+    /**
+     * Resize quality levels of the thumbnail engine.
+     */
+    public enum Quality {
+        /**
+         * Single nearest-neighbour pass.
+         */
+        SPEED,
+        /**
+         * Single bilinear pass.
+         */
+        BALANCED,
+        /**
+         * Repeated bilinear halving down to the target size.
+         */
+        QUALITY
+    }
+}
@@ -0,0 +1,140 @@
+package com.gallery.controller;
+
+import com.gallery.service.GalleryMetrics;
+import com.gallery.service.GalleryService;
+import com.gallery.service.StorageService;
+import com.gallery.util.GalleryNotFoundException;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.support.SessionFlashMapManager;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link GalleryPageCacheFilter} class keeps rendered gallery pages in
+ * memory and answers repeated views without invoking the controller or the
+ * template engine. Each page is stored with the version of the content it
+ * was rendered from, i.e. of the storage and of the named gallery, so it is
+ * rendered again only after that content changes. Pages carrying one-off
+ * flash attributes are neither served from nor stored to the cache.
+ */
+public class GalleryPageCacheFilter extends OncePerRequestFilter {
+    private static final String FLASH_MAPS = SessionFlashMapManager.class.getName() + ".FLASH_MAPS";
+
+    private final StorageService storageService;
+    private final GalleryService galleryService;
+    private final GalleryMetrics metrics;
+    private final Map<String, Page> pages;
+
+    /**
+     * @param storageService storage whose version invalidates pages.
+     * @param galleryService galleries whose versions invalidate pages.
+     * @param metrics        metrics to record hits and misses to.
+     * @param maxEntries     maximum number of pages kept, least recently used ones are dropped first.
+     */
+    public GalleryPageCacheFilter(final StorageService storageService, final GalleryService galleryService,
+                                  final GalleryMetrics metrics, final int maxEntries) {
+        this.storageService = storageService;
+        this.galleryService = galleryService;
+        this.metrics = metrics;
+        this.pages = new LinkedHashMap<String, Page>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Page> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain chain) throws ServletException, IOException {
+        final String version = this.versionOf(request.getParameter("gallery"));
+        if (version == null || this.hasFlashAttributes(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        final String key = request.getRequestURL()
+                .append('?').append(request.getQueryString() == null ? "" : request.getQueryString())
+                .toString();
+        final Page cached = this.get(key);
+        if (cached != null && cached.version.equals(version)) {
+            this.metrics.mark("pages.cache.hit");
+            response.setContentType(cached.contentType);
+            response.setContentLength(cached.body.length);
+            response.getOutputStream().write(cached.body);
+            return;
+        }
+
+        this.metrics.mark("pages.cache.miss");
+        final ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+        if (wrapper.getStatusCode() == HttpServletResponse.SC_OK && wrapper.getContentType() != null) {
+            this.put(key, new Page(version, wrapper.getContentType(), wrapper.getContentAsByteArray()));
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    /**
+     * @param gallery name of the gallery, may be null.
+     * @return version of content shown by the page, or null if page should not be cached.
+     */
+    private String versionOf(final String gallery) {
+        final long storage = this.storageService.getVersion();
+        if (gallery == null) {
+            return String.valueOf(storage);
+        }
+        try {
+            return storage + ":" + this.galleryService.getGallery(gallery).getVersion();
+        } catch (GalleryNotFoundException e) {
+            return null;
+        }
+    }
+
+    private boolean hasFlashAttributes(final HttpServletRequest request) {
+        final HttpSession session = request.getSession(false);
+        return session != null && !CollectionUtils.isEmpty((Collection<?>) session.getAttribute(FLASH_MAPS));
+    }
+
+    private Page get(final String key) {
+        synchronized (this.pages) {
+            return this.pages.get(key);
+        }
+    }
+
+    private void put(final String key, final Page page) {
+        synchronized (this.pages) {
+            this.pages.put(key, page);
+        }
+    }
+
+    /**
+     * Rendered page along with version of the content it shows.
+     */
+    private static final class Page {
+        private final String version;
+        private final String contentType;
+        private final byte[] body;
+
+        private Page(final String version, final String contentType, final byte[] body) {
+            this.version = version;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+}
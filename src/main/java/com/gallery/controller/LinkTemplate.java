@@ -0,0 +1,93 @@
+package com.gallery.controller;
+
+import org.springframework.hateoas.Link;
+import org.springframework.web.util.UriUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.List;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+
+/**
+ * The {@link LinkTemplate} class builds links to a controller method once
+ * and then expands them for many values of a single path variable by
+ * plain string concatenation. Building a link with
+ * {@link org.springframework.hateoas.mvc.ControllerLinkBuilder#methodOn(Class, Object...)}
+ * creates a proxy and inspects the method reflectively, which is too costly
+ * to repeat for every picture of a page.
+ */
+public final class LinkTemplate {
+    /**
+     * Value to invoke the controller method with in place of the expanded variable.
+     */
+    public static final String VARIABLE = "__variable__";
+
+    private final String prefix;
+    private final String suffix;
+
+    private LinkTemplate(final String href) {
+        final int position = href.indexOf(VARIABLE);
+        if (position < 0) {
+            throw new IllegalArgumentException("Link " + href + " does not contain template variable.");
+        }
+        this.prefix = href.substring(0, position);
+        this.suffix = href.substring(position + VARIABLE.length());
+    }
+
+    /**
+     * Builds template against the current request.
+     *
+     * @param invocation result of calling a method on a controller proxy
+     *                   with {@link #VARIABLE} as value of the expanded variable.
+     * @return link template.
+     */
+    public static LinkTemplate of(final Object invocation) {
+        return new LinkTemplate(linkTo(invocation).toUri().toString());
+    }
+
+    /**
+     * @param value value of the path variable.
+     * @return URI with encoded value in place of the variable.
+     */
+    public String expand(final String value) {
+        try {
+            return this.prefix + UriUtils.encodePathSegment(value, "UTF-8") + this.suffix;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Query values are encoded as form parameters, so the URI may be
+     * placed in an unquoted CSS url() as well.
+     *
+     * @param value     value of the path variable.
+     * @param parameter name of a query parameter.
+     * @param values    values of the query parameter.
+     * @return URI with encoded value in place of the variable followed by
+     * the query parameter repeated for each of the values.
+     */
+    public String expand(final String value, final String parameter, final List<String> values) {
+        final StringBuilder href = new StringBuilder(this.expand(value));
+        char separator = this.suffix.indexOf('?') < 0 ? '?' : '&';
+        try {
+            for (String each : values) {
+                href.append(separator).append(parameter).append('=').append(URLEncoder.encode(each, "UTF-8"));
+                separator = '&';
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return href.toString();
+    }
+
+    /**
+     * @param value value of the path variable.
+     * @param rel   relation of the link.
+     * @return link with encoded value in place of the variable.
+     */
+    public Link expand(final String value, final String rel) {
+        return new Link(this.expand(value), rel);
+    }
+}
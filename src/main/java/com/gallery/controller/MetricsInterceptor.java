@@ -0,0 +1,44 @@
+package com.gallery.controller;
+
+import com.gallery.service.GalleryMetrics;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The {@link MetricsInterceptor} class records latency and response
+ * statuses of every controller endpoint, named after its handler method,
+ * e.g. <code>timer.http.PhotoController.renderSinglePicture</code>.
+ */
+public class MetricsInterceptor extends HandlerInterceptorAdapter {
+    private static final String START = MetricsInterceptor.class.getName() + ".START";
+
+    private final GalleryMetrics metrics;
+
+    public MetricsInterceptor(final GalleryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+                             final Object handler) {
+        request.setAttribute(START, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+                                final Object handler, final Exception ex) {
+        final Object start = request.getAttribute(START);
+        if (!(handler instanceof HandlerMethod) || start == null) {
+            return;
+        }
+
+        final HandlerMethod method = (HandlerMethod) handler;
+        final String name = "http." + method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        this.metrics.time(name, (Long) start);
+        this.metrics.increment(name + ".status." + response.getStatus());
+    }
+}
@@ -0,0 +1,316 @@
+package com.gallery.controller;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.ContactSheet;
+import com.gallery.model.ContactSheetResource;
+import com.gallery.model.FilePage;
+import com.gallery.model.Gallery;
+import com.gallery.model.ImportJob;
+import com.gallery.model.ImportStatus;
+import com.gallery.model.PictureOrder;
+import com.gallery.model.PictureSort;
+import com.gallery.model.PictureResource;
+import com.gallery.model.StoredFile;
+import com.gallery.model.Upload;
+import com.gallery.model.UploadStatus;
+import com.gallery.service.GalleryService;
+import com.gallery.service.ImportService;
+import com.gallery.service.StorageService;
+import com.gallery.service.ThumbnailService;
+import com.gallery.service.UploadService;
+import com.gallery.util.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+
+/**
+ * The {@link PhotoApiController} class exposes stored pictures as JSON
+ * with hypermedia links. Listings are paged by cursors, which are carried
+ * by the next and prev links of each page. Imports are started as background
+ * jobs whose progress can be polled and which can be cancelled. Uploads are
+ * streamed into storage in resumable parts, tracked by the Upload-Offset header.
+ */
+@RestController
+@RequestMapping("/photo/api")
+public class PhotoApiController {
+    private static final Logger LOG = LoggerFactory.getLogger(PhotoApiController.class);
+    private static final int THUMBNAIL_RESOLUTION = 200;
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    private StorageService storageService;
+    private GalleryService galleryService;
+    private ImportService importService;
+    private UploadService uploadService;
+    private ThumbnailService thumbnailService;
+    private int pageSize;
+    private int maxPageSize;
+
+    @Autowired
+    public PhotoApiController(final StorageService storageService,
+                              final GalleryService galleryService,
+                              final ImportService importService,
+                              final UploadService uploadService,
+                              final ThumbnailService thumbnailService,
+                              final GalleryProperties properties) {
+        this.storageService = storageService;
+        this.galleryService = galleryService;
+        this.importService = importService;
+        this.uploadService = uploadService;
+        this.thumbnailService = thumbnailService;
+        this.pageSize = properties.getPaging().getSize();
+        this.maxPageSize = properties.getPaging().getMaxSize();
+    }
+
+    /**
+     * Lists a page of stored pictures, or of pictures of the named gallery.
+     * Pictures are listed by name unless sorted by another attribute, e.g.
+     * <code>sort=-width</code>, or filtered by minimal dimensions or media
+     * type, in which case only the next page is linked.
+     */
+    @RequestMapping(value = "/pictures", method = RequestMethod.GET)
+    public Resources<PictureResource> listPictures(final @RequestParam(required = false) String gallery,
+                                                   final @RequestParam(required = false) String after,
+                                                   final @RequestParam(required = false) String before,
+                                                   final @RequestParam(required = false) Integer size,
+                                                   final @RequestParam(required = false) String sort,
+                                                   final @RequestParam(required = false) Integer minWidth,
+                                                   final @RequestParam(required = false) Integer minHeight,
+                                                   final @RequestParam(required = false) String type) {
+        final int limit = size == null ? this.pageSize : Math.max(1, Math.min(size, this.maxPageSize));
+        final boolean query = sort != null || minWidth != null || minHeight != null || type != null;
+        final FilePage page;
+        if (query) {
+            page = this.storageService.loadPage(this.filterOf(gallery, minWidth, minHeight, type),
+                    this.orderOf(sort), after, limit);
+        } else {
+            page = gallery == null
+                    ? this.storageService.loadPage(after, before, limit)
+                    : this.galleryService.loadPage(gallery, after, before, limit);
+        }
+        LOG.debug("Listing pictures of {} after {} before {} sorted by {} : {}", gallery, after, before, sort, page);
+
+        final LinkTemplate self = LinkTemplate.of(methodOn(PhotoController.class)
+                .renderSinglePicture(LinkTemplate.VARIABLE, null, null, null));
+        final LinkTemplate thumbnail = LinkTemplate.of(methodOn(PhotoController.class)
+                .renderThumbnail(THUMBNAIL_RESOLUTION, THUMBNAIL_RESOLUTION, LinkTemplate.VARIABLE, null));
+        final List<PictureResource> pictures = page.getFiles().stream()
+                .map(file -> this.toResource(file, self, thumbnail))
+                .collect(Collectors.toList());
+
+        final List<Link> links = new ArrayList<>();
+        links.add(linkTo(methodOn(PhotoApiController.class)
+                .listPictures(gallery, after, before, limit, sort, minWidth, minHeight, type)).withSelfRel());
+        if (page.hasPrevious() && !query) {
+            links.add(linkTo(methodOn(PhotoApiController.class)
+                    .listPictures(gallery, null, page.getPreviousCursor(), limit, null, null, null, null))
+                    .withRel(Link.REL_PREVIOUS));
+        }
+        if (page.hasNext()) {
+            links.add(linkTo(methodOn(PhotoApiController.class)
+                    .listPictures(gallery, page.getNextCursor(), null, limit, sort, minWidth, minHeight, type))
+                    .withRel(Link.REL_NEXT));
+        }
+        return new Resources<>(pictures, links);
+    }
+
+    /**
+     * @return filter accepting pictures of the gallery, if named, of at
+     * least given dimensions and of media type included in given one.
+     */
+    private Predicate<StoredFile> filterOf(final String gallery, final Integer minWidth, final Integer minHeight,
+                                           final String type) {
+        Predicate<StoredFile> filter = file -> true;
+        if (gallery != null) {
+            final Gallery snapshot = this.galleryService.getGallery(gallery);
+            filter = filter.and(file -> snapshot.contains(file.getName()));
+        }
+        if (minWidth != null) {
+            filter = filter.and(file -> file.getWidth() >= minWidth);
+        }
+        if (minHeight != null) {
+            filter = filter.and(file -> file.getHeight() >= minHeight);
+        }
+        if (type != null) {
+            final MediaType mediaType;
+            try {
+                mediaType = MediaType.parseMediaType(type);
+            } catch (InvalidMediaTypeException e) {
+                throw new StorageException("Invalid media type " + type, e);
+            }
+            filter = filter.and(file -> mediaType.includes(MediaType.parseMediaType(file.getContentType())));
+        }
+        return filter;
+    }
+
+    private PictureSort orderOf(final String sort) {
+        if (sort == null) {
+            return PictureOrder.NAME.comparator(false);
+        }
+        try {
+            return PictureOrder.parse(sort);
+        } catch (IllegalArgumentException e) {
+            throw new StorageException("Unknown sort order " + sort, e);
+        }
+    }
+
+    /**
+     * Lays thumbnails of a page of pictures out on contact sheets. Each sheet
+     * links to its picture and maps every picture to the offset of its cell,
+     * so a client fetches a page of thumbnails in a few requests.
+     */
+    @RequestMapping(value = "/sheets", method = RequestMethod.GET)
+    public Resources<ContactSheetResource> listContactSheets(final @RequestParam(required = false) String gallery,
+                                                             final @RequestParam(required = false) String after,
+                                                             final @RequestParam(required = false) String before,
+                                                             final @RequestParam(required = false) Integer size,
+                                                             final @RequestParam(required = false) Integer width,
+                                                             final @RequestParam(required = false) Integer height) {
+        final int limit = size == null ? this.pageSize : Math.max(1, Math.min(size, this.maxPageSize));
+        final FilePage page = gallery == null
+                ? this.storageService.loadPage(after, before, limit)
+                : this.galleryService.loadPage(gallery, after, before, limit);
+        final int cellWidth = width == null ? THUMBNAIL_RESOLUTION : width;
+        final int cellHeight = height == null ? THUMBNAIL_RESOLUTION : height;
+        final List<ContactSheet> sheets = this.thumbnailService.describeContactSheets(page.getFiles(),
+                cellWidth, cellHeight);
+
+        final LinkTemplate image = LinkTemplate.of(methodOn(PhotoController.class)
+                .renderContactSheet(cellWidth, cellHeight, LinkTemplate.VARIABLE, null, null));
+        final List<ContactSheetResource> resources = new ArrayList<>();
+        for (ContactSheet sheet : sheets) {
+            final ContactSheetResource resource = new ContactSheetResource(sheet);
+            resource.add(new Link(image.expand(sheet.getKey(), "picture", sheet.getPictures()), "image"));
+            resources.add(resource);
+        }
+        return new Resources<>(resources, linkTo(methodOn(PhotoApiController.class)
+                .listContactSheets(gallery, after, before, limit, width, height)).withSelfRel());
+    }
+
+    /**
+     * Lists names of all galleries.
+     */
+    @RequestMapping(value = "/galleries", method = RequestMethod.GET)
+    public List<String> listGalleries() {
+        return this.galleryService.getGalleryNames();
+    }
+
+    /**
+     * Starts importing pictures in background, optionally into the named gallery.
+     *
+     * @return 202 with status of the scheduled job and its location.
+     */
+    @RequestMapping(value = "/imports", method = RequestMethod.POST)
+    public ResponseEntity<ImportStatus> startImport(final @RequestParam String path,
+                                                    final @RequestParam(required = false) ChangeDetection detection,
+                                                    final @RequestParam(required = false) String gallery) {
+        final ImportStatus status = this.toStatus(this.importService.submit(Paths.get(path), detection, gallery));
+        return ResponseEntity.accepted()
+                .location(URI.create(status.getId().getHref()))
+                .body(status);
+    }
+
+    @RequestMapping(value = "/imports/{jobId}", method = RequestMethod.GET)
+    public ImportStatus getImport(final @PathVariable String jobId) {
+        return this.toStatus(this.importService.getJob(jobId));
+    }
+
+    @RequestMapping(value = "/imports/{jobId}", method = RequestMethod.DELETE)
+    public ImportStatus cancelImport(final @PathVariable String jobId) {
+        return this.toStatus(this.importService.cancel(jobId));
+    }
+
+    /**
+     * Starts resumable upload of a file of declared length. Content is then
+     * sent with one or more PATCH requests to the returned location.
+     *
+     * @return 201 with status of the upload and its location.
+     */
+    @RequestMapping(value = "/uploads", method = RequestMethod.POST)
+    public ResponseEntity<UploadStatus> startUpload(final @RequestParam String name,
+                                                    final @RequestParam long length) {
+        final UploadStatus status = this.toStatus(this.uploadService.create(name, length));
+        return ResponseEntity.created(URI.create(status.getId().getHref()))
+                .header(UPLOAD_OFFSET, String.valueOf(status.getOffset()))
+                .body(status);
+    }
+
+    /**
+     * Answers with number of bytes received so far, so client can resume.
+     */
+    @RequestMapping(value = "/uploads/{uploadId}", method = RequestMethod.GET)
+    public ResponseEntity<UploadStatus> getUpload(final @PathVariable String uploadId) {
+        final UploadStatus status = this.toStatus(this.uploadService.get(uploadId));
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(status.getOffset()))
+                .body(status);
+    }
+
+    /**
+     * Streams request body, plain or chunked, into the upload at given offset.
+     */
+    @RequestMapping(value = "/uploads/{uploadId}", method = RequestMethod.PATCH)
+    public ResponseEntity<UploadStatus> writeUpload(final @PathVariable String uploadId,
+                                                    final @RequestHeader(UPLOAD_OFFSET) long offset,
+                                                    final InputStream body) {
+        final UploadStatus status = this.toStatus(this.uploadService.write(uploadId, offset, body));
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(status.getOffset()))
+                .body(status);
+    }
+
+    @RequestMapping(value = "/uploads/{uploadId}", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> abortUpload(final @PathVariable String uploadId) {
+        this.uploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private UploadStatus toStatus(final Upload upload) {
+        final UploadStatus status = new UploadStatus(upload);
+        status.add(linkTo(methodOn(PhotoApiController.class).getUpload(upload.getId())).withSelfRel());
+        if (upload.isComplete()) {
+            status.add(linkTo(methodOn(PhotoController.class)
+                    .renderSinglePicture(upload.getStored().getName(), null, null, null)).withRel("picture"));
+        }
+        return status;
+    }
+
+    private ImportStatus toStatus(final ImportJob job) {
+        final ImportStatus status = new ImportStatus(job);
+        status.add(linkTo(methodOn(PhotoApiController.class).getImport(job.getId())).withSelfRel());
+        if (job.getGallery() != null) {
+            status.add(linkTo(methodOn(PhotoApiController.class)
+                    .listPictures(job.getGallery(), null, null, null, null, null, null, null)).withRel("gallery"));
+        }
+        return status;
+    }
+
+    private PictureResource toResource(final StoredFile file, final LinkTemplate self, final LinkTemplate thumbnail) {
+        final PictureResource resource = new PictureResource(file);
+        resource.add(self.expand(file.getName(), Link.REL_SELF));
+        resource.add(thumbnail.expand(file.getName(), "thumbnail"));
+        return resource;
+    }
+}
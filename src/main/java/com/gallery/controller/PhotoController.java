@@ -1,26 +1,62 @@
 package com.gallery.controller;
 
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.ContactSheet;
+import com.gallery.model.FilePage;
+import com.gallery.model.ImportJob;
+import com.gallery.model.StoredFile;
+import com.gallery.model.TilePyramid;
+import com.gallery.service.ExportService;
+import com.gallery.service.GalleryService;
+import com.gallery.service.ImportService;
+import com.gallery.service.ScheduledResource;
 import com.gallery.service.StorageService;
+import com.gallery.service.ThumbnailService;
+import com.gallery.service.TileService;
+import com.gallery.util.StorageException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.hateoas.Link;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.HtmlUtils;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
 @Controller
@@ -29,13 +65,35 @@ public class PhotoController {
     private static final Logger LOG = LoggerFactory.getLogger(PhotoController.class);
     private static final int DEFAULT_RESOLUTION = 200;
 
-    private List<Link> links;
     private StorageService storageService;
+    private GalleryService galleryService;
+    private ImportService importService;
+    private ThumbnailService thumbnailService;
+    private TileService tileService;
+    private ExportService exportService;
+    private CacheControl cacheControl;
+    private int pageSize;
+    private int maxThumbnailSize;
+    private RangeResponseWriter rangeResponseWriter;
 
     @Autowired
-    public PhotoController(final StorageService storageService) {
+    public PhotoController(final StorageService storageService,
+                           final ThumbnailService thumbnailService,
+                           final TileService tileService,
+                           final ImportService importService,
+                           final GalleryService galleryService,
+                           final ExportService exportService,
+                           final GalleryProperties properties) {
         this.storageService = storageService;
-        this.links = new ArrayList<>();
+        this.galleryService = galleryService;
+        this.importService = importService;
+        this.thumbnailService = thumbnailService;
+        this.tileService = tileService;
+        this.exportService = exportService;
+        this.cacheControl = this.cacheControlOf(properties.getHttp());
+        this.rangeResponseWriter = new RangeResponseWriter();
+        this.pageSize = properties.getPaging().getSize();
+        this.maxThumbnailSize = properties.getThumbnail().getMaxSize();
     }
 
     @RequestMapping(method = RequestMethod.GET)
@@ -44,36 +102,245 @@ public class PhotoController {
         return this.getDefaultHomeModel();
     }
 
+    /**
+     * Starts importing pictures in background and redirects to gallery page
+     * right away. Progress of the import is available from {@link PhotoApiController}.
+     * If gallery name is given, imported pictures are added to that gallery
+     * and the redirect leads to it.
+     */
     @RequestMapping(method = RequestMethod.POST)
-    public String renderGalleryPageWithUploadedPictures(final @RequestParam String path) {
-        this.storageService.save(Paths.get(path));
-
-        this.links = this.storageService.loadAll()
-                .map(p -> linkTo(methodOn(PhotoController.class)
-                        .renderSinglePicture(p.getFileName().toString()))
-                        .withRel(p.getFileName().toString()))
-                .collect(Collectors.toList());
+    public String renderGalleryPageWithUploadedPictures(final @RequestParam String path,
+                                                        final @RequestParam(required = false) ChangeDetection detection,
+                                                        final @RequestParam(required = false) String gallery,
+                                                        final RedirectAttributes attributes) {
+        final String name = StringUtils.hasText(gallery) ? gallery : null;
+        final ImportJob job = this.importService.submit(Paths.get(path), detection, name);
+        attributes.addFlashAttribute("job", job.getId());
+        if (name != null) {
+            attributes.addAttribute("gallery", name);
+        }
 
         LOG.info("Redirecting to gallery-page...");
         return "redirect:/photo/gallery";
     }
 
     @RequestMapping(value = "/gallery", method = RequestMethod.GET)
-    public ModelAndView renderGalleryPage() {
+    public ModelAndView renderGalleryPage(final @RequestParam(required = false) String gallery,
+                                          final @RequestParam(required = false) String after,
+                                          final @RequestParam(required = false) String before) {
         LOG.info("Rendering gallery page ...");
-        return this.getDefaultGalleryModel();
+        return this.getDefaultGalleryModel(gallery, after, before, DEFAULT_RESOLUTION, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Streams ZIP archive of all stored pictures, or of pictures of the named
+     * gallery, optionally only those matching a glob pattern. The archive is
+     * written on the streaming pool, releasing the request thread.
+     */
+    @RequestMapping(value = "/gallery/export.zip", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportGallery(final @RequestParam(required = false) String gallery,
+                                                               final @RequestParam(required = false) String match) {
+        final String name = StringUtils.hasText(gallery) ? gallery : null;
+        final ExportService.ArchiveWriter archive =
+                this.exportService.exportZip(name, StringUtils.hasText(match) ? match : null);
+
+        LOG.info("Exporting {} ...", name == null ? "all pictures" : name);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        this.attachmentOf((name == null ? "gallery" : name) + ".zip"))
+                .body(archive::writeTo);
     }
 
+    /**
+     * Serves the original picture, or its variant of requested width in the
+     * most compact format the client accepts. Stored content whose file is
+     * not exposed, as its reads have to be scheduled, is copied by
+     * {@link ScheduledResource} chunk by chunk.
+     */
     @RequestMapping(value = "/gallery/picture/{filename:.+}", method = RequestMethod.GET)
     @ResponseBody
-    public ResponseEntity<Resource> renderSinglePicture(final @PathVariable String filename) {
-        return ResponseEntity.ok(this.storageService.loadAsResource(filename));
+    public ResponseEntity<Resource> renderSinglePicture(final @PathVariable String filename,
+                                                        final @RequestParam(required = false) Integer w,
+                                                        final ServletWebRequest request,
+                                                        final HttpServletResponse response) {
+        final StoredFile file = this.storageService.loadMetadata(filename);
+        if (w != null) {
+            return this.renderVariant(file, w, request, response);
+        }
+        final String eTag = this.quote(this.eTagOf(file));
+        if (request.checkNotModified(eTag, file.getLastModified())) {
+            return this.notModified();
+        }
+
+        final Resource resource = this.storageService.loadAsResource(filename);
+        final HttpHeaders headers = this.headersOf(file, eTag, file.getContentType());
+        final Path path = this.pathOf(resource);
+        try {
+            if (path != null) {
+                this.rangeResponseWriter.write(request.getRequest(), response, headers, path, file.getSize());
+            } else if (resource instanceof ScheduledResource) {
+                this.rangeResponseWriter.write(request.getRequest(), response, headers,
+                        (ScheduledResource) resource, file.getSize());
+            } else {
+                return new ResponseEntity<>(resource, headers, HttpStatus.OK);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serve file " + filename, e);
+        }
+        return null;
+    }
+
+    /**
+     * Picks variant format by quality the client assigns to its media type
+     * in the Accept header, preferring more compact formats on ties. If no
+     * format is acceptable the original one is served.
+     */
+    private ResponseEntity<Resource> renderVariant(final StoredFile file, final int width,
+                                                   final ServletWebRequest request,
+                                                   final HttpServletResponse response) {
+        final List<MediaType> accepted = this.acceptedTypesOf(request.getHeader(HttpHeaders.ACCEPT));
+        final List<String> formats = this.thumbnailService.getVariantFormats(file.getName());
+        String format = formats.get(formats.size() - 1);
+        double best = 0;
+        for (String candidate : formats) {
+            final double quality = this.qualityOf(MediaType.parseMediaType(this.mediaTypeOf(candidate)), accepted);
+            if (quality > best) {
+                format = candidate;
+                best = quality;
+            }
+        }
+
+        final String eTag = this.quote(this.eTagOf(file) + "-" + width + "w." + format);
+        if (request.checkNotModified(eTag, file.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .cacheControl(this.cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(null);
+        }
+
+        final Resource resource = this.thumbnailService.loadVariant(file.getName(), width, format);
+        final HttpHeaders headers = this.headersOf(file, eTag, this.mediaTypeOf(format));
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT));
+        try {
+            final Path path = resource.getFile().toPath();
+            this.rangeResponseWriter.write(request.getRequest(), response, headers, path, Files.size(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serve variant of file " + file.getName(), e);
+        }
+        return null;
+    }
+
+    private List<MediaType> acceptedTypesOf(final String accept) {
+        try {
+            return StringUtils.hasText(accept)
+                    ? MediaType.parseMediaTypes(accept)
+                    : Collections.singletonList(MediaType.ALL);
+        } catch (InvalidMediaTypeException e) {
+            return Collections.singletonList(MediaType.ALL);
+        }
+    }
+
+    private double qualityOf(final MediaType type, final List<MediaType> accepted) {
+        double quality = 0;
+        for (MediaType candidate : accepted) {
+            if (candidate.includes(type)) {
+                quality = Math.max(quality, candidate.getQualityValue());
+            }
+        }
+        return quality;
+    }
+
+    private String mediaTypeOf(final String format) {
+        return "jpg".equals(format) || "jpeg".equals(format) ? MediaType.IMAGE_JPEG_VALUE : "image/" + format;
+    }
+
+    @RequestMapping(value = "/gallery/thumbnail/{width}x{height}/{filename:.+}", method = RequestMethod.GET)
+    @ResponseBody
+    public ResponseEntity<Resource> renderThumbnail(final @PathVariable int width,
+                                                    final @PathVariable int height,
+                                                    final @PathVariable String filename,
+                                                    final WebRequest request) {
+        final StoredFile file = this.storageService.loadMetadata(filename);
+        return this.conditionalResponse(request, file, this.eTagOf(file) + "-" + width + "x" + height,
+                file.getContentType(), () -> this.thumbnailService.loadThumbnail(filename, width, height));
+    }
+
+    /**
+     * Serves contact sheet of gallery page thumbnails. Sheet content never
+     * changes under its key, so the key is its entity tag. Cell size and
+     * pictures are part of the link, so the sheet can be composed again
+     * whenever it is no longer cached.
+     */
+    @RequestMapping(value = "/gallery/sheets/{width}x{height}/{key:[0-9a-f]+}.jpg", method = RequestMethod.GET)
+    @ResponseBody
+    public ResponseEntity<Resource> renderContactSheet(final @PathVariable int width,
+                                                       final @PathVariable int height,
+                                                       final @PathVariable String key,
+                                                       final @RequestParam(value = "picture", required = false)
+                                                               List<String> pictures,
+                                                       final WebRequest request) {
+        final String eTag = this.quote(key);
+        if (request.checkNotModified(eTag)) {
+            return this.notModified();
+        }
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setETag(eTag);
+        headers.setCacheControl(this.cacheControl.getHeaderValue());
+        headers.setContentType(MediaType.IMAGE_JPEG);
+        return new ResponseEntity<>(this.thumbnailService.loadContactSheet(key, width, height,
+                pictures == null ? Collections.emptyList() : pictures), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Describes Deep Zoom pyramid of the picture, so that viewers request
+     * only tiles of the visible area at the displayed scale.
+     */
+    @RequestMapping(value = "/gallery/tiles/{filename:.+}.dzi", method = RequestMethod.GET)
+    @ResponseBody
+    public ResponseEntity<String> renderTilePyramid(final @PathVariable String filename,
+                                                    final WebRequest request) {
+        final StoredFile file = this.storageService.loadMetadata(filename);
+        final String eTag = this.quote(this.eTagOf(file) + "-dzi");
+        if (request.checkNotModified(eTag, file.getLastModified())) {
+            return this.notModified();
+        }
+        return new ResponseEntity<>(this.dziOf(this.tileService.loadPyramid(filename)),
+                this.headersOf(file, eTag, MediaType.APPLICATION_XML_VALUE), HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/gallery/tiles/{filename:.+}_files/{level:\\d+}/{column:\\d+}_{row:\\d+}.{format:[a-z]+}",
+            method = RequestMethod.GET)
+    @ResponseBody
+    public ResponseEntity<Resource> renderTile(final @PathVariable String filename,
+                                               final @PathVariable int level,
+                                               final @PathVariable int column,
+                                               final @PathVariable int row,
+                                               final @PathVariable String format,
+                                               final WebRequest request) {
+        final StoredFile file = this.storageService.loadMetadata(filename);
+        return this.conditionalResponse(request, file, this.eTagOf(file) + "-" + level + "-" + column + "_" + row,
+                file.getContentType(), () -> this.tileService.loadTile(filename, level, column, row, format));
+    }
+
+    private String dziOf(final TilePyramid pyramid) {
+        return String.format("<?xml version=\"1.0\" encoding=\"UTF-8\"?>%n"
+                        + "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\""
+                        + " TileSize=\"%d\" Overlap=\"%d\" Format=\"%s\">%n"
+                        + "    <Size Width=\"%d\" Height=\"%d\"/>%n"
+                        + "</Image>%n",
+                pyramid.getTileSize(), pyramid.getOverlap(), HtmlUtils.htmlEscape(pyramid.getFormat()),
+                pyramid.getWidth(), pyramid.getHeight());
     }
 
     @RequestMapping(value = "/gallery/wh/{width}x{height}", method = RequestMethod.GET)
     public ModelAndView resizePicturesOnGalleryPage(final @PathVariable String width,
-                                                    final @PathVariable String height) {
-        final ModelAndView model = this.getDefaultGalleryModel();
+                                                    final @PathVariable String height,
+                                                    final @RequestParam(required = false) String gallery,
+                                                    final @RequestParam(required = false) String after,
+                                                    final @RequestParam(required = false) String before) {
+        final ModelAndView model = this.getDefaultGalleryModel(gallery, after, before,
+                this.sizeOf(width), this.sizeOf(height));
 
         model.addObject("width", width);
         model.addObject("height", height);
@@ -84,8 +351,11 @@ public class PhotoController {
     }
 
     @RequestMapping(value = "/gallery/darkbackground", method = RequestMethod.GET)
-    public ModelAndView renderGalleryPageWithBlackBackground() {
-        final ModelAndView model = this.getDefaultGalleryModel();
+    public ModelAndView renderGalleryPageWithBlackBackground(final @RequestParam(required = false) String gallery,
+                                                             final @RequestParam(required = false) String after,
+                                                             final @RequestParam(required = false) String before) {
+        final ModelAndView model = this.getDefaultGalleryModel(gallery, after, before,
+                DEFAULT_RESOLUTION, DEFAULT_RESOLUTION);
 
         LOG.info("Applying dark theme...");
 
@@ -95,8 +365,11 @@ public class PhotoController {
     }
 
     @RequestMapping(value = "/gallery/original", method = RequestMethod.GET)
-    public ModelAndView renderGalleryPageWithPicturesInOriginalResolution() {
-        final ModelAndView model = this.getDefaultGalleryModel();
+    public ModelAndView renderGalleryPageWithPicturesInOriginalResolution(
+            final @RequestParam(required = false) String gallery,
+            final @RequestParam(required = false) String after,
+            final @RequestParam(required = false) String before) {
+        final ModelAndView model = this.getDefaultGalleryModel(gallery, after, before, null, null);
 
         LOG.trace("Resizing pictures to its original resolution...");
 
@@ -105,10 +378,125 @@ public class PhotoController {
         return model;
     }
 
-    private ModelAndView getDefaultGalleryModel() {
+    /**
+     * Answers with 304 if client already holds current version of the file,
+     * so that neither the file nor its variant has to be read, otherwise
+     * answers with the loaded resource. Both responses carry validators and
+     * configured caching policy.
+     *
+     * @param request  current request.
+     * @param file     attributes of the requested file.
+     * @param eTag        strong entity tag of the response body.
+     * @param contentType media type of the response body.
+     * @param resource    loads response body.
+     * @return response entity.
+     */
+    private ResponseEntity<Resource> conditionalResponse(final WebRequest request, final StoredFile file,
+                                                         final String eTag, final String contentType,
+                                                         final Supplier<Resource> resource) {
+        final String quotedETag = this.quote(eTag);
+        if (request.checkNotModified(quotedETag, file.getLastModified())) {
+            return this.notModified();
+        }
+        return new ResponseEntity<>(resource.get(), this.headersOf(file, quotedETag, contentType), HttpStatus.OK);
+    }
+
+    private <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(this.cacheControl)
+                .body(null);
+    }
+
+    private HttpHeaders headersOf(final StoredFile file, final String quotedETag, final String contentType) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setETag(quotedETag);
+        headers.setLastModified(file.getLastModified());
+        headers.setCacheControl(this.cacheControl.getHeaderValue());
+        headers.setContentType(MediaType.parseMediaType(contentType));
+        return headers;
+    }
+
+    /**
+     * @param resource loaded resource.
+     * @return path of the file backing provided resource, or null if resource is not a file.
+     */
+    private Path pathOf(final Resource resource) {
+        try {
+            return resource.getFile().toPath();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String quote(final String eTag) {
+        return "\"" + eTag + "\"";
+    }
+
+    /**
+     * @param file attributes of the stored file.
+     * @return content hash if known, otherwise value derived from size and modification time.
+     */
+    private String eTagOf(final StoredFile file) {
+        return file.getHash() != null
+                ? file.getHash()
+                : Long.toHexString(file.getSize()) + "-" + Long.toHexString(file.getLastModified());
+    }
+
+    private CacheControl cacheControlOf(final GalleryProperties.Http http) {
+        CacheControl cacheControl = CacheControl.maxAge(http.getCacheMaxAge(), TimeUnit.SECONDS);
+        if (http.isCachePublic()) {
+            cacheControl = cacheControl.cachePublic();
+        } else {
+            cacheControl = cacheControl.cachePrivate();
+        }
+        if (http.isMustRevalidate()) {
+            cacheControl = cacheControl.mustRevalidate();
+        }
+        return cacheControl;
+    }
+
+    /**
+     * Builds gallery model holding a single page of pictures, so rendering
+     * cost is bounded by configured page size. Picture links are expanded
+     * from a single {@link LinkTemplate}. Everything the page shows is
+     * built per request, from an immutable snapshot of the named gallery or
+     * from the whole storage if no gallery is named.
+     *
+     * Thumbnails of the page are drawn from contact sheets, so the page
+     * takes a request per sheet instead of one per picture. Dimensions of
+     * pictures known from the index let the page reserve their space.
+     *
+     * @param gallery name of the gallery, may be null.
+     * @param after   cursor of the next page, may be null.
+     * @param before  cursor of the previous page, may be null.
+     * @param width   width of thumbnails, or null if the page shows no thumbnails.
+     * @param height  height of thumbnails, or null if the page shows no thumbnails.
+     * @return gallery model.
+     */
+    private ModelAndView getDefaultGalleryModel(final String gallery, final String after, final String before,
+                                                final Integer width, final Integer height) {
         final ModelAndView model = new ModelAndView("index");
+        final FilePage page = gallery == null
+                ? this.storageService.loadPage(after, before, this.pageSize)
+                : this.galleryService.loadPage(gallery, after, before, this.pageSize);
+        final LinkTemplate picture = LinkTemplate.of(methodOn(PhotoController.class)
+                .renderSinglePicture(LinkTemplate.VARIABLE, null, null, null));
+        final List<Link> links = page.getFiles().stream()
+                .map(file -> picture.expand(file.getName(), file.getName()))
+                .collect(Collectors.toList());
+        final Map<String, String> srcsets = links.stream()
+                .collect(Collectors.toMap(Link::getRel, this::srcsetOf));
 
         model.addObject("links", links);
+        model.addObject("pictures", page.getFiles().stream()
+                .collect(Collectors.toMap(StoredFile::getName, Function.identity())));
+        model.addObject("srcsets", srcsets);
+        model.addObject("thumbnailSrcsets", this.thumbnailSrcsetsOf(page.getFiles(), width, height));
+        model.addObject("sprites", this.spritesOf(page.getFiles(), width, height));
+        model.addObject("total", page.getTotal());
+        model.addObject("galleryName", gallery);
+        model.addObject("previous", this.pageUri(gallery, "before", page.getPreviousCursor()));
+        model.addObject("next", this.pageUri(gallery, "after", page.getNextCursor()));
         model.addObject("gallery", true);
         model.addObject("width", DEFAULT_RESOLUTION);
         model.addObject("height", DEFAULT_RESOLUTION);
@@ -116,6 +504,131 @@ public class PhotoController {
         return model;
     }
 
+    /**
+     * @param files  files shown on the page.
+     * @param width  width of thumbnails, may be null.
+     * @param height height of thumbnails, may be null.
+     * @return inline style drawing thumbnail of each file from its contact
+     * sheet, or null if thumbnails of requested size are not available or
+     * are too large to be drawn from contact sheets.
+     */
+    private Map<String, String> spritesOf(final List<StoredFile> files, final Integer width, final Integer height) {
+        if (width == null || height == null || files.isEmpty()) {
+            return null;
+        }
+        final List<ContactSheet> sheets;
+        try {
+            sheets = this.thumbnailService.describeContactSheets(files, width, height);
+        } catch (StorageException e) {
+            LOG.debug("Serving thumbnails of size {} x {} one by one : {}", width, height, e.getMessage());
+            return null;
+        }
+
+        final LinkTemplate sheetLink = LinkTemplate.of(methodOn(PhotoController.class)
+                .renderContactSheet(width, height, LinkTemplate.VARIABLE, null, null));
+        final Map<String, String> sprites = new HashMap<>();
+        for (ContactSheet sheet : sheets) {
+            final String href = sheetLink.expand(sheet.getKey(), "picture", sheet.getPictures());
+            for (ContactSheet.Cell cell : sheet.getCells()) {
+                sprites.put(cell.getName(), String.format(
+                        "width:%dpx;height:%dpx;background-image:url(%s);background-position:-%dpx -%dpx",
+                        width, height, href, cell.getX(), cell.getY()));
+            }
+        }
+        return sprites.isEmpty() ? null : sprites;
+    }
+
+    /**
+     * Thumbnails are offered only at their own size and twice of it, so
+     * high density screens don't fetch variants of the whole picture.
+     *
+     * @param files  files shown on the page.
+     * @param width  width of thumbnails, may be null.
+     * @param height height of thumbnails, may be null.
+     * @return srcset of each file offering its thumbnail of double size,
+     * empty if thumbnails of double size can't be requested.
+     */
+    private Map<String, String> thumbnailSrcsetsOf(final List<StoredFile> files,
+                                                   final Integer width, final Integer height) {
+        if (width == null || height == null
+                || 2 * width > this.maxThumbnailSize || 2 * height > this.maxThumbnailSize) {
+            return Collections.emptyMap();
+        }
+        final LinkTemplate thumbnail = LinkTemplate.of(methodOn(PhotoController.class)
+                .renderThumbnail(2 * width, 2 * height, LinkTemplate.VARIABLE, null));
+        return files.stream()
+                .collect(Collectors.toMap(StoredFile::getName, file -> thumbnail.expand(file.getName()) + " 2x"));
+    }
+
+    /**
+     * Plain file name is reduced to safe ASCII characters for old clients,
+     * the exact one is given in RFC 5987 encoding.
+     *
+     * @param filename name of the attached file.
+     * @return value of Content-Disposition header.
+     */
+    private String attachmentOf(final String filename) {
+        final StringBuilder plain = new StringBuilder();
+        final StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < filename.length(); i++) {
+            final char c = filename.charAt(i);
+            plain.append(c < 0x80 && (Character.isLetterOrDigit(c) || "._- ".indexOf(c) >= 0) ? c : '_');
+        }
+        for (byte b : filename.getBytes(StandardCharsets.UTF_8)) {
+            final char c = (char) (b & 0xFF);
+            if (c < 0x80 && (Character.isLetterOrDigit(c) || "!#$&+-.^_`|~".indexOf(c) >= 0)) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", (int) c));
+            }
+        }
+        return "attachment; filename=\"" + plain + "\"; filename*=UTF-8''" + encoded;
+    }
+
+    private Integer sizeOf(final String value) {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param link link to the original picture.
+     * @return srcset candidates of all configured variant widths.
+     */
+    private String srcsetOf(final Link link) {
+        final StringBuilder srcset = new StringBuilder();
+        for (Integer width : this.thumbnailService.getVariantWidths()) {
+            if (srcset.length() > 0) {
+                srcset.append(", ");
+            }
+            srcset.append(link.getHref()).append("?w=").append(width).append(' ').append(width).append('w');
+        }
+        return srcset.toString();
+    }
+
+    /**
+     * @param gallery name of the gallery, may be null.
+     * @param param   name of the cursor parameter.
+     * @param cursor  cursor value, may be null.
+     * @return current request URI pointing to the page of given cursor, or null if cursor is null.
+     */
+    private String pageUri(final String gallery, final String param, final String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        final ServletUriComponentsBuilder builder = ServletUriComponentsBuilder.fromCurrentRequestUri();
+        if (gallery != null) {
+            builder.queryParam("gallery", gallery);
+        }
+        return builder
+                .queryParam(param, cursor)
+                .build()
+                .encode()
+                .toUriString();
+    }
+
     private ModelAndView getDefaultHomeModel() {
         final ModelAndView model = new ModelAndView("index");
 
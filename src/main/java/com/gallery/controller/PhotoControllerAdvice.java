@@ -1,13 +1,19 @@
 package com.gallery.controller;
 
+import com.gallery.util.GalleryNotFoundException;
+import com.gallery.util.ImportJobNotFoundException;
 import com.gallery.util.StorageException;
 import com.gallery.util.StorageFileNotFoundException;
+import com.gallery.util.UploadConflictException;
+import com.gallery.util.UploadTooLargeException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.servlet.ModelAndView;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * The PhotoControllerAdvice class provides a consistent response
  * when Exceptions are thrown from <code>@RequestMapping</code> controller methods.
@@ -27,6 +33,30 @@ public class PhotoControllerAdvice {
         return this.getDefaultErrorModel(HttpStatus.BAD_REQUEST, ex);
     }
 
+    /**
+     * Handles <code>UploadTooLargeException</code> thrown from web service controller methods.
+     *
+     * @param ex A <code>UploadTooLargeException</code> instance.
+     * @return response with HTTP status code 413 and exception message.
+     */
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    @ExceptionHandler(UploadTooLargeException.class)
+    public ModelAndView uploadTooLargeException(final UploadTooLargeException ex) {
+        return this.getDefaultErrorModel(HttpStatus.PAYLOAD_TOO_LARGE, ex);
+    }
+
+    /**
+     * Handles <code>UploadConflictException</code> thrown from web service controller methods.
+     *
+     * @param ex A <code>UploadConflictException</code> instance.
+     * @return response with HTTP status code 409 and exception message.
+     */
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(UploadConflictException.class)
+    public ModelAndView uploadConflictException(final UploadConflictException ex) {
+        return this.getDefaultErrorModel(HttpStatus.CONFLICT, ex);
+    }
+
     /**
      * Handles <code>StorageFileNotFoundException</code> thrown from web service controller methods.
      *
@@ -39,6 +69,43 @@ public class PhotoControllerAdvice {
         return this.getDefaultErrorModel(HttpStatus.NOT_FOUND, ex);
     }
 
+    /**
+     * Handles <code>ImportJobNotFoundException</code> thrown from web service controller methods.
+     *
+     * @param ex A <code>ImportJobNotFoundException</code> instance.
+     * @return response with HTTP status code 404 and exception message.
+     */
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(ImportJobNotFoundException.class)
+    public ModelAndView importJobNotFoundException(final ImportJobNotFoundException ex) {
+        return this.getDefaultErrorModel(HttpStatus.NOT_FOUND, ex);
+    }
+
+    /**
+     * Handles <code>GalleryNotFoundException</code> thrown from web service controller methods.
+     *
+     * @param ex A <code>GalleryNotFoundException</code> instance.
+     * @return response with HTTP status code 404 and exception message.
+     */
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(GalleryNotFoundException.class)
+    public ModelAndView galleryNotFoundException(final GalleryNotFoundException ex) {
+        return this.getDefaultErrorModel(HttpStatus.NOT_FOUND, ex);
+    }
+
+    /**
+     * Handles <code>RejectedExecutionException</code> thrown from web service controller methods
+     * when a bounded worker pool is saturated.
+     *
+     * @param ex A <code>RejectedExecutionException</code> instance.
+     * @return response with HTTP status code 503 and exception message.
+     */
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ModelAndView rejectedExecutionException(final RejectedExecutionException ex) {
+        return this.getDefaultErrorModel(HttpStatus.SERVICE_UNAVAILABLE, ex);
+    }
+
     /**
      * Handles <code>Exception</code> thrown from web service controller methods.
      *
@@ -0,0 +1,189 @@
+package com.gallery.controller;
+
+import com.gallery.service.ScheduledResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The {@link RangeResponseWriter} class writes a file or stored content,
+ * or a single byte range of it, straight to the servlet response. When the
+ * container supports it, files are handed over to Tomcat sendfile so bytes
+ * never enter the JVM, otherwise they are written with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}. Stored
+ * content that has to be read under scheduling is copied by
+ * {@link ScheduledResource} itself.
+ */
+public class RangeResponseWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(RangeResponseWriter.class);
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String BYTES = "bytes";
+
+    /**
+     * Writes status, provided headers and requested part of the file.
+     *
+     * @param request  current request.
+     * @param response current response.
+     * @param headers  headers describing the file, including validators.
+     * @param file     file to write.
+     * @param length   length of the file in bytes.
+     * @throws IOException on error.
+     */
+    public void write(final HttpServletRequest request, final HttpServletResponse response,
+                      final HttpHeaders headers, final Path file, final long length) throws IOException {
+        final long[] range = this.writeHead(request, response, headers, length);
+        if (range == null) {
+            return;
+        }
+
+        final long start = range[0];
+        final long end = range[1];
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            LOG.trace("Serving bytes {}-{} of {} with sendfile.", start, end, file);
+            return;
+        }
+
+        try (FileChannel in = FileChannel.open(file, READ)) {
+            final WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                final long transferred = in.transferTo(position, end - position + 1, out);
+                if (transferred <= 0) {
+                    throw new IOException("File " + file + " was truncated while being served.");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Writes status, provided headers and requested part of stored content.
+     *
+     * @param request  current request.
+     * @param response current response.
+     * @param headers  headers describing the content, including validators.
+     * @param content  content to write.
+     * @param length   length of the content in bytes.
+     * @throws IOException on error.
+     */
+    public void write(final HttpServletRequest request, final HttpServletResponse response,
+                      final HttpHeaders headers, final ScheduledResource content, final long length)
+            throws IOException {
+        final long[] range = this.writeHead(request, response, headers, length);
+        if (range == null) {
+            return;
+        }
+
+        content.copyTo(range[0], range[1] - range[0] + 1, Channels.newChannel(response.getOutputStream()));
+    }
+
+    /**
+     * Writes status and headers. Range is honoured only if it is a single
+     * satisfiable range and the <code>If-Range</code> validator, if any,
+     * matches current version; otherwise whole content is selected.
+     *
+     * @param request  current request.
+     * @param response current response.
+     * @param headers  headers describing the content, including validators.
+     * @param length   length of the content in bytes.
+     * @return first and last byte to write, or null if no body should be written.
+     */
+    private long[] writeHead(final HttpServletRequest request, final HttpServletResponse response,
+                             final HttpHeaders headers, final long length) {
+        long start = 0;
+        long end = length - 1;
+
+        final List<HttpRange> ranges = this.requestedRanges(request, headers);
+        if (ranges.size() == 1) {
+            try {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                start = length;
+            }
+            if (start >= length || start > end) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " */" + length);
+                return null;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            response.setHeader(header.getKey(), header.getValue().get(0));
+            for (String value : header.getValue().subList(1, header.getValue().size())) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+
+        final long count = end - start + 1;
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(count));
+
+        if (HttpMethod.HEAD.matches(request.getMethod()) || count == 0) {
+            return null;
+        }
+        return new long[]{start, end};
+    }
+
+    /**
+     * @param request current request.
+     * @param headers headers describing the content.
+     * @return requested ranges, or empty list if whole content should be written.
+     */
+    private List<HttpRange> requestedRanges(final HttpServletRequest request, final HttpHeaders headers) {
+        final String range = request.getHeader(HttpHeaders.RANGE);
+        if (range == null || !this.matchesIfRange(request.getHeader(HttpHeaders.IF_RANGE), headers)) {
+            return Collections.emptyList();
+        }
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Ignoring malformed range {}.", range);
+            return Collections.emptyList();
+        }
+    }
+
+    private boolean matchesIfRange(final String ifRange, final HttpHeaders headers) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(headers.getETag());
+        }
+        try {
+            return headers.getLastModified() / 1000
+                    == ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
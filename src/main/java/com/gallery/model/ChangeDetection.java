@@ -0,0 +1,21 @@
+package com.gallery.model;
+
+/**
+ * Strategies used by save to decide whether a source file differs from
+ * the one already kept in server storage under the same name.
+ */
+public enum ChangeDetection {
+    /**
+     * Every file is copied regardless of what is stored.
+     */
+    NONE,
+    /**
+     * File is skipped when size and modification time match the stored one.
+     */
+    METADATA,
+    /**
+     * Like {@link #METADATA}, but files of equal size with different
+     * modification time are additionally compared by content hash.
+     */
+    CONTENT
+}
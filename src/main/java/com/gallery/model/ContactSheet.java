@@ -0,0 +1,105 @@
+package com.gallery.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link ContactSheet} class describes a single sprite holding
+ * thumbnails of several pictures on a grid of equal cells. The key is
+ * derived from the pictures and their versions, so a sheet never changes
+ * once built and a changed picture yields a sheet of a new key.
+ */
+public final class ContactSheet {
+    private final String key;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int columns;
+    private final List<String> pictures;
+
+    /**
+     * @param key        key identifying content of the sheet.
+     * @param cellWidth  width of a cell in pixels.
+     * @param cellHeight height of a cell in pixels.
+     * @param columns    number of cells in a row.
+     * @param pictures   names of pictures in order of their cells.
+     */
+    public ContactSheet(final String key, final int cellWidth, final int cellHeight, final int columns,
+                        final List<String> pictures) {
+        this.key = key;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.columns = columns;
+        this.pictures = Collections.unmodifiableList(new ArrayList<>(pictures));
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public int getCellWidth() {
+        return this.cellWidth;
+    }
+
+    public int getCellHeight() {
+        return this.cellHeight;
+    }
+
+    public List<String> getPictures() {
+        return this.pictures;
+    }
+
+    /**
+     * @return width of the whole sheet in pixels.
+     */
+    public int getWidth() {
+        return this.columns * this.cellWidth;
+    }
+
+    /**
+     * @return height of the whole sheet in pixels.
+     */
+    public int getHeight() {
+        return (this.pictures.size() + this.columns - 1) / this.columns * this.cellHeight;
+    }
+
+    /**
+     * @return cells of all pictures, in order of pictures.
+     */
+    public List<Cell> getCells() {
+        final List<Cell> cells = new ArrayList<>(this.pictures.size());
+        for (int i = 0; i < this.pictures.size(); i++) {
+            cells.add(new Cell(this.pictures.get(i),
+                    i % this.columns * this.cellWidth, i / this.columns * this.cellHeight));
+        }
+        return cells;
+    }
+
+    /**
+     * Position of a picture's thumbnail on the sheet. The thumbnail is
+     * centered in its cell.
+     */
+    public static final class Cell {
+        private final String name;
+        private final int x;
+        private final int y;
+
+        public Cell(final String name, final int x, final int y) {
+            this.name = name;
+            this.x = x;
+            this.y = y;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public int getX() {
+            return this.x;
+        }
+
+        public int getY() {
+            return this.y;
+        }
+    }
+}
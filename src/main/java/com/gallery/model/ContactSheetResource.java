@@ -0,0 +1,45 @@
+package com.gallery.model;
+
+import org.springframework.hateoas.ResourceSupport;
+
+import java.util.List;
+
+/**
+ * The {@link ContactSheetResource} class is a hypermedia representation
+ * of a contact sheet, mapping every picture to the offset of its cell.
+ */
+public class ContactSheetResource extends ResourceSupport {
+    private final int width;
+    private final int height;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final List<ContactSheet.Cell> cells;
+
+    public ContactSheetResource(final ContactSheet sheet) {
+        this.width = sheet.getWidth();
+        this.height = sheet.getHeight();
+        this.cellWidth = sheet.getCellWidth();
+        this.cellHeight = sheet.getCellHeight();
+        this.cells = sheet.getCells();
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getCellWidth() {
+        return this.cellWidth;
+    }
+
+    public int getCellHeight() {
+        return this.cellHeight;
+    }
+
+    public List<ContactSheet.Cell> getCells() {
+        return this.cells;
+    }
+}
@@ -0,0 +1,86 @@
+package com.gallery.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The {@link FilePage} class is an immutable slice of stored files ordered
+ * by name, unless requested otherwise. Names of its first and last files,
+ * or their sort keys along with names, serve as cursors to the
+ * neighbouring pages.
+ */
+public class FilePage {
+    private final List<StoredFile> files;
+    private final boolean hasPrevious;
+    private final boolean hasNext;
+    private final int total;
+    private final Function<StoredFile, String> cursorOf;
+
+    /**
+     * @param files       files of the page in order of the listing.
+     * @param hasPrevious whether files ordered before the page exist.
+     * @param hasNext     whether files ordered after the page exist.
+     * @param total       total number of listed files.
+     */
+    public FilePage(final List<StoredFile> files, final boolean hasPrevious, final boolean hasNext,
+                    final int total) {
+        this(files, hasPrevious, hasNext, total, StoredFile::getName);
+    }
+
+    /**
+     * @param files       files of the page in order of the listing.
+     * @param hasPrevious whether files ordered before the page exist.
+     * @param hasNext     whether files ordered after the page exist.
+     * @param total       total number of listed files.
+     * @param cursorOf    cursor of a file of the listing.
+     */
+    public FilePage(final List<StoredFile> files, final boolean hasPrevious, final boolean hasNext,
+                    final int total, final Function<StoredFile, String> cursorOf) {
+        this.files = Collections.unmodifiableList(files);
+        this.hasPrevious = hasPrevious;
+        this.hasNext = hasNext;
+        this.total = total;
+        this.cursorOf = cursorOf;
+    }
+
+    public List<StoredFile> getFiles() {
+        return this.files;
+    }
+
+    public boolean hasPrevious() {
+        return this.hasPrevious;
+    }
+
+    public boolean hasNext() {
+        return this.hasNext;
+    }
+
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * @return cursor to request previous page with, or null if there is none.
+     */
+    public String getPreviousCursor() {
+        return this.hasPrevious ? this.cursorOf.apply(this.files.get(0)) : null;
+    }
+
+    /**
+     * @return cursor to request next page with, or null if there is none.
+     */
+    public String getNextCursor() {
+        return this.hasNext ? this.cursorOf.apply(this.files.get(this.files.size() - 1)) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "FilePage{" +
+                "files=" + this.files.size() +
+                ", hasPrevious=" + this.hasPrevious +
+                ", hasNext=" + this.hasNext +
+                ", total=" + this.total +
+                '}';
+    }
+}
@@ -0,0 +1,24 @@
+package com.gallery.model;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * The {@link FileStoredEvent} class is published whenever new content is
+ * stored under a file name, so derived data can be prepared in background.
+ */
+public class FileStoredEvent extends ApplicationEvent {
+    private final StoredFile file;
+
+    /**
+     * @param source publisher of the event.
+     * @param file   entry of the stored file.
+     */
+    public FileStoredEvent(final Object source, final StoredFile file) {
+        super(source);
+        this.file = file;
+    }
+
+    public StoredFile getFile() {
+        return this.file;
+    }
+}
@@ -0,0 +1,163 @@
+package com.gallery.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@link Gallery} class is an immutable snapshot of a named set of
+ * stored pictures ordered by name. Adding pictures yields a new snapshot,
+ * so readers can share and page a gallery without any locking.
+ */
+public final class Gallery {
+    private final String name;
+    private final String[] pictures;
+    private final long version;
+
+    /**
+     * @param name name of the gallery.
+     */
+    public Gallery(final String name) {
+        this(name, new String[0], 0);
+    }
+
+    private Gallery(final String name, final String[] pictures, final long version) {
+        this.name = name;
+        this.pictures = pictures;
+        this.version = version;
+    }
+
+    /**
+     * @param names names of stored pictures to add.
+     * @return snapshot holding pictures of this gallery and provided ones.
+     */
+    public Gallery withPictures(final Collection<String> names) {
+        final String[] added = names.stream().sorted().distinct().toArray(String[]::new);
+        final String[] merged = new String[this.pictures.length + added.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < this.pictures.length || j < added.length) {
+            final int order = i == this.pictures.length ? 1
+                    : j == added.length ? -1
+                    : this.pictures[i].compareTo(added[j]);
+            if (order <= 0) {
+                merged[k++] = this.pictures[i++];
+                if (order == 0) {
+                    j++;
+                }
+            } else {
+                merged[k++] = added[j++];
+            }
+        }
+        return k == this.pictures.length
+                ? this
+                : new Gallery(this.name, Arrays.copyOf(merged, k), this.version + 1);
+    }
+
+    /**
+     * @param names names of pictures to remove.
+     * @return snapshot holding pictures of this gallery except provided ones.
+     */
+    public Gallery withoutPictures(final Collection<String> names) {
+        final Set<String> removed = new HashSet<>(names);
+        final String[] kept = Arrays.stream(this.pictures)
+                .filter(picture -> !removed.contains(picture))
+                .toArray(String[]::new);
+        return kept.length == this.pictures.length
+                ? this
+                : new Gallery(this.name, kept, this.version + 1);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return number of snapshots preceding this one, increased whenever pictures were added or removed.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return number of pictures in the gallery.
+     */
+    public int size() {
+        return this.pictures.length;
+    }
+
+    /**
+     * @param picture name of the stored picture.
+     * @return true if picture belongs to the gallery.
+     */
+    public boolean contains(final String picture) {
+        return Arrays.binarySearch(this.pictures, picture) >= 0;
+    }
+
+    /**
+     * @param cursor name to start after, or null to start from the first picture.
+     * @param limit  maximum number of pictures.
+     * @return names of pictures ordered by name.
+     */
+    public List<String> after(final String cursor, final int limit) {
+        final int from = cursor == null ? 0 : this.higher(cursor);
+        return this.slice(from, Math.min(this.pictures.length, from + limit));
+    }
+
+    /**
+     * @param cursor name to end before.
+     * @param limit  maximum number of pictures.
+     * @return names of pictures ordered by name.
+     */
+    public List<String> before(final String cursor, final int limit) {
+        final int to = this.lower(cursor) + 1;
+        return this.slice(Math.max(0, to - limit), to);
+    }
+
+    /**
+     * @param picture picture name.
+     * @return true if gallery holds pictures ordered after given name.
+     */
+    public boolean hasAfter(final String picture) {
+        return this.higher(picture) < this.pictures.length;
+    }
+
+    /**
+     * @param picture picture name.
+     * @return true if gallery holds pictures ordered before given name.
+     */
+    public boolean hasBefore(final String picture) {
+        return this.lower(picture) >= 0;
+    }
+
+    /**
+     * @return index of the first picture ordered after given name.
+     */
+    private int higher(final String picture) {
+        final int position = Arrays.binarySearch(this.pictures, picture);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * @return index of the last picture ordered before given name, or -1.
+     */
+    private int lower(final String picture) {
+        final int position = Arrays.binarySearch(this.pictures, picture);
+        return position >= 0 ? position - 1 : -position - 2;
+    }
+
+    private List<String> slice(final int from, final int to) {
+        return from >= to
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(Arrays.asList(Arrays.copyOfRange(this.pictures, from, to)));
+    }
+
+    @Override
+    public String toString() {
+        return "Gallery{name='" + this.name + "', pictures=" + this.pictures.length + "}";
+    }
+}
@@ -0,0 +1,199 @@
+package com.gallery.model;
+
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@link ImportJob} class tracks a single asynchronous import of a
+ * directory into server storage. Progress is read from its {@link SaveResult}
+ * while the import is running. It is safe for concurrent use.
+ */
+public class ImportJob {
+    /**
+     * Lifecycle of the job. Jobs move only forward, and finished jobs
+     * never change their state again.
+     */
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id;
+    private final Path source;
+    private final ChangeDetection detection;
+    private final String gallery;
+    private final SaveResult result = new SaveResult();
+    private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+    private final long createdAt;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    /**
+     * @param id        unique identifier of the job.
+     * @param source    directory to import files from.
+     * @param detection strategy used to detect unchanged files.
+     */
+    public ImportJob(final String id, final Path source, final ChangeDetection detection) {
+        this(id, source, detection, null);
+    }
+
+    /**
+     * @param id        unique identifier of the job.
+     * @param source    directory to import files from.
+     * @param detection strategy used to detect unchanged files.
+     * @param gallery   name of the gallery imported files are added to, may be null.
+     */
+    public ImportJob(final String id, final Path source, final ChangeDetection detection, final String gallery) {
+        this.id = id;
+        this.source = source;
+        this.detection = detection;
+        this.gallery = gallery;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @param future handle of the task running the job, used to cancel it.
+     */
+    public void scheduled(final Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Marks job as running unless it was cancelled while queued.
+     *
+     * @return true if job should run.
+     */
+    public boolean start() {
+        if (this.state.compareAndSet(State.QUEUED, State.RUNNING)) {
+            this.startedAt = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks running job as completed.
+     */
+    public void complete() {
+        this.finish(State.COMPLETED);
+    }
+
+    /**
+     * Marks running job as failed.
+     *
+     * @param cause reason of the failure.
+     */
+    public void fail(final Throwable cause) {
+        this.error = cause.getLocalizedMessage();
+        this.finish(State.FAILED);
+    }
+
+    /**
+     * Cancels the job. A queued job never starts, a running one stops
+     * storing remaining files. Finished jobs are not affected.
+     *
+     * @return true if job was cancelled by this call.
+     */
+    public boolean cancel() {
+        this.result.cancel();
+        final State previous = this.state.getAndUpdate(s -> s.isFinished() ? s : State.CANCELLED);
+        if (previous.isFinished()) {
+            return false;
+        }
+        this.finishedAt = System.currentTimeMillis();
+        if (this.future != null) {
+            this.future.cancel(false);
+        }
+        return true;
+    }
+
+    private void finish(final State finished) {
+        if (this.state.compareAndSet(State.RUNNING, finished)) {
+            this.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public Path getSource() {
+        return this.source;
+    }
+
+    public ChangeDetection getDetection() {
+        return this.detection;
+    }
+
+    public String getGallery() {
+        return this.gallery;
+    }
+
+    public SaveResult getResult() {
+        return this.result;
+    }
+
+    public State getState() {
+        return this.state.get();
+    }
+
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public long getStartedAt() {
+        return this.startedAt;
+    }
+
+    public long getFinishedAt() {
+        return this.finishedAt;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+     * @return milliseconds the job has been running for, or ran for if finished.
+     */
+    public long getElapsed() {
+        if (this.startedAt == 0) {
+            return 0;
+        }
+        final long end = this.finishedAt == 0 ? System.currentTimeMillis() : this.finishedAt;
+        return Math.max(0, end - this.startedAt);
+    }
+
+    /**
+     * @return number of files processed per second.
+     */
+    public double getFilesPerSecond() {
+        final int processed = this.result.getCopiedCount() + this.result.getSkippedCount()
+                + this.result.getFailedCount();
+        return this.perSecond(processed);
+    }
+
+    /**
+     * @return number of bytes copied per second.
+     */
+    public double getBytesPerSecond() {
+        return this.perSecond(this.result.getCopiedBytes());
+    }
+
+    private double perSecond(final long amount) {
+        final long elapsed = this.getElapsed();
+        return elapsed == 0 ? 0 : amount * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportJob{id=" + this.id + ", source=" + this.source + ", state=" + this.state.get()
+                + ", result=" + this.result + "}";
+    }
+}
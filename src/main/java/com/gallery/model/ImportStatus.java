@@ -0,0 +1,86 @@
+package com.gallery.model;
+
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * The {@link ImportStatus} class is a hypermedia representation of
+ * progress of an {@link ImportJob}, taken at a single point in time.
+ */
+public class ImportStatus extends ResourceSupport {
+    private final String jobId;
+    private final String source;
+    private final ImportJob.State state;
+    private final int found;
+    private final int copied;
+    private final int skipped;
+    private final int failed;
+    private final long copiedBytes;
+    private final long elapsed;
+    private final double filesPerSecond;
+    private final double bytesPerSecond;
+    private final String error;
+
+    public ImportStatus(final ImportJob job) {
+        final SaveResult result = job.getResult();
+        this.jobId = job.getId();
+        this.source = job.getSource().toString();
+        this.state = job.getState();
+        this.found = result.getFound();
+        this.copied = result.getCopiedCount();
+        this.skipped = result.getSkippedCount();
+        this.failed = result.getFailedCount();
+        this.copiedBytes = result.getCopiedBytes();
+        this.elapsed = job.getElapsed();
+        this.filesPerSecond = job.getFilesPerSecond();
+        this.bytesPerSecond = job.getBytesPerSecond();
+        this.error = job.getError();
+    }
+
+    public String getJobId() {
+        return this.jobId;
+    }
+
+    public String getSource() {
+        return this.source;
+    }
+
+    public ImportJob.State getState() {
+        return this.state;
+    }
+
+    public int getFound() {
+        return this.found;
+    }
+
+    public int getCopied() {
+        return this.copied;
+    }
+
+    public int getSkipped() {
+        return this.skipped;
+    }
+
+    public int getFailed() {
+        return this.failed;
+    }
+
+    public long getCopiedBytes() {
+        return this.copiedBytes;
+    }
+
+    public long getElapsed() {
+        return this.elapsed;
+    }
+
+    public double getFilesPerSecond() {
+        return this.filesPerSecond;
+    }
+
+    public double getBytesPerSecond() {
+        return this.bytesPerSecond;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+}
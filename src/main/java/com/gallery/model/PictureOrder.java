@@ -0,0 +1,54 @@
+package com.gallery.model;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Orders in which stored pictures can be listed. Pictures of equal keys
+ * are ordered by name, so every order tells apart any two pictures.
+ */
+public enum PictureOrder {
+    NAME(file -> 0L),
+    SIZE(StoredFile::getSize),
+    LAST_MODIFIED(StoredFile::getLastModified),
+    WIDTH(StoredFile::getWidth),
+    HEIGHT(StoredFile::getHeight),
+    AREA(file -> (long) file.getWidth() * file.getHeight());
+
+    private static final String DESCENDING = "-";
+
+    private final ToLongFunction<StoredFile> key;
+
+    PictureOrder(final ToLongFunction<StoredFile> key) {
+        this.key = key;
+    }
+
+    /**
+     * @param file picture to take the key of.
+     * @return key of the picture in this order.
+     */
+    long keyOf(final StoredFile file) {
+        return this.key.applyAsLong(file);
+    }
+
+    /**
+     * @param descending whether greatest keys come first.
+     * @return comparator of pictures in this order.
+     */
+    public PictureSort comparator(final boolean descending) {
+        return new PictureSort(this, descending);
+    }
+
+    /**
+     * @param sort name of the attribute as listed in JSON, e.g. "lastModified",
+     *             prefixed with "-" for descending order.
+     * @return comparator of pictures in requested order.
+     * @throws IllegalArgumentException if no order of such name exists.
+     */
+    public static PictureSort parse(final String sort) {
+        final boolean descending = sort.startsWith(DESCENDING);
+        final String name = (descending ? sort.substring(DESCENDING.length()) : sort)
+                .replaceAll("([a-z])([A-Z])", "$1_$2")
+                .toUpperCase();
+        return valueOf(name).comparator(descending);
+    }
+}
@@ -0,0 +1,55 @@
+package com.gallery.model;
+
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * The {@link PictureResource} class is a hypermedia representation
+ * of a stored picture.
+ */
+public class PictureResource extends ResourceSupport {
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final String contentType;
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+
+    public PictureResource(final StoredFile file) {
+        this.name = file.getName();
+        this.size = file.getSize();
+        this.lastModified = file.getLastModified();
+        this.contentType = file.getContentType();
+        this.width = file.getWidth();
+        this.height = file.getHeight();
+        this.bitDepth = file.getBitDepth();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getBitDepth() {
+        return this.bitDepth;
+    }
+}
@@ -0,0 +1,70 @@
+package com.gallery.model;
+
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ * The {@link PictureSort} class orders pictures by a key of
+ * {@link PictureOrder} and then by name. Cursors of a sorted listing carry
+ * the key along with the name, so a listing resumes at the same position
+ * even if the picture the cursor was taken from changed or was removed.
+ */
+public final class PictureSort implements Comparator<StoredFile> {
+    private static final char SEPARATOR = ':';
+
+    private final PictureOrder order;
+    private final boolean descending;
+
+    /**
+     * @param order      key to order pictures by.
+     * @param descending whether greatest keys come first.
+     */
+    public PictureSort(final PictureOrder order, final boolean descending) {
+        this.order = order;
+        this.descending = descending;
+    }
+
+    public PictureOrder getOrder() {
+        return this.order;
+    }
+
+    public boolean isDescending() {
+        return this.descending;
+    }
+
+    @Override
+    public int compare(final StoredFile first, final StoredFile second) {
+        return this.compare(this.order.keyOf(first), first.getName(), this.order.keyOf(second), second.getName());
+    }
+
+    /**
+     * @param file picture to take the cursor from.
+     * @return cursor made of the key and name of the picture.
+     */
+    public String cursorOf(final StoredFile file) {
+        return this.order.keyOf(file) + String.valueOf(SEPARATOR) + file.getName();
+    }
+
+    /**
+     * @param cursor cursor returned by {@link #cursorOf(StoredFile)}.
+     * @return filter accepting pictures ordered after the cursor.
+     * @throws IllegalArgumentException if cursor is malformed.
+     */
+    public Predicate<StoredFile> after(final String cursor) {
+        final int separator = cursor.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Cursor " + cursor + " does not contain sort key.");
+        }
+        final long key = Long.parseLong(cursor.substring(0, separator));
+        final String name = cursor.substring(separator + 1);
+        return file -> this.compare(this.order.keyOf(file), file.getName(), key, name) > 0;
+    }
+
+    private int compare(final long firstKey, final String firstName, final long secondKey, final String secondName) {
+        int result = Long.compare(firstKey, secondKey);
+        if (result == 0) {
+            result = firstName.compareTo(secondName);
+        }
+        return this.descending ? -result : result;
+    }
+}
@@ -0,0 +1,80 @@
+package com.gallery.model;
+
+import java.util.Optional;
+
+/**
+ * Picture formats recognised by the signature at the start of file
+ * content, so that files are accepted for what they contain rather than
+ * for what they are named.
+ */
+public enum PictureType {
+    PNG("image/png", "png", new int[]{0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A}),
+    JPEG("image/jpeg", "jpg", new int[]{0xFF, 0xD8, 0xFF}),
+    GIF("image/gif", "gif", new int[]{'G', 'I', 'F', '8'}),
+    BMP("image/bmp", "bmp", new int[]{'B', 'M'}),
+    WEBP("image/webp", "webp", new int[]{'R', 'I', 'F', 'F', -1, -1, -1, -1, 'W', 'E', 'B', 'P'}),
+    TIFF("image/tiff", "tiff", new int[]{'I', 'I', 0x2A, 0x00}, new int[]{'M', 'M', 0x00, 0x2A});
+
+    /**
+     * Number of leading bytes sufficient to detect any of the types.
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private final String contentType;
+    private final String format;
+    private final int[][] signatures;
+
+    /**
+     * @param contentType media type of the format.
+     * @param format      name of the format known to image I/O, also used as file extension.
+     * @param signatures  alternative leading bytes of the format, -1 matches any byte.
+     */
+    PictureType(final String contentType, final String format, final int[]... signatures) {
+        this.contentType = contentType;
+        this.format = format;
+        this.signatures = signatures;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public String getFormat() {
+        return this.format;
+    }
+
+    /**
+     * @param header leading bytes of file content.
+     * @param length number of valid bytes in the header.
+     * @return type of the picture, or empty if header matches no known type.
+     */
+    public static Optional<PictureType> detect(final byte[] header, final int length) {
+        for (PictureType type : values()) {
+            if (type.matches(header, length)) {
+                return Optional.of(type);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean matches(final byte[] header, final int length) {
+        for (int[] signature : this.signatures) {
+            if (matches(signature, header, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(final int[] signature, final byte[] header, final int length) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (signature[i] != -1 && signature[i] != (header[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.gallery.model;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link SaveResult} class collects outcome of a single save operation.
+ * It is safe to record outcomes from multiple ingest threads at once and
+ * to read progress or cancel the operation while it is running.
+ */
+public class SaveResult {
+    private final Queue<String> copied = new ConcurrentLinkedQueue<>();
+    private final Queue<String> skipped = new ConcurrentLinkedQueue<>();
+    private final Map<Path, String> failed = new ConcurrentHashMap<>();
+    private final AtomicInteger copiedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicInteger found = new AtomicInteger();
+    private final AtomicLong copiedBytes = new AtomicLong();
+    private volatile boolean cancelled;
+
+    /**
+     * Records files found to be saved. Files are found while earlier ones
+     * are being copied, so the count grows over the whole operation.
+     *
+     * @param count number of newly found files.
+     */
+    public void found(final int count) {
+        this.found.addAndGet(count);
+    }
+
+    /**
+     * Records file stored on server under given name.
+     *
+     * @param fileName name of the stored file.
+     * @param size     size of the file in bytes.
+     */
+    public void copied(final String fileName, final long size) {
+        this.copied.add(fileName);
+        this.copiedCount.incrementAndGet();
+        this.copiedBytes.addAndGet(size);
+    }
+
+    /**
+     * Records file left untouched because the stored copy is up to date.
+     *
+     * @param fileName name of the stored file.
+     */
+    public void skipped(final String fileName) {
+        this.skipped.add(fileName);
+        this.skippedCount.incrementAndGet();
+    }
+
+    /**
+     * Records file that could not be stored.
+     *
+     * @param file  source file.
+     * @param cause reason of the failure.
+     */
+    public void failed(final Path file, final Throwable cause) {
+        this.failed.put(file, cause.getClass().getSimpleName() + ": " + cause.getLocalizedMessage());
+    }
+
+    /**
+     * Asks the save operation to leave remaining files untouched. Files
+     * already being copied are completed.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @return number of files found to be saved so far.
+     */
+    public int getFound() {
+        return this.found.get();
+    }
+
+    /**
+     * @return number of files stored so far.
+     */
+    public int getCopiedCount() {
+        return this.copiedCount.get();
+    }
+
+    /**
+     * @return number of files skipped so far.
+     */
+    public int getSkippedCount() {
+        return this.skippedCount.get();
+    }
+
+    /**
+     * @return number of files failed so far.
+     */
+    public int getFailedCount() {
+        return this.failed.size();
+    }
+
+    /**
+     * @return total size of files stored so far in bytes.
+     */
+    public long getCopiedBytes() {
+        return this.copiedBytes.get();
+    }
+
+    /**
+     * @return names of files stored on server.
+     */
+    public List<String> getCopied() {
+        return Collections.unmodifiableList(new ArrayList<>(this.copied));
+    }
+
+    /**
+     * @return names of files whose stored copies were already up to date.
+     */
+    public List<String> getSkipped() {
+        return Collections.unmodifiableList(new ArrayList<>(this.skipped));
+    }
+
+    /**
+     * @return source files that could not be stored mapped to failure reasons.
+     */
+    public Map<Path, String> getFailed() {
+        return Collections.unmodifiableMap(this.failed);
+    }
+
+    @Override
+    public String toString() {
+        return "SaveResult{found=" + this.found + ", copied=" + this.copiedCount + ", skipped=" + this.skippedCount
+                + ", failed=" + this.failed.size() + (this.cancelled ? ", cancelled" : "") + "}";
+    }
+}
@@ -0,0 +1,152 @@
+package com.gallery.model;
+
+/**
+ * The {@link StoredFile} class is an immutable snapshot of attributes
+ * of a single file kept in server storage. Type and dimensions are read
+ * from the picture header when the file is indexed. Type is null and
+ * dimensions are zero if not known.
+ */
+public class StoredFile {
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final String contentType;
+    private final String location;
+    private final String hash;
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+    private final PictureType type;
+
+    /**
+     * @param name         name under which file is visible in the gallery.
+     * @param size         size of the file in bytes.
+     * @param lastModified modification time of the file in milliseconds.
+     * @param contentType  media type of the file.
+     * @param location     path of the file content relative to storage directory.
+     * @param hash         hex encoded SHA-256 of the content, or null if not known.
+     */
+    public StoredFile(final String name, final long size, final long lastModified, final String contentType,
+                      final String location, final String hash) {
+        this(name, size, lastModified, contentType, location, hash, 0, 0, 0, null);
+    }
+
+    /**
+     * @param name         name under which file is visible in the gallery.
+     * @param size         size of the file in bytes.
+     * @param lastModified modification time of the file in milliseconds.
+     * @param contentType  media type of the file.
+     * @param location     path of the file content relative to storage directory.
+     * @param hash         hex encoded SHA-256 of the content, or null if not known.
+     * @param width        width of the picture in pixels, or 0 if not known.
+     * @param height       height of the picture in pixels, or 0 if not known.
+     * @param bitDepth     bit depth declared by the picture header, or 0 if not known.
+     * @param type         type of the picture recognised by its content, or null if not known.
+     */
+    public StoredFile(final String name, final long size, final long lastModified, final String contentType,
+                      final String location, final String hash, final int width, final int height,
+                      final int bitDepth, final PictureType type) {
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+        this.location = location;
+        this.hash = hash;
+        this.width = width;
+        this.height = height;
+        this.bitDepth = bitDepth;
+        this.type = type;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public String getLocation() {
+        return this.location;
+    }
+
+    public String getHash() {
+        return this.hash;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getBitDepth() {
+        return this.bitDepth;
+    }
+
+    public PictureType getType() {
+        return this.type;
+    }
+
+    /**
+     * @return true if dimensions of the picture are known.
+     */
+    public boolean hasDimensions() {
+        return this.width > 0 && this.height > 0;
+    }
+
+    /**
+     * @param lastModified new modification time in milliseconds.
+     * @return copy of this entry with provided modification time.
+     */
+    public StoredFile withLastModified(final long lastModified) {
+        return new StoredFile(this.name, this.size, lastModified, this.contentType, this.location, this.hash,
+                this.width, this.height, this.bitDepth, this.type);
+    }
+
+    /**
+     * @param location new path of the file content relative to storage directory.
+     * @return copy of this entry pointing to content at provided location.
+     */
+    public StoredFile withLocation(final String location) {
+        return new StoredFile(this.name, this.size, this.lastModified, this.contentType, location, this.hash,
+                this.width, this.height, this.bitDepth, this.type);
+    }
+
+    /**
+     * @param width    width of the picture in pixels.
+     * @param height   height of the picture in pixels.
+     * @param bitDepth bit depth declared by the picture header.
+     * @return copy of this entry with provided dimensions.
+     */
+    public StoredFile withDimensions(final int width, final int height, final int bitDepth) {
+        return new StoredFile(this.name, this.size, this.lastModified, this.contentType, this.location, this.hash,
+                width, height, bitDepth, this.type);
+    }
+
+    /**
+     * @param type type of the picture recognised by its content.
+     * @return copy of this entry of provided type, with media type of that type.
+     */
+    public StoredFile withType(final PictureType type) {
+        return new StoredFile(this.name, this.size, this.lastModified, type.getContentType(), this.location,
+                this.hash, this.width, this.height, this.bitDepth, type);
+    }
+
+    @Override
+    public String toString() {
+        return "StoredFile{name=" + this.name + ", size=" + this.size + ", lastModified=" + this.lastModified
+                + ", location=" + this.location + ", type=" + this.type + ", width=" + this.width
+                + ", height=" + this.height + "}";
+    }
+}
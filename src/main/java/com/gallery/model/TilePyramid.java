@@ -0,0 +1,110 @@
+package com.gallery.model;
+
+import java.awt.Rectangle;
+
+/**
+ * The {@link TilePyramid} class describes a picture cut into a Deep Zoom
+ * pyramid. Level 0 is a single pixel, every next level doubles the size up
+ * to the full resolution at {@link #getMaxLevel()}. Each level is cut into
+ * square tiles, extended by the overlap on sides shared with their neighbours.
+ */
+public final class TilePyramid {
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int overlap;
+    private final String format;
+
+    /**
+     * @param width    width of the picture in pixels.
+     * @param height   height of the picture in pixels.
+     * @param tileSize size of a tile without overlap in pixels.
+     * @param overlap  number of pixels a tile shares with each neighbour.
+     * @param format   format of tiles, e.g. "jpg" or "png".
+     */
+    public TilePyramid(final int width, final int height, final int tileSize, final int overlap,
+                       final String format) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+        this.format = format;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getTileSize() {
+        return this.tileSize;
+    }
+
+    public int getOverlap() {
+        return this.overlap;
+    }
+
+    public String getFormat() {
+        return this.format;
+    }
+
+    /**
+     * @return level holding the picture in full resolution.
+     */
+    public int getMaxLevel() {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(this.width, this.height) - 1);
+    }
+
+    /**
+     * @param level level of the pyramid.
+     * @return number of full resolution pixels covered by a single pixel of the level.
+     */
+    public long scaleOf(final int level) {
+        return 1L << (this.getMaxLevel() - level);
+    }
+
+    /**
+     * @param level level of the pyramid.
+     * @return width of the picture at provided level.
+     */
+    public int widthAt(final int level) {
+        return (int) ((this.width + this.scaleOf(level) - 1) / this.scaleOf(level));
+    }
+
+    /**
+     * @param level level of the pyramid.
+     * @return height of the picture at provided level.
+     */
+    public int heightAt(final int level) {
+        return (int) ((this.height + this.scaleOf(level) - 1) / this.scaleOf(level));
+    }
+
+    /**
+     * @param level  level of the pyramid.
+     * @param column column of the tile.
+     * @param row    row of the tile.
+     * @return true if the pyramid has such tile, otherwise false.
+     */
+    public boolean hasTile(final int level, final int column, final int row) {
+        return level >= 0 && level <= this.getMaxLevel() && column >= 0 && row >= 0
+                && (long) column * this.tileSize < this.widthAt(level)
+                && (long) row * this.tileSize < this.heightAt(level);
+    }
+
+    /**
+     * @param level  level of the pyramid.
+     * @param column column of the tile.
+     * @param row    row of the tile.
+     * @return area of the level covered by the tile, including overlap.
+     */
+    public Rectangle boundsOf(final int level, final int column, final int row) {
+        final int x = column * this.tileSize - (column == 0 ? 0 : this.overlap);
+        final int y = row * this.tileSize - (row == 0 ? 0 : this.overlap);
+        final int right = Math.min(this.widthAt(level), (column + 1) * this.tileSize + this.overlap);
+        final int bottom = Math.min(this.heightAt(level), (row + 1) * this.tileSize + this.overlap);
+        return new Rectangle(x, y, right - x, bottom - y);
+    }
+}
@@ -0,0 +1,94 @@
+package com.gallery.model;
+
+import java.nio.file.Path;
+
+/**
+ * The {@link Upload} class tracks a single resumable upload. Content is
+ * written to a staging file in server storage at increasing offsets until
+ * declared length is reached, then the file is stored. Writers have to
+ * synchronize on the upload, readers see a consistent offset at any time.
+ */
+public class Upload {
+    private final String id;
+    private final String fileName;
+    private final long length;
+    private final Path staged;
+    private volatile long offset;
+    private volatile long lastActivity;
+    private volatile StoredFile stored;
+
+    /**
+     * @param id       unique identifier of the upload.
+     * @param fileName name under which file should be stored.
+     * @param length   declared size of the file in bytes.
+     * @param staged   staging file receiving the content.
+     */
+    public Upload(final String id, final String fileName, final long length, final Path staged) {
+        this.id = id;
+        this.fileName = fileName;
+        this.length = length;
+        this.staged = staged;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Records bytes written to the staging file.
+     *
+     * @param offset offset of the next expected byte.
+     */
+    public void advance(final long offset) {
+        this.offset = offset;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Records file stored once all bytes were received.
+     *
+     * @param stored attributes of the stored file.
+     */
+    public void complete(final StoredFile stored) {
+        this.stored = stored;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public long getLength() {
+        return this.length;
+    }
+
+    public Path getStaged() {
+        return this.staged;
+    }
+
+    public long getOffset() {
+        return this.offset;
+    }
+
+    public long getLastActivity() {
+        return this.lastActivity;
+    }
+
+    /**
+     * @return attributes of the stored file, or null if upload is not complete.
+     */
+    public StoredFile getStored() {
+        return this.stored;
+    }
+
+    public boolean isComplete() {
+        return this.stored != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Upload{id=" + this.id + ", fileName=" + this.fileName + ", offset=" + this.offset
+                + ", length=" + this.length + "}";
+    }
+}
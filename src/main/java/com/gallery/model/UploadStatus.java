@@ -0,0 +1,43 @@
+package com.gallery.model;
+
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * The {@link UploadStatus} class is a hypermedia representation of
+ * progress of an {@link Upload}.
+ */
+public class UploadStatus extends ResourceSupport {
+    private final String uploadId;
+    private final String fileName;
+    private final long length;
+    private final long offset;
+    private final boolean complete;
+
+    public UploadStatus(final Upload upload) {
+        this.uploadId = upload.getId();
+        this.fileName = upload.getFileName();
+        this.length = upload.getLength();
+        this.offset = upload.getOffset();
+        this.complete = upload.isComplete();
+    }
+
+    public String getUploadId() {
+        return this.uploadId;
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public long getLength() {
+        return this.length;
+    }
+
+    public long getOffset() {
+        return this.offset;
+    }
+
+    public boolean isComplete() {
+        return this.complete;
+    }
+}
@@ -0,0 +1,87 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Base class of {@link StorageLayout} implementations keeping content
+ * in regular files under the storage directory.
+ */
+public abstract class AbstractStorageLayout implements StorageLayout {
+    /**
+     * Prefix of temporary files which are never indexed.
+     */
+    public static final String TMP_PREFIX = ".ingest-";
+
+    protected final Path root;
+    protected final StorageIndex index;
+
+    protected AbstractStorageLayout(final Path root, final StorageIndex index) {
+        this.root = root;
+        this.index = index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Path resolve(final StoredFile file) {
+        return this.root.resolve(file.getLocation());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every file has content of its own, so it is never mapped.
+     */
+    @Override
+    public ByteBuffer map(final StoredFile file) throws IOException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * No files are held open.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(this.root, TMP_PREFIX, null);
+    }
+
+    /**
+     * Copies file with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * letting the kernel move the bytes without passing them through the heap.
+     *
+     * @param src    file to copy.
+     * @param target existing file to write to.
+     * @throws IOException on error.
+     */
+    protected void transfer(final Path src, final Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(src, READ);
+             FileChannel out = FileChannel.open(target, WRITE)) {
+            final long size = in.size();
+            long position = 0;
+            while (position < size) {
+                final long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    throw new IOException("Source file was truncated during copy.");
+                }
+                position += transferred;
+            }
+        }
+    }
+}
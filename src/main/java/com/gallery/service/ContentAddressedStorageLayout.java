@@ -0,0 +1,201 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+import com.gallery.util.ContentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/**
+ * The {@link ContentAddressedStorageLayout} class stores content of files
+ * once per distinct SHA-256 hash under <code>blobs</code> directory, while
+ * file names are mapped to their content in the {@link StorageIndex}.
+ * Content is removed once no name refers to it anymore.
+ */
+public class ContentAddressedStorageLayout extends AbstractStorageLayout {
+    private static final Logger LOG = LoggerFactory.getLogger(ContentAddressedStorageLayout.class);
+    private static final String BLOBS = "blobs";
+    private static final int LOCK_STRIPES = 64;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public ContentAddressedStorageLayout(final Path root, final StorageIndex index) {
+        super(root, index);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Names are not kept on disk, so the index starts empty.
+     */
+    @Override
+    public void rebuild() throws IOException {
+        this.index.clear();
+        Files.createDirectories(this.root.resolve(BLOBS));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Blobs are named after their content, so names of files are known
+     * only from the saved index.
+     */
+    @Override
+    public boolean isRebuildable() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWatchable() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Blobs are only ever written through the application, so the saved
+     * index is always current.
+     */
+    @Override
+    public boolean isModifiedSince(final FileTime time) {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Content is hashed while being copied to a temporary file, which is
+     * then either moved in place or dropped if the same content is already
+     * stored. Of two different files with equal names stored during the same
+     * save, the later one gets the content hash prefix appended to its name.
+     */
+    @Override
+    public StoredFile store(final Path src, final String name,
+                            final ConcurrentMap<String, String> claimed) throws IOException {
+        final Path tmp = this.createTempFile();
+        try {
+            final String hash = ContentHash.copy(src, tmp);
+            return this.place(tmp, this.claim(name, hash, claimed), hash, Files.getLastModifiedTime(src).toMillis());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Content is hashed and then either moved in place or dropped if the
+     * same content is already stored.
+     */
+    @Override
+    public StoredFile move(final Path tmp, final String name) throws IOException {
+        try {
+            return this.place(tmp, name, ContentHash.of(tmp), Files.getLastModifiedTime(tmp).toMillis());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Moves content in place unless it is already stored, points the name
+     * to it and releases content the name referred to before.
+     *
+     * @param tmp          temporary file holding the content.
+     * @param name         name under which file should be visible.
+     * @param hash         content hash.
+     * @param lastModified modification time of the file in milliseconds.
+     * @return entry of the stored file.
+     * @throws IOException on error.
+     */
+    private StoredFile place(final Path tmp, final String name, final String hash,
+                             final long lastModified) throws IOException {
+        final String extension = StringUtils.getFilenameExtension(name);
+        final String location = BLOBS + "/" + hash + (extension == null ? "" : "." + extension.toLowerCase());
+        final StoredFile file = StorageIndex.describe(new StoredFile(name, Files.size(tmp), lastModified,
+                this.index.contentTypeOf(name), location, hash), tmp);
+
+        final StoredFile previous;
+        synchronized (this.lockFor(hash)) {
+            final Path blob = this.resolve(file);
+            if (Files.exists(blob)) {
+                LOG.trace("Content of {} is already stored as {}.", name, location);
+            } else {
+                Files.move(tmp, blob, ATOMIC_MOVE);
+            }
+            previous = this.index.put(file);
+        }
+
+        if (previous != null && !hash.equals(previous.getHash())) {
+            this.release(previous);
+        }
+        return file;
+    }
+
+    /**
+     * Claims name for content with given hash within current save.
+     *
+     * @param name    requested name.
+     * @param hash    content hash.
+     * @param claimed names already claimed during current save.
+     * @return requested name, or a name unique for given content if requested
+     * one is already claimed by different content.
+     */
+    private String claim(final String name, final String hash, final ConcurrentMap<String, String> claimed) {
+        final String owner = claimed.putIfAbsent(name, hash);
+        if (owner == null || owner.equals(hash)) {
+            return name;
+        }
+
+        final String extension = StringUtils.getFilenameExtension(name);
+        final String unique = StringUtils.stripFilenameExtension(name) + "-" + hash.substring(0, 8)
+                + (extension == null ? "" : "." + extension);
+        claimed.putIfAbsent(unique, hash);
+
+        LOG.debug("Name {} is already taken by different content, storing as {}.", name, unique);
+        return unique;
+    }
+
+    /**
+     * Removes content of the file unless other names still refer to it.
+     *
+     * @param file entry which no longer refers to its content.
+     * @throws IOException on error.
+     */
+    private void release(final StoredFile file) throws IOException {
+        synchronized (this.lockFor(file.getHash())) {
+            if (!this.index.isReferenced(file.getHash())) {
+                Files.deleteIfExists(this.resolve(file));
+            }
+        }
+    }
+
+    private Object lockFor(final String hash) {
+        return this.locks[(hash.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String hashOf(final StoredFile file) {
+        return file.getHash();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Modification time is kept in the index only, as content may be shared.
+     */
+    @Override
+    public void touch(final StoredFile file, final long lastModified) {
+        this.index.put(file.withLastModified(lastModified));
+    }
+}
@@ -0,0 +1,34 @@
+package com.gallery.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The {@link ExportService} interface defines business behaviours
+ * associated with downloading many stored files at once.
+ */
+public interface ExportService {
+    /**
+     * Prepares ZIP archive of all stored files, or of files of the named
+     * gallery, optionally restricted to names matching a glob pattern.
+     * Arguments are validated right away, while the archive is produced
+     * only once it is written.
+     *
+     * @param gallery name of the gallery, may be null.
+     * @param pattern glob pattern file names have to match, e.g. "*.png", may be null.
+     * @return writer of the archive.
+     */
+    ArchiveWriter exportZip(String gallery, String pattern);
+
+    /**
+     * Writes an archive to a stream.
+     */
+    @FunctionalInterface
+    interface ArchiveWriter {
+        /**
+         * @param out stream to write the archive to, left open.
+         * @throws IOException on error.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
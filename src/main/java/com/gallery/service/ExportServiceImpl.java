@@ -0,0 +1,149 @@
+package com.gallery.service;
+
+import com.gallery.model.FilePage;
+import com.gallery.model.StoredFile;
+import com.gallery.util.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Service
+public class ExportServiceImpl implements ExportService {
+    private static final Logger LOG = LoggerFactory.getLogger(ExportServiceImpl.class);
+    private static final int PAGE_SIZE = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long STORED_LIMIT = 8L * 1024 * 1024;
+    private static final Set<String> COMPRESSED_FORMATS =
+            new HashSet<>(Arrays.asList("jpg", "jpeg", "png", "gif", "webp"));
+
+    private final StorageService storageService;
+    private final GalleryService galleryService;
+    private final GalleryMetrics metrics;
+
+    @Autowired
+    public ExportServiceImpl(final StorageService storageService,
+                             final GalleryService galleryService,
+                             final GalleryMetrics metrics) {
+        this.storageService = storageService;
+        this.galleryService = galleryService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Unknown gallery or malformed pattern fail before anything is written.
+     * Files are read page by page, so memory use doesn't depend on their
+     * number or size, apart from the central directory kept by the archive.
+     */
+    @Override
+    public ArchiveWriter exportZip(final String gallery, final String pattern) {
+        if (gallery != null) {
+            this.galleryService.getGallery(gallery);
+        }
+        final PathMatcher matcher = this.matcherOf(pattern);
+        return out -> this.write(gallery, matcher, out);
+    }
+
+    private PathMatcher matcherOf(final String pattern) {
+        if (pattern == null) {
+            return path -> true;
+        }
+        try {
+            return FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        } catch (PatternSyntaxException e) {
+            throw new StorageException("Invalid file name pattern " + pattern);
+        }
+    }
+
+    private void write(final String gallery, final PathMatcher matcher, final OutputStream out) throws IOException {
+        final long start = System.nanoTime();
+        final ZipOutputStream zip = new ZipOutputStream(out);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final ByteArrayOutputStream content = new ByteArrayOutputStream(BUFFER_SIZE);
+        int count = 0;
+        String after = null;
+        do {
+            final FilePage page = gallery == null
+                    ? this.storageService.loadPage(after, null, PAGE_SIZE)
+                    : this.galleryService.loadPage(gallery, after, null, PAGE_SIZE);
+            for (StoredFile file : page.getFiles()) {
+                if (matcher.matches(Paths.get(file.getName()))) {
+                    this.writeEntry(zip, file, buffer, content);
+                    count++;
+                }
+            }
+            after = page.getNextCursor();
+        } while (after != null);
+        zip.finish();
+
+        this.metrics.time("export.zip", start);
+        LOG.debug("Exported {} files of {} to ZIP.", count, gallery == null ? "storage" : gallery);
+    }
+
+    /**
+     * Writes file as a single entry, reading it only once. Already
+     * compressed formats up to a few megabytes are buffered to compute
+     * size and CRC-32 that STORED entries need before the content. Larger
+     * ones are DEFLATED without compression and other files are DEFLATED
+     * as usual, both streamed in a single pass.
+     */
+    private void writeEntry(final ZipOutputStream zip, final StoredFile file, final byte[] buffer,
+                            final ByteArrayOutputStream content) throws IOException {
+        final Resource resource = this.storageService.loadForBackground(file.getName());
+        final ZipEntry entry = new ZipEntry(file.getName());
+        entry.setTime(file.getLastModified());
+        final boolean compressed = this.isCompressed(file.getName());
+        if (compressed && file.getSize() <= STORED_LIMIT) {
+            final CRC32 crc = new CRC32();
+            content.reset();
+            try (InputStream in = resource.getInputStream()) {
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    crc.update(buffer, 0, read);
+                    content.write(buffer, 0, read);
+                }
+            }
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.size());
+            entry.setCompressedSize(content.size());
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            content.writeTo(zip);
+            zip.closeEntry();
+            return;
+        }
+
+        entry.setMethod(ZipEntry.DEFLATED);
+        zip.setLevel(compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        zip.putNextEntry(entry);
+        try (InputStream in = resource.getInputStream()) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                zip.write(buffer, 0, read);
+            }
+        }
+        zip.closeEntry();
+    }
+
+    private boolean isCompressed(final String fileName) {
+        final String extension = StringUtils.getFilenameExtension(fileName);
+        return extension != null && COMPRESSED_FORMATS.contains(extension.toLowerCase());
+    }
+}
@@ -0,0 +1,121 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+import com.gallery.util.ContentHash;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The {@link FlatStorageLayout} class stores every file under its own
+ * name directly in the storage directory.
+ */
+public class FlatStorageLayout extends AbstractStorageLayout {
+
+    public FlatStorageLayout(final Path root, final StorageIndex index) {
+        super(root, index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rebuild() throws IOException {
+        this.index.rebuild();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRebuildable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWatchable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Adding, removing or replacing a file updates modification time of
+     * the storage directory, so a single read of it tells whether the
+     * directory was changed.
+     */
+    @Override
+    public boolean isModifiedSince(final FileTime time) throws IOException {
+        return Files.getLastModifiedTime(this.root).compareTo(time) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Data is written to a temporary file first and then atomically moved
+     * in place, so partially copied files are never visible in the storage.
+     * Modification time of the source is kept to allow change detection
+     * on subsequent saves. Files of equal names overwrite each other.
+     */
+    @Override
+    public StoredFile store(final Path src, final String name,
+                            final ConcurrentMap<String, String> claimed) throws IOException {
+        final Path target = this.targetOf(name);
+        final Path tmp = this.createTempFile();
+        try {
+            this.transfer(src, tmp);
+            Files.setLastModifiedTime(tmp, Files.getLastModifiedTime(src));
+            Files.move(tmp, target, REPLACE_EXISTING, ATOMIC_MOVE);
+            this.index.refresh(target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return this.index.get(name).orElseThrow(() -> new NoSuchFileException(target.toString()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StoredFile move(final Path tmp, final String name) throws IOException {
+        final Path target = this.targetOf(name);
+        Files.move(tmp, target, REPLACE_EXISTING, ATOMIC_MOVE);
+        this.index.refresh(target);
+        return this.index.get(name).orElseThrow(() -> new NoSuchFileException(target.toString()));
+    }
+
+    /**
+     * @param name name of the stored file.
+     * @return path the file of provided name is stored at.
+     * @throws IOException on error.
+     */
+    protected Path targetOf(final String name) throws IOException {
+        return this.root.resolve(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String hashOf(final StoredFile file) throws IOException {
+        return ContentHash.of(this.resolve(file));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void touch(final StoredFile file, final long lastModified) throws IOException {
+        final Path target = this.resolve(file);
+        Files.setLastModifiedTime(target, FileTime.fromMillis(lastModified));
+        this.index.refresh(target);
+    }
+}
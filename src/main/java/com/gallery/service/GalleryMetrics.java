@@ -0,0 +1,65 @@
+package com.gallery.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link GalleryMetrics} class records measurements of storage and
+ * web operations through Actuator metric services, which publish them on
+ * the <code>/metrics</code> endpoint. Names follow the prefixes understood
+ * by the Dropwizard backed services, so timers and histograms keep
+ * percentiles and meters keep rates per second.
+ */
+@Component
+public class GalleryMetrics {
+    private final CounterService counterService;
+    private final GaugeService gaugeService;
+
+    @Autowired
+    public GalleryMetrics(final CounterService counterService, final GaugeService gaugeService) {
+        this.counterService = counterService;
+        this.gaugeService = gaugeService;
+    }
+
+    /**
+     * Records duration of an operation.
+     *
+     * @param name       name of the timer.
+     * @param startNanos value of {@link System#nanoTime()} taken when the operation started.
+     */
+    public void time(final String name, final long startNanos) {
+        this.gaugeService.submit("timer." + name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Records a single value of a distribution.
+     *
+     * @param name  name of the histogram.
+     * @param value recorded value.
+     */
+    public void histogram(final String name, final double value) {
+        this.gaugeService.submit("histogram." + name, value);
+    }
+
+    /**
+     * Records occurrence of an event, whose rate per second is tracked.
+     *
+     * @param name name of the meter.
+     */
+    public void mark(final String name) {
+        this.counterService.increment("meter." + name);
+    }
+
+    /**
+     * Increments total count of events.
+     *
+     * @param name name of the counter.
+     */
+    public void increment(final String name) {
+        this.counterService.increment("counter." + name);
+    }
+}
@@ -0,0 +1,55 @@
+package com.gallery.service;
+
+import com.gallery.model.FilePage;
+import com.gallery.model.Gallery;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The {@link GalleryService} interface defines behaviours of the registry
+ * of named galleries, each grouping a subset of stored pictures, so users
+ * importing at the same time don't see each other's pictures.
+ */
+public interface GalleryService {
+    /**
+     * Adds pictures to the gallery, creating it if it doesn't exist yet.
+     *
+     * @param name     name of the gallery.
+     * @param pictures names of stored pictures.
+     * @return snapshot of the gallery holding added pictures.
+     */
+    Gallery addPictures(String name, Collection<String> pictures);
+
+    /**
+     * Loads current snapshot of the gallery.
+     *
+     * @param name name of the gallery.
+     * @return gallery.
+     */
+    Gallery getGallery(String name);
+
+    /**
+     * @return names of all galleries in alphabetical order.
+     */
+    List<String> getGalleryNames();
+
+    /**
+     * Loads a page of pictures of the gallery ordered by name, addressed
+     * by cursors like {@link StorageService#loadPage(String, String, int)}.
+     *
+     * @param name   name of the gallery.
+     * @param after  name of the picture the page should start after, may be null.
+     * @param before name of the picture the page should end before, may be null.
+     * @param size   maximum number of pictures on the page.
+     * @return page of files.
+     */
+    FilePage loadPage(String name, String after, String before, int size);
+
+    /**
+     * Removes the gallery. Its pictures are kept in storage.
+     *
+     * @param name name of the gallery.
+     */
+    void removeGallery(String name);
+}
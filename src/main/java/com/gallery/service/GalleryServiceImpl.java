@@ -0,0 +1,166 @@
+package com.gallery.service;
+
+import com.gallery.model.FilePage;
+import com.gallery.model.Gallery;
+import com.gallery.model.StoredFile;
+import com.gallery.util.GalleryNotFoundException;
+import com.gallery.util.StorageException;
+import com.gallery.util.StorageFileNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+@Service
+public class GalleryServiceImpl implements GalleryService {
+    private static final Logger LOG = LoggerFactory.getLogger(GalleryServiceImpl.class);
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final StorageService storageService;
+    private final ConcurrentMap<String, Gallery> galleries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GalleryServiceImpl(final StorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Gallery is replaced by a new snapshot atomically, so concurrent
+     * additions never get lost and readers never wait. Gallery names are
+     * limited to letters, digits, '-' and '_', otherwise {@link StorageException}
+     * is thrown.
+     */
+    @Override
+    public Gallery addPictures(final String name, final Collection<String> pictures) {
+        Assert.notNull(pictures, "Pictures can't be null.");
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new StorageException("Invalid gallery name " + name);
+        }
+
+        final Gallery gallery = this.galleries.compute(name,
+                (key, current) -> (current == null ? new Gallery(key) : current).withPictures(pictures));
+        LOG.debug("Added {} pictures to {}.", pictures.size(), gallery);
+        return gallery;
+    }
+
+    /**
+     * {@inheritDoc}
+     * If no gallery found throws {@link GalleryNotFoundException}.
+     */
+    @Override
+    public Gallery getGallery(final String name) {
+        final Gallery gallery = name == null ? null : this.galleries.get(name);
+        if (gallery == null) {
+            throw new GalleryNotFoundException("Could not find gallery " + name);
+        }
+        return gallery;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getGalleryNames() {
+        return this.galleries.keySet().stream()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * {@inheritDoc}
+     * The whole page is read from a single snapshot of the gallery.
+     * Pictures no longer present in storage are skipped and further
+     * pictures are read in their place, so a page is only short at either
+     * end of the gallery. Skipped pictures are removed from the gallery.
+     */
+    @Override
+    public FilePage loadPage(final String name, final String after, final String before, final int size) {
+        Assert.isTrue(size > 0, "Page size must be positive.");
+        final Gallery gallery = this.getGallery(name);
+        final List<String> missing = new ArrayList<>();
+        List<StoredFile> files = before != null
+                ? this.filesBefore(gallery, before, size, missing)
+                : this.filesAfter(gallery, after, size, missing);
+        if (before != null && files.size() < size) {
+            files = this.filesAfter(gallery, null, size, missing);
+        }
+
+        final Gallery current = missing.isEmpty()
+                ? gallery
+                : this.galleries.computeIfPresent(name, (key, snapshot) -> snapshot.withoutPictures(missing));
+        final Gallery pruned = current == null ? gallery.withoutPictures(missing) : current;
+        final boolean hasPrevious = !files.isEmpty() && pruned.hasBefore(files.get(0).getName());
+        final boolean hasNext = !files.isEmpty() && pruned.hasAfter(files.get(files.size() - 1).getName());
+        return new FilePage(files, hasPrevious, hasNext, pruned.size());
+    }
+
+    /**
+     * @return up to limit stored files of pictures following the cursor, in name order.
+     */
+    private List<StoredFile> filesAfter(final Gallery gallery, final String cursor, final int limit,
+                                        final List<String> missing) {
+        final List<StoredFile> files = new ArrayList<>(limit);
+        String next = cursor;
+        while (files.size() < limit) {
+            final List<String> pictures = gallery.after(next, limit - files.size());
+            if (pictures.isEmpty()) {
+                break;
+            }
+            files.addAll(this.filesOf(gallery, pictures, missing));
+            next = pictures.get(pictures.size() - 1);
+        }
+        return files;
+    }
+
+    /**
+     * @return up to limit stored files of pictures preceding the cursor, in name order.
+     */
+    private List<StoredFile> filesBefore(final Gallery gallery, final String cursor, final int limit,
+                                         final List<String> missing) {
+        final List<StoredFile> files = new ArrayList<>(limit);
+        String previous = cursor;
+        while (files.size() < limit) {
+            final List<String> pictures = gallery.before(previous, limit - files.size());
+            if (pictures.isEmpty()) {
+                break;
+            }
+            files.addAll(0, this.filesOf(gallery, pictures, missing));
+            previous = pictures.get(0);
+        }
+        return files;
+    }
+
+    private List<StoredFile> filesOf(final Gallery gallery, final List<String> pictures, final List<String> missing) {
+        final List<StoredFile> files = new ArrayList<>(pictures.size());
+        for (String picture : pictures) {
+            try {
+                files.add(this.storageService.loadMetadata(picture));
+            } catch (StorageFileNotFoundException e) {
+                LOG.debug("Skipping picture {} of {} missing in storage.", picture, gallery);
+                missing.add(picture);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * {@inheritDoc}
+     * If no gallery found throws {@link GalleryNotFoundException}.
+     */
+    @Override
+    public void removeGallery(final String name) {
+        if (name == null || this.galleries.remove(name) == null) {
+            throw new GalleryNotFoundException("Could not find gallery " + name);
+        }
+    }
+}
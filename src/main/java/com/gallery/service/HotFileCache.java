@@ -0,0 +1,202 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.StoredFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The {@link HotFileCache} class keeps content of frequently requested
+ * files in direct buffers outside of the heap, bounded by total size in
+ * bytes. Least recently used entries are evicted first. A file is admitted
+ * only on its second miss, so files requested once do not push out hot ones.
+ * Entries are validated against current file attributes on every lookup.
+ */
+@Component
+@ManagedResource(objectName = "com.gallery:type=HotFileCache", description = "Off-heap cache of hot pictures")
+public class HotFileCache {
+    private static final Logger LOG = LoggerFactory.getLogger(HotFileCache.class);
+    private static final int MAX_CANDIDATES = 10000;
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, Boolean> candidates = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long bytes;
+
+    @Autowired
+    public HotFileCache(final GalleryProperties properties) {
+        this.enabled = properties.getCache().isEnabled();
+        this.maxBytes = properties.getCache().getMaxBytes();
+        this.maxEntryBytes = Math.min(properties.getCache().getMaxEntryBytes(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns cached content of the file, loading it from provided path if
+     * file is requested often enough and fits into the cache.
+     *
+     * @param file attributes of the stored file.
+     * @param path path to the stored content.
+     * @return read-only view of the content, or null if file is not cached.
+     * @throws IOException on error.
+     */
+    public ByteBuffer get(final StoredFile file, final Path path) throws IOException {
+        if (!this.enabled) {
+            return null;
+        }
+
+        final ByteBuffer cached = this.lookup(file);
+        if (cached != null) {
+            this.hits.incrementAndGet();
+            return cached;
+        }
+
+        this.misses.incrementAndGet();
+        if (file.getSize() > this.maxEntryBytes || !this.admit(file.getName())) {
+            return null;
+        }
+
+        final ByteBuffer content = this.read(path, file.getSize());
+        this.put(file, content);
+        return content.asReadOnlyBuffer();
+    }
+
+    /**
+     * Drops cached content of the file.
+     *
+     * @param name name of the stored file.
+     */
+    public synchronized void invalidate(final String name) {
+        final Entry entry = this.entries.remove(name);
+        if (entry != null) {
+            this.bytes -= entry.content.capacity();
+        }
+    }
+
+    /**
+     * Drops all cached content.
+     */
+    @ManagedOperation(description = "Drops all cached content")
+    public synchronized void clear() {
+        this.entries.clear();
+        this.candidates.clear();
+        this.bytes = 0;
+    }
+
+    private synchronized ByteBuffer lookup(final StoredFile file) {
+        final Entry entry = this.entries.get(file.getName());
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.matches(file)) {
+            this.invalidate(file.getName());
+            return null;
+        }
+        return entry.content.asReadOnlyBuffer();
+    }
+
+    /**
+     * @param name name of the missed file.
+     * @return true if file was already missed since it was last seen.
+     */
+    private boolean admit(final String name) {
+        if (this.candidates.remove(name) != null) {
+            return true;
+        }
+        if (this.candidates.size() >= MAX_CANDIDATES) {
+            this.candidates.clear();
+        }
+        this.candidates.put(name, Boolean.TRUE);
+        return false;
+    }
+
+    private ByteBuffer read(final Path path, final long size) throws IOException {
+        final ByteBuffer content = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            while (content.hasRemaining() && channel.read(content) != -1) {
+                LOG.trace("Reading {} into cache...", path);
+            }
+        }
+        content.flip();
+        return content;
+    }
+
+    private synchronized void put(final StoredFile file, final ByteBuffer content) {
+        this.invalidate(file.getName());
+        this.entries.put(file.getName(), new Entry(file, content));
+        this.bytes += content.capacity();
+
+        final Iterator<Map.Entry<String, Entry>> eldest = this.entries.entrySet().iterator();
+        while (this.bytes > this.maxBytes && eldest.hasNext()) {
+            this.bytes -= eldest.next().getValue().content.capacity();
+            eldest.remove();
+            this.evictions.incrementAndGet();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of lookups answered from cache")
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @ManagedAttribute(description = "Number of lookups not answered from cache")
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @ManagedAttribute(description = "Number of entries evicted to stay within size limit")
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    @ManagedAttribute(description = "Number of cached files")
+    public synchronized int getEntries() {
+        return this.entries.size();
+    }
+
+    @ManagedAttribute(description = "Total size of cached content in bytes")
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Cached content together with attributes of the file it was read from.
+     */
+    private static final class Entry {
+        private final StoredFile file;
+        private final ByteBuffer content;
+
+        private Entry(final StoredFile file, final ByteBuffer content) {
+            this.file = file;
+            this.content = content;
+        }
+
+        private boolean matches(final StoredFile current) {
+            return this.file.getSize() == current.getSize()
+                    && this.file.getLastModified() == current.getLastModified()
+                    && this.file.getLocation().equals(current.getLocation());
+        }
+    }
+}
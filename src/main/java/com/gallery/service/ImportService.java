@@ -0,0 +1,50 @@
+package com.gallery.service;
+
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.ImportJob;
+
+import java.nio.file.Path;
+
+/**
+ * The {@link ImportService} interface defines behaviours of asynchronous
+ * imports, which upload directories to server storage in background so
+ * that callers don't wait for the files to be copied.
+ */
+public interface ImportService {
+    /**
+     * Schedules import of all files found in directory corresponding to
+     * provided path and returns without waiting for it to run.
+     *
+     * @param src       path to directory in which files are located.
+     * @param detection strategy used to detect unchanged files, or null for the configured one.
+     * @return scheduled job.
+     */
+    ImportJob submit(Path src, ChangeDetection detection);
+
+    /**
+     * Schedules import like {@link #submit(Path, ChangeDetection)} and adds
+     * stored files to the named gallery once the import finishes.
+     *
+     * @param src       path to directory in which files are located.
+     * @param detection strategy used to detect unchanged files, or null for the configured one.
+     * @param gallery   name of the gallery, or null to add files to storage only.
+     * @return scheduled job.
+     */
+    ImportJob submit(Path src, ChangeDetection detection, String gallery);
+
+    /**
+     * Loads import job by its identifier.
+     *
+     * @param jobId identifier of the job.
+     * @return job.
+     */
+    ImportJob getJob(String jobId);
+
+    /**
+     * Cancels import job. Files stored before cancellation are kept.
+     *
+     * @param jobId identifier of the job.
+     * @return cancelled job.
+     */
+    ImportJob cancel(String jobId);
+}
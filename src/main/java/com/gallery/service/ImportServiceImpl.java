@@ -0,0 +1,170 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.ImportJob;
+import com.gallery.util.ImportJobNotFoundException;
+import com.gallery.util.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ImportServiceImpl implements ImportService {
+    private static final Logger LOG = LoggerFactory.getLogger(ImportServiceImpl.class);
+    private final StorageService storageService;
+    private final GalleryService galleryService;
+    private final ChangeDetection changeDetection;
+    private final int history;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final Queue<String> order = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public ImportServiceImpl(final StorageService storageService, final GalleryService galleryService,
+                             final GalleryProperties properties) {
+        final GalleryProperties.Jobs jobs = properties.getJobs();
+        this.storageService = storageService;
+        this.galleryService = galleryService;
+        this.changeDetection = properties.getStorage().getChangeDetection();
+        this.history = jobs.getHistory();
+        this.executor = new ThreadPoolExecutor(jobs.getThreads(), jobs.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobs.getQueueCapacity()),
+                new CustomizableThreadFactory("import-"));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ImportJob submit(final Path src, final ChangeDetection detection) {
+        return this.submit(src, detection, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Source directory is checked right away, so an invalid path is
+     * reported with {@link StorageException} instead of a failed job.
+     * Named gallery is created right away too, so it can be viewed while
+     * the import is running. If the pool is saturated {@link java.util.concurrent.RejectedExecutionException}
+     * is propagated to the caller.
+     */
+    @Override
+    public ImportJob submit(final Path src, final ChangeDetection detection, final String gallery) {
+        Assert.notNull(src, "Source directory can't be null.");
+        if (!Files.isDirectory(src)) {
+            throw new StorageException("Inputted path does not point to any existing directory.");
+        }
+        if (gallery != null) {
+            this.galleryService.addPictures(gallery, Collections.emptyList());
+        }
+
+        final ImportJob job = new ImportJob(UUID.randomUUID().toString(), src,
+                detection == null ? this.changeDetection : detection, gallery);
+        job.scheduled(this.executor.submit(() -> this.run(job)));
+        this.jobs.put(job.getId(), job);
+        this.order.add(job.getId());
+        this.evictFinished();
+
+        LOG.info("Scheduled import job {} of {}.", job.getId(), src);
+        return job;
+    }
+
+    private void run(final ImportJob job) {
+        if (!job.start()) {
+            return;
+        }
+
+        try {
+            this.storageService.save(job.getSource(), job.getDetection(), job.getResult());
+            this.addToGallery(job);
+            job.complete();
+            LOG.info("Finished import job {} : {}", job.getId(), job.getResult());
+        } catch (RuntimeException e) {
+            LOG.warn("Import job {} failed : {}", job.getId(), e.getLocalizedMessage());
+            job.fail(e);
+        }
+    }
+
+    /**
+     * Adds both copied and already up to date files to the gallery of the job.
+     */
+    private void addToGallery(final ImportJob job) {
+        if (job.getGallery() != null) {
+            final List<String> pictures = new ArrayList<>(job.getResult().getCopied());
+            pictures.addAll(job.getResult().getSkipped());
+            this.galleryService.addPictures(job.getGallery(), pictures);
+        }
+    }
+
+    /**
+     * Forgets oldest finished jobs above configured history size. Jobs
+     * still queued or running are always kept.
+     */
+    private void evictFinished() {
+        int excess = this.jobs.size() - this.history;
+        for (String id : this.order) {
+            if (excess <= 0) {
+                break;
+            }
+            final ImportJob job = this.jobs.get(id);
+            if (job == null || job.getState().isFinished()) {
+                this.jobs.remove(id);
+                this.order.remove(id);
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * If no job found throws {@link ImportJobNotFoundException}.
+     */
+    @Override
+    public ImportJob getJob(final String jobId) {
+        final ImportJob job = this.jobs.get(jobId);
+        if (job == null) {
+            throw new ImportJobNotFoundException("Could not find import job " + jobId);
+        }
+        return job;
+    }
+
+    /**
+     * {@inheritDoc}
+     * If no job found throws {@link ImportJobNotFoundException}.
+     */
+    @Override
+    public ImportJob cancel(final String jobId) {
+        final ImportJob job = this.getJob(jobId);
+        if (job.cancel()) {
+            LOG.info("Cancelled import job {} : {}", jobId, job.getResult());
+        }
+        return job;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.jobs.values().forEach(ImportJob::cancel);
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+
+import java.io.IOException;
+
+/**
+ * The {@link IndexJournal} interface receives every change applied to the
+ * {@link StorageIndex}, in the order changes were applied.
+ */
+public interface IndexJournal {
+    /**
+     * Journal discarding all changes.
+     */
+    IndexJournal NONE = new IndexJournal() {
+        @Override
+        public void put(final StoredFile file) {
+        }
+
+        @Override
+        public void remove(final String name) {
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public void sync() {
+        }
+    };
+
+    /**
+     * @param file added or replaced entry.
+     */
+    void put(StoredFile file);
+
+    /**
+     * @param name name of the removed entry.
+     */
+    void remove(String name);
+
+    /**
+     * Records removal of all entries.
+     */
+    void clear();
+
+    /**
+     * Makes all changes received so far durable.
+     *
+     * @throws IOException on error.
+     */
+    void sync() throws IOException;
+}
@@ -0,0 +1,208 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link IoScheduler} class shares the storage disk between pictures
+ * being served to browsing users and files being written by saves and
+ * uploads. Both sides are bounded in concurrency. Writes additionally
+ * give way to reads in progress for a short while and draw from a budget
+ * of bytes per second, so a large import does not raise serving latency.
+ * Reads by background work, such as preparing variants or exporting
+ * archives, are bounded on their own and give way to served pictures too.
+ * <p>
+ * Every access is granted as a {@link Permit}, which has to be closed
+ * once the access completes.
+ */
+@Component
+@ManagedResource(objectName = "com.gallery:type=IoScheduler", description = "Scheduler of storage disk access")
+public class IoScheduler {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final GalleryMetrics metrics;
+    private final Semaphore interactivePermits;
+    private final Semaphore backgroundPermits;
+    private final Semaphore ingestPermits;
+    private final long ingestBytesPerSecond;
+    private final long ingestYieldNanos;
+    private final long backgroundYieldNanos;
+    private final AtomicInteger interactive = new AtomicInteger();
+    private final AtomicInteger ingesting = new AtomicInteger();
+    private final Object idle = new Object();
+    private double budget;
+    private long refilled = System.nanoTime();
+
+    @Autowired
+    public IoScheduler(final GalleryProperties properties, final GalleryMetrics metrics) {
+        this.metrics = metrics;
+        this.interactivePermits = new Semaphore(Math.max(1, properties.getIo().getInteractiveConcurrency()));
+        this.backgroundPermits = new Semaphore(Math.max(1, properties.getIo().getBackgroundConcurrency()), true);
+        this.ingestPermits = new Semaphore(Math.max(1, properties.getIo().getIngestConcurrency()), true);
+        this.ingestBytesPerSecond = Math.max(0, properties.getIo().getIngestBytesPerSecond());
+        this.ingestYieldNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getIo().getIngestYield()));
+        this.backgroundYieldNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getIo().getBackgroundYield()));
+        this.budget = this.ingestBytesPerSecond;
+    }
+
+    /**
+     * Waits until stored content can be read.
+     *
+     * @return permit to close once the bytes are read.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    public Permit interactive() throws InterruptedIOException {
+        acquire(this.interactivePermits);
+        this.interactive.incrementAndGet();
+        return () -> {
+            if (this.interactive.decrementAndGet() == 0) {
+                synchronized (this.idle) {
+                    this.idle.notifyAll();
+                }
+            }
+            this.interactivePermits.release();
+        };
+    }
+
+    /**
+     * Waits until stored content can be read by background work. Pictures
+     * being served are given time to complete first, then one of background
+     * permits is taken. Background reads are not counted as served pictures,
+     * so ingest does not give way to them.
+     *
+     * @return permit to close once the bytes are read.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    public Permit background() throws InterruptedIOException {
+        this.yieldToInteractive(System.nanoTime() + this.backgroundYieldNanos);
+        acquire(this.backgroundPermits);
+        return this.backgroundPermits::release;
+    }
+
+    /**
+     * Waits until a file can be written to storage. Pictures being served
+     * are given time to complete first, then one of ingest permits is taken
+     * and the caller sleeps until the budget is out of debt. Written bytes
+     * put the budget in debt, so a large file is paid for by files written
+     * after it.
+     *
+     * @param bytes number of bytes to be written.
+     * @return permit to close once the file is written.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    public Permit ingest(final long bytes) throws InterruptedIOException {
+        final long start = System.nanoTime();
+        this.ingesting.incrementAndGet();
+        try {
+            this.yieldToInteractive(start + this.ingestYieldNanos);
+            acquire(this.ingestPermits);
+        } catch (InterruptedIOException e) {
+            this.ingesting.decrementAndGet();
+            throw e;
+        }
+        try {
+            final long delay = this.reserve(bytes);
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            this.ingestPermits.release();
+            this.ingesting.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for ingest budget.");
+        }
+        this.metrics.time("io.ingest.wait", start);
+        return () -> {
+            this.ingestPermits.release();
+            this.ingesting.decrementAndGet();
+        };
+    }
+
+    /**
+     * @return true if files are being written to storage or wait to be
+     * written, so reads have to be granted permits for ingest to give way.
+     */
+    public boolean isIngesting() {
+        return this.ingesting.get() > 0;
+    }
+
+    private void yieldToInteractive(final long deadline) throws InterruptedIOException {
+        synchronized (this.idle) {
+            long remaining;
+            while (this.interactive.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this.idle, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while yielding to served pictures.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes bytes from the budget, which refills continuously at the
+     * configured rate up to the amount of a single second.
+     *
+     * @param bytes number of bytes to take.
+     * @return time in nanoseconds until the budget is no longer in debt.
+     */
+    private synchronized long reserve(final long bytes) {
+        if (this.ingestBytesPerSecond == 0) {
+            return 0;
+        }
+
+        final long now = System.nanoTime();
+        this.budget = Math.min(this.ingestBytesPerSecond,
+                this.budget + (double) (now - this.refilled) * this.ingestBytesPerSecond / NANOS_PER_SECOND);
+        this.refilled = now;
+        final long delay = this.budget >= 0
+                ? 0 : (long) (-this.budget * NANOS_PER_SECOND / this.ingestBytesPerSecond);
+        this.budget -= bytes;
+        return delay;
+    }
+
+    private static void acquire(final Semaphore permits) throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for storage access.");
+        }
+    }
+
+    @ManagedAttribute(description = "Number of pictures being served")
+    public int getInteractive() {
+        return this.interactive.get();
+    }
+
+    @ManagedAttribute(description = "Number of background reads waiting for storage access")
+    public int getBackgroundQueueLength() {
+        return this.backgroundPermits.getQueueLength();
+    }
+
+    @ManagedAttribute(description = "Number of files waiting to be written to storage")
+    public int getIngestQueueLength() {
+        return this.ingestPermits.getQueueLength();
+    }
+
+    /**
+     * Granted access to the storage disk.
+     */
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        /**
+         * Releases the access.
+         */
+        @Override
+        void close();
+    }
+}
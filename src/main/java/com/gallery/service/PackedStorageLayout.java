@@ -0,0 +1,593 @@
+package com.gallery.service;
+
+import com.gallery.model.PictureType;
+import com.gallery.model.StoredFile;
+import com.gallery.util.ContentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The {@link PackedStorageLayout} class appends content of files to large
+ * pack files instead of keeping a file per picture, so millions of small
+ * pictures take a few inodes and back up as a few large files. Every record
+ * starts with a header holding name, modification time, length and
+ * dimensions of the file, so the index can be rebuilt by reading headers
+ * only. Stored content is read through memory mapped slices of fixed size
+ * windows of its pack.
+ * <p>
+ * Records of replaced files stay in their packs as garbage. Once a pack is
+ * full and another one is started, sealed packs of too much garbage are
+ * compacted in background: their live records are copied to the current
+ * pack and the old pack is deleted.
+ */
+public class PackedStorageLayout extends AbstractStorageLayout {
+    private static final Logger LOG = LoggerFactory.getLogger(PackedStorageLayout.class);
+    private static final int RECORD_MAGIC = 0x47504B31;
+    private static final String PACK_SUFFIX = ".pack";
+    private static final String LOCATION_SEPARATOR = "@";
+    private static final int FIXED_HEADER_LENGTH = 4 + 2 + 8 + 8 + 4 + 4 + 1;
+    private static final long MAPPING_WINDOW = 16L * 1024 * 1024;
+
+    private final long packSize;
+    private final double garbageRatio;
+    private final ConcurrentMap<String, ConcurrentMap<Long, MappedByteBuffer>> mappings = new ConcurrentHashMap<>();
+    private final Object compaction = new Object();
+    private final ExecutorService compactor;
+    private FileChannel active;
+    private Path activePath;
+
+    /**
+     * @param root         storage directory holding packs.
+     * @param index        index of stored files.
+     * @param packSize     size in bytes after which a new pack is started.
+     * @param garbageRatio share of replaced content that makes a sealed pack compacted.
+     */
+    public PackedStorageLayout(final Path root, final StorageIndex index, final long packSize,
+                               final double garbageRatio) {
+        super(root, index);
+        this.packSize = Math.max(1, Math.min(packSize, Integer.MAX_VALUE));
+        this.garbageRatio = garbageRatio;
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("compact-");
+        threadFactory.setDaemon(true);
+        this.compactor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Record headers of all packs are read in order of the packs, so a later
+     * record of a name replaces an earlier one. Torn record at the end of
+     * the last pack, left by a crash, is cut off.
+     */
+    @Override
+    public synchronized void rebuild() throws IOException {
+        this.close();
+        final List<Path> packs = this.listPacks();
+        final List<StoredFile> entries = new ArrayList<>();
+        for (int i = 0; i < packs.size(); i++) {
+            this.scan(packs.get(i), i == packs.size() - 1, entries);
+        }
+        this.index.replace(entries);
+        LOG.debug("Indexed {} stored files from {} packs.", this.index.size(), packs.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRebuildable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWatchable() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Packs are only ever written through the application, so the saved
+     * index is always current.
+     */
+    @Override
+    public boolean isModifiedSince(final FileTime time) {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Files of equal names replace each other.
+     */
+    @Override
+    public StoredFile store(final Path src, final String name,
+                            final ConcurrentMap<String, String> claimed) throws IOException {
+        final StoredFile entry = StorageIndex.describe(new StoredFile(name, Files.size(src),
+                Files.getLastModifiedTime(src).toMillis(), this.index.contentTypeOf(name), null, null), src);
+        try (FileChannel in = FileChannel.open(src, READ)) {
+            synchronized (this) {
+                final StoredFile stored = this.append(entry, in, 0);
+                this.index.put(stored);
+                return stored;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Content is appended to the current pack and the temporary file is removed.
+     */
+    @Override
+    public StoredFile move(final Path tmp, final String name) throws IOException {
+        try {
+            return this.store(tmp, name, null);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String hashOf(final StoredFile file) throws IOException {
+        final MessageDigest digest = ContentHash.newDigest();
+        digest.update(this.map(file));
+        return ContentHash.toHex(digest.digest());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Modification time is kept in the index only, as the record is never rewritten.
+     */
+    @Override
+    public void touch(final StoredFile file, final long lastModified) {
+        this.index.put(file.withLastModified(lastModified));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Returns the pack holding the content among records of other files.
+     */
+    @Override
+    public Path resolve(final StoredFile file) {
+        return this.root.resolve(packOf(file));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Packs are mapped in windows of fixed size, each once. Only the last
+     * window of the current pack is mapped again, when a record appended
+     * after its mapping is requested, and records crossing the boundary of
+     * a window are mapped on their own. If the pack was deleted by
+     * compaction in the meantime, content is read from where the index
+     * currently points.
+     */
+    @Override
+    public ByteBuffer map(final StoredFile file) throws IOException {
+        try {
+            return this.slice(file);
+        } catch (NoSuchFileException e) {
+            final StoredFile current = this.index.get(file.getName()).orElseThrow(() -> e);
+            if (current.getLocation().equals(file.getLocation())) {
+                throw e;
+            }
+            return this.slice(current);
+        }
+    }
+
+    private ByteBuffer slice(final StoredFile file) throws IOException {
+        final String pack = packOf(file);
+        final long offset = offsetOf(file);
+        final long end = offset + file.getSize();
+        final long window = offset / MAPPING_WINDOW;
+        final long start = window * MAPPING_WINDOW;
+        if (end > start + MAPPING_WINDOW) {
+            return this.mapRange(pack, file, offset, end).asReadOnlyBuffer();
+        }
+
+        final ConcurrentMap<Long, MappedByteBuffer> windows =
+                this.mappings.computeIfAbsent(pack, key -> new ConcurrentHashMap<>());
+        MappedByteBuffer mapping = windows.get(window);
+        if (mapping == null || start + mapping.capacity() < end) {
+            mapping = this.mapRange(pack, file, start, start + MAPPING_WINDOW);
+            windows.put(window, mapping);
+        }
+
+        final ByteBuffer slice = mapping.duplicate();
+        slice.position((int) (offset - start)).limit((int) (end - start));
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Maps the pack from the start up to the limit, or up to its end if it
+     * is shorter.
+     *
+     * @param file file whose record must be covered by the mapping.
+     */
+    private MappedByteBuffer mapRange(final String pack, final StoredFile file, final long start, final long limit)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(this.root.resolve(pack), READ)) {
+            final long end = Math.min(limit, channel.size());
+            if (end < offsetOf(file) + file.getSize()) {
+                throw new IOException("Pack " + pack + " is shorter than record of " + file.getName());
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+    }
+
+    /**
+     * Compacts every sealed pack in which replaced records take at least
+     * configured share of its size. Live size of packs is summed from the
+     * index in a single pass. Only one compaction runs at a time, while
+     * files keep being stored.
+     *
+     * @throws IOException on error.
+     */
+    public void compact() throws IOException {
+        synchronized (this.compaction) {
+            this.compactSealed();
+        }
+    }
+
+    private void compactSealed() throws IOException {
+        final Map<String, Long> live = new HashMap<>();
+        this.index.stream()
+                .filter(file -> file.getLocation().contains(LOCATION_SEPARATOR))
+                .forEach(file -> live.merge(packOf(file), recordLengthOf(file), Long::sum));
+
+        final Path current;
+        synchronized (this) {
+            if (this.active == null) {
+                this.openActive();
+            }
+            current = this.activePath;
+        }
+
+        for (Path pack : this.listPacks()) {
+            final String name = pack.getFileName().toString();
+            if (this.numberOf(pack) >= this.numberOf(current)) {
+                continue;
+            }
+            final long size = Files.size(pack);
+            final long garbage = size - live.getOrDefault(name, 0L);
+            if (garbage > 0 && garbage >= size * this.garbageRatio) {
+                this.compact(pack);
+            }
+        }
+    }
+
+    /**
+     * Copies live records of the pack to the current pack one by one and
+     * deletes the pack. A record replaced while being copied is left behind.
+     * Copied records are forced to disk and the index journal made durable
+     * before the pack is deleted, so a crash never leaves the index pointing
+     * to content that is gone.
+     */
+    private void compact(final Path pack) throws IOException {
+        final String name = pack.getFileName().toString();
+        final List<StoredFile> files = this.index.stream()
+                .filter(file -> file.getLocation().contains(LOCATION_SEPARATOR) && name.equals(packOf(file)))
+                .collect(Collectors.toList());
+
+        try (FileChannel in = FileChannel.open(pack, READ)) {
+            for (StoredFile file : files) {
+                synchronized (this) {
+                    final StoredFile current = this.index.get(file.getName()).orElse(null);
+                    if (current != null && current.getLocation().equals(file.getLocation())) {
+                        this.index.put(this.append(current, in, offsetOf(current)));
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            if (this.active != null) {
+                this.active.force(false);
+            }
+        }
+        this.index.sync();
+        this.mappings.remove(name);
+        Files.deleteIfExists(pack);
+        LOG.info("Compacted pack {}, moved {} live records.", name, files.size());
+    }
+
+    /**
+     * Appends record of the file to the current pack, starting a new pack
+     * if the record does not fit into the current one. Caller holds the lock.
+     *
+     * @param file     entry of the file.
+     * @param content  channel to read the content from.
+     * @param position position of the content in the channel.
+     * @return entry of the file pointing to the appended content.
+     * @throws IOException on error.
+     */
+    private StoredFile append(final StoredFile file, final FileChannel content, final long position)
+            throws IOException {
+        final byte[] header = headerOf(file);
+        if (file.getSize() > Integer.MAX_VALUE - header.length) {
+            throw new IOException("File " + file.getName() + " is too large to be packed.");
+        }
+
+        final FileChannel pack = this.activeFor(header.length + file.getSize());
+        final long start = pack.size();
+        final ByteBuffer buffer = ByteBuffer.wrap(header);
+        while (buffer.hasRemaining()) {
+            pack.write(buffer, start + buffer.position());
+        }
+
+        final long offset = start + header.length;
+        pack.position(offset);
+        long copied = 0;
+        while (copied < file.getSize()) {
+            final long transferred = content.transferTo(position + copied, file.getSize() - copied, pack);
+            if (transferred <= 0) {
+                pack.truncate(start);
+                throw new IOException("Source file was truncated during copy.");
+            }
+            copied += transferred;
+        }
+        return file.withLocation(this.activePath.getFileName() + LOCATION_SEPARATOR + offset);
+    }
+
+    /**
+     * @param length length of the record to append.
+     * @return channel of the pack the record should be appended to.
+     */
+    private FileChannel activeFor(final long length) throws IOException {
+        if (this.active == null) {
+            this.openActive();
+        }
+        if (this.active.size() > 0 && this.active.size() + length > this.packSize) {
+            this.active.force(false);
+            this.active.close();
+            this.active = null;
+            this.startPack(this.numberOf(this.activePath) + 1);
+            this.compactor.execute(() -> {
+                try {
+                    this.compact();
+                } catch (IOException e) {
+                    LOG.warn("Failed to compact packs : {}.", e.getLocalizedMessage());
+                }
+            });
+        }
+        return this.active;
+    }
+
+    /**
+     * Continues appending to the last pack, after cutting off its torn tail,
+     * or starts the first one.
+     */
+    private void openActive() throws IOException {
+        Files.createDirectories(this.root);
+        final List<Path> packs = this.listPacks();
+        if (packs.isEmpty()) {
+            this.startPack(1);
+            return;
+        }
+
+        final Path last = packs.get(packs.size() - 1);
+        final long valid = this.validLengthOf(last);
+        this.active = FileChannel.open(last, READ, WRITE);
+        this.activePath = last;
+        if (valid < this.active.size()) {
+            LOG.warn("Dropping damaged tail of pack {} after {} bytes.", last.getFileName(), valid);
+            this.active.truncate(valid);
+        }
+    }
+
+    private void startPack(final long number) throws IOException {
+        this.activePath = this.root.resolve(String.format("%08d", number) + PACK_SUFFIX);
+        this.active = FileChannel.open(this.activePath, CREATE_NEW, READ, WRITE);
+    }
+
+    /**
+     * Collects entries of all complete records of the pack.
+     *
+     * @param pack    pack to read.
+     * @param last    whether the pack is the last one, whose torn tail is cut off.
+     * @param entries entries to add records of the pack to.
+     */
+    private void scan(final Path pack, final boolean last, final List<StoredFile> entries) throws IOException {
+        final String name = pack.getFileName().toString();
+        try (FileChannel channel = FileChannel.open(pack, READ, WRITE)) {
+            final long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                final Record record = readRecord(channel, position);
+                if (record == null) {
+                    break;
+                }
+                final StoredFile entry = new StoredFile(record.name, record.length, record.lastModified,
+                        this.index.contentTypeOf(record.name), name + LOCATION_SEPARATOR + record.offset, null,
+                        record.width, record.height, record.bitDepth, null);
+                final Optional<PictureType> type = typeOf(channel, record);
+                entries.add(type.isPresent() ? entry.withType(type.get()) : entry);
+                position = record.offset + record.length;
+            }
+            if (position < size) {
+                LOG.warn("Pack {} is damaged after {} bytes.", name, position);
+                if (last) {
+                    channel.truncate(position);
+                }
+            }
+        }
+    }
+
+    private long validLengthOf(final Path pack) throws IOException {
+        try (FileChannel channel = FileChannel.open(pack, READ)) {
+            long position = 0;
+            Record record;
+            while ((record = readRecord(channel, position)) != null) {
+                position = record.offset + record.length;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * @return type of the picture recognised by leading bytes of the record content.
+     */
+    private static Optional<PictureType> typeOf(final FileChannel channel, final Record record) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate((int) Math.min(PictureType.HEADER_LENGTH, record.length));
+        return PictureType.detect(header.array(), readFully(channel, header, record.offset));
+    }
+
+    /**
+     * @return record starting at provided position, or null if there is no complete record.
+     */
+    private static Record readRecord(final FileChannel channel, final long position) throws IOException {
+        final ByteBuffer prefix = ByteBuffer.allocate(6);
+        if (readFully(channel, prefix, position) < prefix.capacity() || prefix.getInt(0) != RECORD_MAGIC) {
+            return null;
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_LENGTH + (prefix.getShort(4) & 0xFFFF));
+        if (readFully(channel, header, position) < header.capacity()) {
+            return null;
+        }
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+        in.readInt();
+        final Record record = new Record(in.readUTF(), in.readLong(), in.readLong(), in.readInt(), in.readInt(),
+                in.readUnsignedByte(), position + header.capacity());
+        return record.offset + record.length <= channel.size() ? record : null;
+    }
+
+    private static int readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    private static byte[] headerOf(final StoredFile file) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(FIXED_HEADER_LENGTH + file.getName().length());
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(RECORD_MAGIC);
+        out.writeUTF(file.getName());
+        out.writeLong(file.getLastModified());
+        out.writeLong(file.getSize());
+        out.writeInt(file.getWidth());
+        out.writeInt(file.getHeight());
+        out.writeByte(file.getBitDepth());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return length of the record of the file, header included.
+     */
+    private static long recordLengthOf(final StoredFile file) {
+        long nameLength = 0;
+        for (int i = 0; i < file.getName().length(); i++) {
+            final char c = file.getName().charAt(i);
+            nameLength += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return FIXED_HEADER_LENGTH + nameLength + file.getSize();
+    }
+
+    private static String packOf(final StoredFile file) {
+        final String location = file.getLocation();
+        return location.substring(0, location.lastIndexOf(LOCATION_SEPARATOR));
+    }
+
+    private static long offsetOf(final StoredFile file) {
+        final String location = file.getLocation();
+        return Long.parseLong(location.substring(location.lastIndexOf(LOCATION_SEPARATOR) + 1));
+    }
+
+    private long numberOf(final Path pack) {
+        final String name = pack.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - PACK_SUFFIX.length()));
+    }
+
+    /**
+     * @return packs in order they were started.
+     */
+    private List<Path> listPacks() throws IOException {
+        if (!Files.isDirectory(this.root)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(this.root)) {
+            return files
+                    .filter(file -> file.getFileName().toString().matches("\\d+" + PACK_SUFFIX.replace(".", "\\.")))
+                    .sorted((a, b) -> Long.compare(this.numberOf(a), this.numberOf(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Mappings are dropped, slices already handed out stay readable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.mappings.clear();
+        if (this.active != null) {
+            this.active.close();
+            this.active = null;
+            this.activePath = null;
+        }
+    }
+
+    /**
+     * Header of a single record.
+     */
+    private static final class Record {
+        private final String name;
+        private final long lastModified;
+        private final long length;
+        private final int width;
+        private final int height;
+        private final int bitDepth;
+        private final long offset;
+
+        private Record(final String name, final long lastModified, final long length, final int width,
+                       final int height, final int bitDepth, final long offset) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.width = width;
+            this.height = height;
+            this.bitDepth = bitDepth;
+            this.offset = offset;
+        }
+    }
+}
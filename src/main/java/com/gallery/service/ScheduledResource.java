@@ -0,0 +1,308 @@
+package com.gallery.service;
+
+import com.gallery.util.ByteBufferResource;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The {@link ScheduledResource} class reads stored content under
+ * interactive permits of {@link IoScheduler}, so ingest gives way to it,
+ * or under background permits when read by background work, so it gives
+ * way to pictures being served.
+ * A permit is held only while bytes are read from storage and is released
+ * before they are handed over, so a slow consumer, such as a client on a
+ * slow network, never keeps ingest waiting.
+ * <p>
+ * The file holding the content is exposed only while no file is being
+ * written to storage. Then it may be read outside of the scheduler, for
+ * instance by sendfile of the servlet container. Pictures decoded by
+ * regions are read through {@link #openImageInputStream()} instead, which
+ * is scheduled whether files are being written or not.
+ */
+public class ScheduledResource extends AbstractResource {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Resource resource;
+    private final IoScheduler scheduler;
+    private final boolean background;
+
+    /**
+     * @param resource  resource holding stored content.
+     * @param scheduler scheduler granting reads of the content.
+     */
+    ScheduledResource(final Resource resource, final IoScheduler scheduler) {
+        this(resource, scheduler, false);
+    }
+
+    /**
+     * @param resource   resource holding stored content.
+     * @param scheduler  scheduler granting reads of the content.
+     * @param background whether the content is read by background work.
+     */
+    ScheduledResource(final Resource resource, final IoScheduler scheduler, final boolean background) {
+        this.resource = resource;
+        this.scheduler = scheduler;
+        this.background = background;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every read of the stream is granted its own permit.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new FilterInputStream(this.resource.getInputStream()) {
+            @Override
+            public int read() throws IOException {
+                try (IoScheduler.Permit permit = permit()) {
+                    return super.read();
+                }
+            }
+
+            @Override
+            public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+                try (IoScheduler.Permit permit = permit()) {
+                    return super.read(bytes, offset, length);
+                }
+            }
+
+            @Override
+            public long skip(final long count) throws IOException {
+                try (IoScheduler.Permit permit = permit()) {
+                    return super.skip(count);
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws FileNotFoundException if content is not held in a file, or if
+     *                               files are being written to storage, so
+     *                               the content has to be read through this resource.
+     */
+    @Override
+    public File getFile() throws IOException {
+        if (this.scheduler.isIngesting()) {
+            throw new FileNotFoundException(this.getDescription() + " is read under scheduling while ingesting.");
+        }
+        return this.resource.getFile();
+    }
+
+    /**
+     * Opens the content for random access without copying it, so a picture
+     * can be decoded by regions. Every chunk of the content is read under
+     * its own permit.
+     *
+     * @return stream reading the content.
+     * @throws IOException on error.
+     */
+    public ImageInputStream openImageInputStream() throws IOException {
+        if (this.resource instanceof ByteBufferResource) {
+            return new ContentImageInputStream(((ByteBufferResource) this.resource).getByteBuffer().slice(), null);
+        }
+        return new ContentImageInputStream(null, FileChannel.open(this.resource.getFile().toPath(), READ));
+    }
+
+    /**
+     * Copies part of the content to the channel chunk by chunk. Every chunk
+     * is read under its own permit, which is released before the chunk is
+     * written.
+     *
+     * @param position position of the first byte to copy.
+     * @param count    number of bytes to copy.
+     * @param out      channel to write the bytes to.
+     * @throws IOException on error.
+     */
+    public void copyTo(final long position, final long count, final WritableByteChannel out) throws IOException {
+        final ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, Math.max(1, count)));
+        if (this.resource instanceof ByteBufferResource) {
+            final ByteBuffer content = ((ByteBufferResource) this.resource).getByteBuffer();
+            content.position(content.position() + (int) position);
+            content.limit(content.position() + (int) count);
+            while (content.hasRemaining()) {
+                chunk.clear();
+                try (IoScheduler.Permit permit = this.permit()) {
+                    final ByteBuffer part = content.duplicate();
+                    part.limit(part.position() + Math.min(chunk.remaining(), part.remaining()));
+                    chunk.put(part);
+                    content.position(part.position());
+                }
+                this.write(chunk, out);
+            }
+            return;
+        }
+
+        try (FileChannel in = FileChannel.open(this.resource.getFile().toPath(), READ)) {
+            long copied = 0;
+            while (copied < count) {
+                chunk.clear();
+                chunk.limit((int) Math.min(chunk.capacity(), count - copied));
+                final int read;
+                try (IoScheduler.Permit permit = this.permit()) {
+                    read = in.read(chunk, position + copied);
+                }
+                if (read <= 0) {
+                    throw new IOException(this.getDescription() + " was truncated while being read.");
+                }
+                copied += read;
+                this.write(chunk, out);
+            }
+        }
+    }
+
+    private IoScheduler.Permit permit() throws InterruptedIOException {
+        return this.background ? this.scheduler.background() : this.scheduler.interactive();
+    }
+
+    private void write(final ByteBuffer chunk, final WritableByteChannel out) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            out.write(chunk);
+        }
+    }
+
+    /**
+     * Reads content held either in memory or in a file, a chunk at a time.
+     */
+    private final class ContentImageInputStream extends ImageInputStreamImpl {
+        private final ByteBuffer content;
+        private final FileChannel channel;
+        private final long length;
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        private long chunkStart;
+
+        /**
+         * @param content content held in memory, or null if held in a file.
+         * @param channel channel of the file holding the content, or null.
+         */
+        private ContentImageInputStream(final ByteBuffer content, final FileChannel channel) throws IOException {
+            this.content = content;
+            this.channel = channel;
+            this.length = content != null ? content.remaining() : channel.size();
+            this.chunk.limit(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            this.checkClosed();
+            this.bitOffset = 0;
+            if (!this.fill()) {
+                return -1;
+            }
+            return this.chunk.get((int) (this.streamPos++ - this.chunkStart)) & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int count) throws IOException {
+            this.checkClosed();
+            if (offset < 0 || count < 0 || offset + count > bytes.length) {
+                throw new IndexOutOfBoundsException("Range " + offset + "+" + count + " is out of array bounds.");
+            }
+            this.bitOffset = 0;
+            if (count == 0) {
+                return 0;
+            }
+            if (!this.fill()) {
+                return -1;
+            }
+            final ByteBuffer part = this.chunk.duplicate();
+            part.position((int) (this.streamPos - this.chunkStart));
+            final int read = Math.min(count, part.remaining());
+            part.get(bytes, offset, read);
+            this.streamPos += read;
+            return read;
+        }
+
+        /**
+         * Reads the chunk holding the byte at current position, unless it
+         * is read already.
+         *
+         * @return false if current position is at the end of the content.
+         */
+        private boolean fill() throws IOException {
+            if (this.streamPos >= this.chunkStart && this.streamPos < this.chunkStart + this.chunk.limit()) {
+                return true;
+            }
+            if (this.streamPos >= this.length) {
+                return false;
+            }
+
+            this.chunk.clear();
+            this.chunkStart = this.streamPos;
+            try (IoScheduler.Permit permit = ScheduledResource.this.permit()) {
+                if (this.content != null) {
+                    final ByteBuffer part = this.content.duplicate();
+                    part.position((int) this.chunkStart);
+                    part.limit((int) Math.min(this.length, this.chunkStart + this.chunk.capacity()));
+                    this.chunk.put(part);
+                } else {
+                    int read;
+                    do {
+                        read = this.channel.read(this.chunk, this.chunkStart + this.chunk.position());
+                    } while (read > 0 && this.chunk.hasRemaining());
+                }
+            }
+            this.chunk.flip();
+            return this.chunk.hasRemaining();
+        }
+
+        @Override
+        public long length() {
+            return this.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (this.channel != null) {
+                this.channel.close();
+            }
+        }
+    }
+
+    @Override
+    public boolean exists() {
+        return this.resource.exists();
+    }
+
+    @Override
+    public boolean isReadable() {
+        return this.resource.isReadable();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return this.resource.contentLength();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return this.resource.lastModified();
+    }
+
+    @Override
+    public String getFilename() {
+        return this.resource.getFilename();
+    }
+
+    @Override
+    public String getDescription() {
+        return this.resource.getDescription();
+    }
+}
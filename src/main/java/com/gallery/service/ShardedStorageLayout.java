@@ -0,0 +1,146 @@
+package com.gallery.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The {@link ShardedStorageLayout} class stores every file under its own
+ * name, spread over nested directories named after the hash of the name,
+ * e.g. {@code 3f/a2/picture.png}. No directory ever holds more than 256
+ * entries per level, so lookups, walks and backups stay fast with millions
+ * of stored files. Location of a file is computed from its name alone.
+ * Files found directly in the storage directory, left by the flat layout,
+ * are moved into their shards on rebuild.
+ */
+public class ShardedStorageLayout extends FlatStorageLayout {
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedStorageLayout.class);
+    private static final int MAX_LEVELS = 4;
+
+    private final int levels;
+
+    /**
+     * @param root   storage directory.
+     * @param index  index of stored files.
+     * @param levels number of nested directory levels, from 1 to 4.
+     */
+    public ShardedStorageLayout(final Path root, final StorageIndex index, final int levels) {
+        super(root, index);
+        Assert.isTrue(levels > 0 && levels <= MAX_LEVELS, "Shard levels must be between 1 and " + MAX_LEVELS + ".");
+        this.levels = levels;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Flat files are migrated into their shards first.
+     */
+    @Override
+    public void rebuild() throws IOException {
+        this.migrate();
+        try (Stream<Path> stream = Files.walk(this.root, this.levels + 1)) {
+            this.index.rebuild(stream.filter(path ->
+                    !this.isHidden(path) && this.root.relativize(path).getNameCount() > this.levels));
+        }
+        LOG.debug("Indexed {} stored files in {} shard levels.", this.index.size(), this.levels);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Sharded directories are not watched.
+     */
+    @Override
+    public boolean isWatchable() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Storage directory holds only shard directories, so listing it is
+     * cheap and tells whether flat files wait for migration.
+     */
+    @Override
+    public boolean isModifiedSince(final FileTime time) throws IOException {
+        return !this.flatFiles().isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Shard directory is created if missing.
+     */
+    @Override
+    protected Path targetOf(final String name) throws IOException {
+        final Path target = this.root.resolve(this.locationOf(name));
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+
+    /**
+     * @param name name of the stored file.
+     * @return path of the file relative to the storage directory.
+     */
+    String locationOf(final String name) {
+        final int hash = mix(name.hashCode());
+        final StringBuilder location = new StringBuilder(3 * this.levels + name.length());
+        for (int level = 0; level < this.levels; level++) {
+            final int shard = (hash >>> (24 - 8 * level)) & 0xFF;
+            location.append(Character.forDigit(shard >>> 4, 16))
+                    .append(Character.forDigit(shard & 0xF, 16))
+                    .append('/');
+        }
+        return location.append(name).toString();
+    }
+
+    /**
+     * Moves files stored directly in the storage directory into their shards.
+     */
+    private void migrate() throws IOException {
+        final List<Path> files = this.flatFiles();
+        for (Path file : files) {
+            Files.move(file, this.targetOf(file.getFileName().toString()), REPLACE_EXISTING, ATOMIC_MOVE);
+        }
+        if (!files.isEmpty()) {
+            LOG.info("Migrated {} flat stored files into shards.", files.size());
+        }
+    }
+
+    private List<Path> flatFiles() throws IOException {
+        try (Stream<Path> stream = Files.list(this.root)) {
+            return stream.filter(path -> !this.isHidden(path) && Files.isRegularFile(path))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private boolean isHidden(final Path path) {
+        for (Path name : this.root.relativize(path)) {
+            if (name.toString().startsWith(".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Spreads bits of {@link String#hashCode()}, which is stable across
+     * JVMs, so similar names land in different shards.
+     */
+    private static int mix(final int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,379 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+import com.gallery.util.PictureHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * The {@link StorageIndex} class keeps attributes of all stored files in
+ * memory, ordered by file name, so listings can be answered without
+ * touching the file system. It is safe for concurrent use; readers never
+ * block writers. Writers are serialized, so every change reaches the
+ * {@link IndexJournal} in the order it was applied. For entries with known
+ * content hash the index also counts how many names refer to the same content.
+ */
+public class StorageIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(StorageIndex.class);
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final Path root;
+    private final Predicate<Path> filter;
+    private volatile ConcurrentNavigableMap<String, StoredFile> files = new ConcurrentSkipListMap<>();
+    private volatile ConcurrentMap<String, Integer> references = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private volatile IndexJournal journal = IndexJournal.NONE;
+
+    /**
+     * @param root   directory whose files are indexed.
+     * @param filter accepts files that should be indexed.
+     */
+    public StorageIndex(final Path root, final Predicate<Path> filter) {
+        this.root = root;
+        this.filter = filter;
+    }
+
+    /**
+     * @param journal journal receiving all further changes.
+     */
+    public synchronized void setJournal(final IndexJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Replaces index content with the current state of the root directory.
+     *
+     * @throws IOException on error.
+     */
+    public void rebuild() throws IOException {
+        try (Stream<Path> stream = Files.list(this.root)) {
+            this.rebuild(stream);
+        }
+    }
+
+    /**
+     * Replaces index content with entries of provided files. Entries are
+     * collected aside and swapped in at once, so concurrent listings keep
+     * seeing previous entries until the rebuild completes. Writers wait
+     * for the rebuild, so none of their changes is lost by the swap.
+     *
+     * @param files files located in the root directory or below it.
+     */
+    public synchronized void rebuild(final Stream<Path> files) {
+        final ConcurrentNavigableMap<String, StoredFile> previous = this.files;
+        final List<StoredFile> entries = new ArrayList<>();
+        files.filter(this.filter).forEach(file -> {
+            final StoredFile entry = this.entryOf(file, previous.get(file.getFileName().toString()));
+            if (entry != null) {
+                entries.add(entry);
+            }
+        });
+        this.replace(entries);
+        LOG.debug("Indexed {} stored files.", this.size());
+    }
+
+    /**
+     * Reads attributes and picture header of given file and updates its
+     * entry, removing the entry if file no longer exists. File is indexed
+     * under its own name and located by its path relative to the root
+     * directory. Header is not read again while size and modification time
+     * of the file stay the same.
+     *
+     * @param file file located in the root directory or below it.
+     */
+    public void refresh(final Path file) {
+        if (!this.filter.test(file)) {
+            return;
+        }
+
+        final String name = file.getFileName().toString();
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attributes.isRegularFile()) {
+                this.put(this.entryOf(file, attributes, this.files.get(name)));
+            }
+        } catch (NoSuchFileException e) {
+            this.remove(name);
+        } catch (IOException e) {
+            LOG.warn("Failed to index file {} : {}.", file, e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * @param file     file located in the root directory or below it.
+     * @param previous entry the file was indexed with before, may be null.
+     * @return entry of the file, or null if it is not a regular file or can't be read.
+     */
+    private StoredFile entryOf(final Path file, final StoredFile previous) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? this.entryOf(file, attributes, previous) : null;
+        } catch (IOException e) {
+            LOG.warn("Failed to index file {} : {}.", file, e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    private StoredFile entryOf(final Path file, final BasicFileAttributes attributes, final StoredFile previous) {
+        final String name = file.getFileName().toString();
+        final StoredFile entry = new StoredFile(name, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                this.contentTypeOf(name), this.locationOf(file), null);
+        return this.describe(entry, file, previous);
+    }
+
+    /**
+     * @param entry    entry of the file without type and dimensions.
+     * @param content  file holding the content.
+     * @param previous entry the file was indexed with before, may be null.
+     * @return entry with type and dimensions of the picture, or provided entry if file is not a picture.
+     */
+    private StoredFile describe(final StoredFile entry, final Path content, final StoredFile previous) {
+        if (previous != null && previous.getType() != null && previous.getSize() == entry.getSize()
+                && previous.getLastModified() == entry.getLastModified()) {
+            return entry.withType(previous.getType())
+                    .withDimensions(previous.getWidth(), previous.getHeight(), previous.getBitDepth());
+        }
+        return describe(entry, content);
+    }
+
+    /**
+     * Reads picture header of the content, so that pixels are never decoded
+     * just to learn type and dimensions of the picture. Media type of the
+     * entry follows the recognised type rather than the file name.
+     *
+     * @param entry   entry of the file without type and dimensions.
+     * @param content file holding the content.
+     * @return entry with type and dimensions of the picture, or provided entry if file is not a picture.
+     */
+    public static StoredFile describe(final StoredFile entry, final Path content) {
+        try {
+            final PictureHeader header = PictureHeader.read(content);
+            if (header.getType() == null) {
+                return entry;
+            }
+            final StoredFile typed = entry.withType(header.getType());
+            return header.getWidth() > 0 && header.getHeight() > 0
+                    ? typed.withDimensions(header.getWidth(), header.getHeight(), header.getBitDepth())
+                    : typed;
+        } catch (IOException e) {
+            LOG.warn("Failed to read picture header of {} : {}.", content, e.getLocalizedMessage());
+            return entry;
+        }
+    }
+
+    /**
+     * Adds or replaces entry of the file.
+     *
+     * @param file entry to add.
+     * @return replaced entry, or null if there was none.
+     */
+    public synchronized StoredFile put(final StoredFile file) {
+        if (file.getHash() != null) {
+            this.references.merge(file.getHash(), 1, Integer::sum);
+        }
+        final StoredFile previous = this.files.put(file.getName(), file);
+        if (previous == null) {
+            this.count.incrementAndGet();
+        }
+        this.release(previous);
+        this.version.incrementAndGet();
+        this.journal.put(file);
+        return previous;
+    }
+
+    /**
+     * Removes entry of the file.
+     *
+     * @param name name of the stored file.
+     * @return removed entry, or null if there was none.
+     */
+    public synchronized StoredFile remove(final String name) {
+        final StoredFile previous = this.files.remove(name);
+        if (previous != null) {
+            this.count.decrementAndGet();
+            this.version.incrementAndGet();
+            this.journal.remove(name);
+        }
+        this.release(previous);
+        return previous;
+    }
+
+    private String locationOf(final Path file) {
+        final Path relative = this.root.relativize(file);
+        return relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+    }
+
+    private void release(final StoredFile file) {
+        if (file != null && file.getHash() != null) {
+            this.references.computeIfPresent(file.getHash(), (hash, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    /**
+     * @param hash content hash.
+     * @return true if any entry refers to content with provided hash.
+     */
+    public boolean isReferenced(final String hash) {
+        return this.references.containsKey(hash);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        this.replace(Collections.emptyList());
+    }
+
+    /**
+     * Replaces all entries at once, so concurrent readers see either
+     * previous entries or provided ones, never a part of them. Of entries
+     * of equal names the later one is kept.
+     *
+     * @param entries new entries of the index.
+     */
+    public synchronized void replace(final Collection<StoredFile> entries) {
+        final ConcurrentNavigableMap<String, StoredFile> files = new ConcurrentSkipListMap<>();
+        for (StoredFile entry : entries) {
+            files.put(entry.getName(), entry);
+        }
+        final ConcurrentMap<String, Integer> references = new ConcurrentHashMap<>();
+        for (StoredFile entry : files.values()) {
+            if (entry.getHash() != null) {
+                references.merge(entry.getHash(), 1, Integer::sum);
+            }
+        }
+
+        this.references = references;
+        this.files = files;
+        this.count.set(files.size());
+        this.version.incrementAndGet();
+        this.journal.clear();
+        for (StoredFile entry : files.values()) {
+            this.journal.put(entry);
+        }
+    }
+
+    /**
+     * Makes all changes applied so far durable in the journal.
+     *
+     * @throws IOException on error.
+     */
+    public void sync() throws IOException {
+        this.journal.sync();
+    }
+
+    /**
+     * @param name name of the stored file.
+     * @return entry of the file if indexed.
+     */
+    public Optional<StoredFile> get(final String name) {
+        return Optional.ofNullable(this.files.get(name));
+    }
+
+    /**
+     * @return all entries ordered by file name.
+     */
+    public Stream<StoredFile> stream() {
+        return this.files.values().stream();
+    }
+
+    /**
+     * Returns entries that follow given name, so a page costs only as much
+     * as its size regardless of total number of files.
+     *
+     * @param cursor name to start after, or null to start from the first entry.
+     * @param limit  maximum number of entries.
+     * @return entries ordered by file name.
+     */
+    public List<StoredFile> after(final String cursor, final int limit) {
+        final ConcurrentNavigableMap<String, StoredFile> tail = cursor == null
+                ? this.files
+                : this.files.tailMap(cursor, false);
+        return this.take(tail, limit);
+    }
+
+    /**
+     * Returns entries that precede given name.
+     *
+     * @param cursor name to end before.
+     * @param limit  maximum number of entries.
+     * @return entries ordered by file name.
+     */
+    public List<StoredFile> before(final String cursor, final int limit) {
+        final List<StoredFile> page = this.take(this.files.headMap(cursor, false).descendingMap(), limit);
+        Collections.reverse(page);
+        return page;
+    }
+
+    /**
+     * @param name file name.
+     * @return true if index holds entries ordered after given name.
+     */
+    public boolean hasAfter(final String name) {
+        return this.files.higherKey(name) != null;
+    }
+
+    /**
+     * @param name file name.
+     * @return true if index holds entries ordered before given name.
+     */
+    public boolean hasBefore(final String name) {
+        return this.files.lowerKey(name) != null;
+    }
+
+    private List<StoredFile> take(final ConcurrentNavigableMap<String, StoredFile> files, final int limit) {
+        final List<StoredFile> page = new ArrayList<>(limit);
+        for (StoredFile file : files.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(file);
+        }
+        return page;
+    }
+
+    /**
+     * @return number of indexed files, counted without traversing the index.
+     */
+    public int size() {
+        return this.count.get();
+    }
+
+    /**
+     * @return number increased by every change of the index.
+     */
+    public long getVersion() {
+        return this.version.get();
+    }
+
+    /**
+     * @param name file name.
+     * @return media type guessed from file name extension, for files whose
+     * content is not recognised as a picture.
+     */
+    public String contentTypeOf(final String name) {
+        final String contentType = URLConnection.getFileNameMap().getContentTypeFor(name);
+        return contentType == null ? DEFAULT_CONTENT_TYPE : contentType;
+    }
+}
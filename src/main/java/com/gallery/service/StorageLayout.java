@@ -0,0 +1,114 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link StorageLayout} interface defines how stored files are placed
+ * inside the storage directory and kept in the {@link StorageIndex}.
+ */
+public interface StorageLayout extends Closeable {
+    /**
+     * Indexes files already present in the storage directory.
+     *
+     * @throws IOException on error.
+     */
+    void rebuild() throws IOException;
+
+    /**
+     * @return true if names of stored files can be recovered from the
+     * storage directory alone, so {@link #rebuild()} restores the index.
+     */
+    boolean isRebuildable();
+
+    /**
+     * @return true if storage directory contents map directly to file names,
+     * so changes made outside of the application can be watched for.
+     */
+    boolean isWatchable();
+
+    /**
+     * @param time time the index was saved.
+     * @return true if storage directory may hold changes not reflected in
+     * an index saved at provided time, so it has to be rebuilt.
+     * @throws IOException on error.
+     */
+    boolean isModifiedSince(FileTime time) throws IOException;
+
+    /**
+     * Copies source file to storage under provided name and indexes it.
+     *
+     * @param src     file to copy.
+     * @param name    name under which file should be visible.
+     * @param claimed names already stored during current save mapped to
+     *                content hashes, used to keep different files of equal
+     *                names apart.
+     * @return entry of the stored file.
+     * @throws IOException on error.
+     */
+    StoredFile store(Path src, String name, ConcurrentMap<String, String> claimed) throws IOException;
+
+    /**
+     * Moves file written to a temporary file of this layout in place under
+     * provided name and indexes it.
+     *
+     * @param tmp  file created by {@link #createTempFile()}.
+     * @param name name under which file should be visible.
+     * @return entry of the stored file.
+     * @throws IOException on error.
+     */
+    StoredFile move(Path tmp, String name) throws IOException;
+
+    /**
+     * Creates temporary file in storage directory, so it can later be
+     * atomically moved in place.
+     *
+     * @return path to the created file.
+     * @throws IOException on error.
+     */
+    Path createTempFile() throws IOException;
+
+    /**
+     * @param file stored file.
+     * @return hex encoded SHA-256 of the stored content.
+     * @throws IOException on error.
+     */
+    String hashOf(StoredFile file) throws IOException;
+
+    /**
+     * Updates modification time of the stored file.
+     *
+     * @param file         stored file.
+     * @param lastModified new modification time in milliseconds.
+     * @throws IOException on error.
+     */
+    void touch(StoredFile file, long lastModified) throws IOException;
+
+    /**
+     * @param file stored file.
+     * @return path to the stored content.
+     */
+    Path resolve(StoredFile file);
+
+    /**
+     * @param file stored file.
+     * @return read-only view of the stored content mapped into memory, or
+     * null if the content is kept in a file of its own at {@link #resolve(StoredFile)}.
+     * @throws IOException on error.
+     */
+    ByteBuffer map(StoredFile file) throws IOException;
+
+    /**
+     * Releases files held open by the layout. Layout reopens them on next use.
+     *
+     * @throws IOException on error.
+     */
+    @Override
+    void close() throws IOException;
+}
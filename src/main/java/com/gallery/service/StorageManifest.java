@@ -0,0 +1,486 @@
+package com.gallery.service;
+
+import com.gallery.model.PictureType;
+import com.gallery.model.StoredFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The {@link StorageManifest} class persists the {@link StorageIndex} so
+ * that storage survives restarts without being rescanned. It keeps a
+ * snapshot of all entries and an append-only log of changes made since
+ * the snapshot was written. Every log record carries its length and CRC,
+ * so a record torn by a crash is detected and cut off on load. Once the
+ * log grows above the configured number of records it is set aside and a
+ * new log is started, while a new snapshot is written from the index on a
+ * background thread, so index changes never wait for the snapshot. The
+ * snapshot replaces the old one atomically, after which the set aside log
+ * is deleted. Until then it is replayed on load between the snapshot and
+ * the current log. Records set the state of a name rather than change it,
+ * so replaying records already reflected by the snapshot is harmless.
+ */
+public class StorageManifest implements IndexJournal, Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(StorageManifest.class);
+    private static final int MAGIC = 0x47414C33;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    private static final String SNAPSHOT = "snapshot";
+    private static final String LOG_FILE = "log";
+    private static final String ROTATED_LOG_FILE = "log.1";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    private final Path snapshot;
+    private final Path logFile;
+    private final Path rotatedLogFile;
+    private final StorageIndex index;
+    private final int compactionThreshold;
+    private final Object snapshotLock = new Object();
+    private final ExecutorService compactor;
+    private FileChannel log;
+    private int records;
+    private boolean dirty;
+    private Future<?> compaction;
+
+    /**
+     * @param directory           directory holding manifest files.
+     * @param index               index whose entries are persisted.
+     * @param compactionThreshold number of log records after which a new snapshot is written.
+     */
+    public StorageManifest(final Path directory, final StorageIndex index, final int compactionThreshold) {
+        this.snapshot = directory.resolve(SNAPSHOT);
+        this.logFile = directory.resolve(LOG_FILE);
+        this.rotatedLogFile = directory.resolve(ROTATED_LOG_FILE);
+        this.index = index;
+        this.compactionThreshold = compactionThreshold;
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("manifest-");
+        threadFactory.setDaemon(true);
+        this.compactor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * @return true if manifest was written before.
+     */
+    public boolean exists() {
+        return Files.exists(this.snapshot);
+    }
+
+    /**
+     * @return time the last snapshot was written.
+     * @throws IOException on error.
+     */
+    public FileTime getLastSnapshotTime() throws IOException {
+        return Files.getLastModifiedTime(this.snapshot);
+    }
+
+    /**
+     * Fills the index with entries of the snapshot followed by changes from
+     * the log set aside for compaction, if any, and from the current log.
+     * Log records following a damaged one are dropped.
+     *
+     * @throws IOException on error.
+     */
+    public synchronized void load() throws IOException {
+        this.index.clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.snapshot)))) {
+            final int magic = in.readInt();
+            if (magic != MAGIC) {
+                throw new IOException("Unknown format of storage manifest " + this.snapshot);
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                this.index.put(readFile(in));
+            }
+        }
+
+        if (Files.exists(this.rotatedLogFile)
+                && this.replayLog(this.rotatedLogFile) < Files.size(this.rotatedLogFile)) {
+            LOG.warn("Dropping damaged tail of storage manifest log set aside for compaction.");
+        }
+        final long valid = this.replayLog(this.logFile);
+        if (Files.exists(this.logFile) && valid < Files.size(this.logFile)) {
+            LOG.warn("Dropping damaged tail of storage manifest log after {} bytes.", valid);
+            try (FileChannel channel = FileChannel.open(this.logFile, WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        LOG.debug("Loaded {} stored files from manifest.", this.index.size());
+    }
+
+    /**
+     * @param logFile log to replay.
+     * @return length of the valid part of the log.
+     */
+    private long replayLog(final Path logFile) throws IOException {
+        if (!Files.exists(logFile)) {
+            return 0;
+        }
+
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            while (true) {
+                final byte[] record;
+                try {
+                    final int length = in.readInt();
+                    final long crc = in.readInt() & 0xFFFFFFFFL;
+                    if (length <= 0 || length > Files.size(logFile)) {
+                        return valid;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                    if (crcOf(record) != crc) {
+                        return valid;
+                    }
+                } catch (EOFException e) {
+                    return valid;
+                }
+                this.apply(record);
+                valid += 8 + record.length;
+            }
+        }
+    }
+
+    private void apply(final byte[] record) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        final byte type = in.readByte();
+        if (type == PUT) {
+            this.index.put(readFile(in));
+        } else if (type == REMOVE) {
+            this.index.remove(in.readUTF());
+        } else if (type == CLEAR) {
+            this.index.clear();
+        } else {
+            throw new IOException("Unknown record in storage manifest log " + type);
+        }
+    }
+
+    /**
+     * Writes snapshot of all current index entries and starts an empty log.
+     * Index changes wait until the snapshot is written, so none of them is
+     * lost between the snapshot and the new log.
+     *
+     * @throws IOException on error.
+     */
+    public void snapshot() throws IOException {
+        synchronized (this.index) {
+            synchronized (this) {
+                this.writeSnapshot();
+                this.closeLog();
+                this.log = FileChannel.open(this.logFile, CREATE, WRITE, TRUNCATE_EXISTING);
+                this.records = 0;
+                this.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Writes snapshot of index entries and deletes the log set aside for
+     * compaction, as the snapshot covers all its records. Entries are read
+     * without locking the index, so changes made meanwhile may or may not
+     * be included; they are all recorded in the current log either way.
+     * Only one snapshot is written at a time.
+     */
+    private void writeSnapshot() throws IOException {
+        synchronized (this.snapshotLock) {
+            Files.createDirectories(this.snapshot.getParent());
+            final Path tmp = this.snapshot.resolveSibling(SNAPSHOT + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, READ, TRUNCATE_EXISTING)) {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(channel)));
+                out.writeInt(MAGIC);
+                out.writeInt(0);
+                int written = 0;
+                for (StoredFile file : (Iterable<StoredFile>) this.index.stream()::iterator) {
+                    writeFile(out, file);
+                    written++;
+                }
+                out.flush();
+                final ByteBuffer count = ByteBuffer.allocate(4).putInt(0, written);
+                while (count.hasRemaining()) {
+                    channel.write(count, 4 + count.position());
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, this.snapshot, REPLACE_EXISTING, ATOMIC_MOVE);
+            Files.deleteIfExists(this.rotatedLogFile);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void put(final StoredFile file) {
+        this.append(out -> {
+            out.writeByte(PUT);
+            writeFile(out, file);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void remove(final String name) {
+        this.append(out -> {
+            out.writeByte(REMOVE);
+            out.writeUTF(name);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void clear() {
+        this.append(out -> out.writeByte(CLEAR));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The log is forced to disk. If a record could not be written, a
+     * snapshot is written instead, which index changes wait for.
+     */
+    @Override
+    public void sync() throws IOException {
+        synchronized (this.index) {
+            synchronized (this) {
+                if (this.log == null) {
+                    return;
+                }
+                if (this.dirty) {
+                    this.snapshot();
+                } else {
+                    this.log.force(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends single record to the log. A record that could not be written
+     * marks the manifest dirty, so the next snapshot restores consistency.
+     * Called by the index while it holds its own lock.
+     */
+    private void append(final RecordWriter writer) {
+        if (this.log == null) {
+            return;
+        }
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            writer.write(new DataOutputStream(bytes));
+            final byte[] record = bytes.toByteArray();
+
+            final ByteBuffer frame = ByteBuffer.allocate(8 + record.length);
+            frame.putInt(record.length).putInt((int) crcOf(record)).put(record).flip();
+            while (frame.hasRemaining()) {
+                this.log.write(frame);
+            }
+            this.records++;
+        } catch (IOException e) {
+            LOG.error("Failed to append to storage manifest log : {}.", e.getLocalizedMessage());
+            this.dirty = true;
+        }
+
+        if (this.dirty || this.records >= this.compactionThreshold) {
+            this.compactInBackground();
+        }
+    }
+
+    /**
+     * Sets the current log aside and starts a new one, then writes the
+     * snapshot on the background thread. Only file renames happen while
+     * the index is locked, after the log is forced to disk, so records
+     * made durable by {@link #sync()} stay durable once set aside. While a
+     * snapshot is still being written, the current log keeps growing until
+     * the next record after it completes.
+     */
+    private void compactInBackground() {
+        if (this.compaction != null && !this.compaction.isDone()) {
+            return;
+        }
+
+        try {
+            this.log.force(false);
+            this.closeLog();
+            if (Files.exists(this.rotatedLogFile)) {
+                this.appendLog(this.logFile, this.rotatedLogFile);
+                Files.deleteIfExists(this.logFile);
+            } else {
+                Files.move(this.logFile, this.rotatedLogFile, ATOMIC_MOVE);
+            }
+            this.log = FileChannel.open(this.logFile, CREATE, WRITE, TRUNCATE_EXISTING);
+            this.records = 0;
+            this.dirty = false;
+        } catch (IOException e) {
+            LOG.error("Failed to set storage manifest log aside : {}.", e.getLocalizedMessage());
+            this.dirty = true;
+            this.reopenLog();
+            return;
+        }
+
+        this.compaction = this.compactor.submit(() -> {
+            try {
+                this.writeSnapshot();
+            } catch (IOException e) {
+                LOG.error("Failed to write storage manifest snapshot : {}.", e.getLocalizedMessage());
+            }
+        });
+    }
+
+    /**
+     * Appends records of the log to the one left aside by a failed compaction,
+     * so both are covered by the next snapshot.
+     */
+    private void appendLog(final Path source, final Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, READ);
+             FileChannel out = FileChannel.open(target, WRITE, APPEND)) {
+            long position = 0;
+            while (position < in.size()) {
+                position += in.transferTo(position, in.size() - position, out);
+            }
+            out.force(false);
+        }
+    }
+
+    /**
+     * Keeps appending to the current log after it could not be set aside.
+     */
+    private void reopenLog() {
+        try {
+            if (this.log == null) {
+                this.log = FileChannel.open(this.logFile, CREATE, WRITE, APPEND);
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to reopen storage manifest log : {}.", e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Writes final snapshot, so next start loads it without replaying the log.
+     *
+     * @throws IOException on error.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.index) {
+            synchronized (this) {
+                if (this.log != null) {
+                    this.writeSnapshot();
+                    this.closeLog();
+                    Files.deleteIfExists(this.logFile);
+                }
+            }
+        }
+        this.stopCompactor();
+    }
+
+    /**
+     * Stops writing the log without writing a snapshot. Snapshot being
+     * written in background is completed first.
+     */
+    public void abandon() {
+        synchronized (this) {
+            try {
+                this.closeLog();
+            } catch (IOException e) {
+                LOG.warn("Failed to close storage manifest log : {}.", e.getLocalizedMessage());
+            }
+        }
+        this.stopCompactor();
+    }
+
+    private void stopCompactor() {
+        this.compactor.shutdown();
+        try {
+            if (!this.compactor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("Storage manifest snapshot is still being written.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeLog() throws IOException {
+        if (this.log != null) {
+            this.log.close();
+            this.log = null;
+        }
+    }
+
+    private static void writeFile(final DataOutputStream out, final StoredFile file) throws IOException {
+        out.writeUTF(file.getName());
+        out.writeLong(file.getSize());
+        out.writeLong(file.getLastModified());
+        out.writeUTF(file.getContentType());
+        out.writeUTF(file.getLocation());
+        out.writeUTF(file.getHash() == null ? "" : file.getHash());
+        out.writeInt(file.getWidth());
+        out.writeInt(file.getHeight());
+        out.writeByte(file.getBitDepth());
+        out.writeByte(file.getType() == null ? 0 : file.getType().ordinal() + 1);
+    }
+
+    private static StoredFile readFile(final DataInputStream in) throws IOException {
+        final String name = in.readUTF();
+        final long size = in.readLong();
+        final long lastModified = in.readLong();
+        final String contentType = in.readUTF();
+        final String location = in.readUTF();
+        final String hash = in.readUTF();
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final int bitDepth = in.readUnsignedByte();
+        final int type = in.readUnsignedByte();
+        if (type > PictureType.values().length) {
+            throw new IOException("Unknown picture type in storage manifest " + type);
+        }
+        return new StoredFile(name, size, lastModified, contentType, location, hash.isEmpty() ? null : hash,
+                width, height, bitDepth, type == 0 ? null : PictureType.values()[type - 1]);
+    }
+
+    private static long crcOf(final byte[] record) {
+        final CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Writes content of a single log record.
+     */
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -1,8 +1,14 @@
 package com.gallery.service;
 
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.FilePage;
+import com.gallery.model.PictureSort;
+import com.gallery.model.SaveResult;
+import com.gallery.model.StoredFile;
 import org.springframework.core.io.Resource;
 
 import java.nio.file.Path;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 /**
@@ -13,11 +19,58 @@ import java.util.stream.Stream;
 public interface StorageService {
     /**
      * Uploads all files found in directory corresponding to provided path
-     * to server storage.
+     * to server storage using configured change detection strategy.
      *
      * @param src path to directory in which files are located.
+     * @return summary of stored, skipped and failed files.
      */
-    void save(Path src);
+    SaveResult save(Path src);
+
+    /**
+     * Uploads all files found in directory corresponding to provided path
+     * to server storage, skipping files which according to provided
+     * strategy are already stored.
+     * Failure to copy a single file does not stop the others from being
+     * uploaded, instead it is reported in the returned result.
+     *
+     * @param src       path to directory in which files are located.
+     * @param detection strategy used to detect unchanged files.
+     * @return summary of stored, skipped and failed files.
+     */
+    SaveResult save(Path src, ChangeDetection detection);
+
+    /**
+     * Uploads all files found in directory corresponding to provided path
+     * to server storage like {@link #save(Path, ChangeDetection)}, recording
+     * progress into provided result as files are stored. Once the result is
+     * cancelled remaining files are left untouched.
+     *
+     * @param src       path to directory in which files are located.
+     * @param detection strategy used to detect unchanged files.
+     * @param result    result to record progress to.
+     * @return provided result.
+     */
+    SaveResult save(Path src, ChangeDetection detection, SaveResult result);
+
+    /**
+     * Creates an empty file inside server storage which is never listed,
+     * so content can be written to it directly and later stored with
+     * {@link #storeStaged(Path, String)} without being copied again.
+     *
+     * @return path to the created file.
+     */
+    Path createStagingFile();
+
+    /**
+     * Stores file created by {@link #createStagingFile()} under provided
+     * name, replacing file of the same name if any.
+     *
+     * @param staged   staging file holding the content.
+     * @param fileName name under which file should be stored.
+     * @return attributes of the stored file.
+     * @throws com.gallery.util.StorageException if content is not of an accepted picture type.
+     */
+    StoredFile storeStaged(Path staged, String fileName);
 
     /**
      * Loads all files from the server storage.
@@ -27,10 +80,62 @@ public interface StorageService {
     Stream<Path> loadAll();
 
     /**
-     * Loads file from server storage as a resource.
+     * Loads a page of files ordered by name. Pages are addressed by cursors
+     * rather than offsets, so loading a page does not depend on the total
+     * number of stored files. If neither cursor is given the first page
+     * is loaded.
+     *
+     * @param after  name of the file the page should start after, may be null.
+     * @param before name of the file the page should end before, may be null.
+     * @param size   maximum number of files on the page.
+     * @return page of files.
+     */
+    FilePage loadPage(String after, String before, int size);
+
+    /**
+     * Loads a page of files accepted by the filter, in provided order. The
+     * page is addressed by the cursor of the position it should start after
+     * and can be walked forward only.
+     *
+     * @param filter accepts files to be listed.
+     * @param order  order of files, telling apart any two of different names.
+     * @param after  cursor the page should start after, as given by the previous page, may be null.
+     * @param size   maximum number of files on the page.
+     * @return page of files, counting all files accepted by the filter as its total.
+     */
+    FilePage loadPage(Predicate<StoredFile> filter, PictureSort order, String after, int size);
+
+    /**
+     * @return number that changes whenever stored files are added, replaced
+     * or removed, so anything derived from storage content can tell it is stale.
+     */
+    long getVersion();
+
+    /**
+     * Loads attributes of the file kept in server storage.
+     *
+     * @param fileName name of the stored file.
+     * @return attributes of the file.
+     */
+    StoredFile loadMetadata(String fileName);
+
+    /**
+     * Loads file from server storage as a resource. Content of the
+     * resource is read under scheduling of storage disk access.
      *
      * @param fileName name of the file to be loaded.
      * @return resource containing the file.
      */
     Resource loadAsResource(String fileName);
+
+    /**
+     * Loads file from server storage as a resource read by background
+     * work, such as preparing variants or exporting archives. Content of
+     * the resource is read under scheduling of storage disk access and
+     * gives way to files loaded by {@link #loadAsResource(String)}.
+     *
+     * @param fileName name of the file to be loaded.
+     * @return resource containing the file.
+     */
+    Resource loadForBackground(String fileName);
 }
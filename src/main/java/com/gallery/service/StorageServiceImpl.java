@@ -1,129 +1,686 @@
 package com.gallery.service;
 
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.FilePage;
+import com.gallery.model.FileStoredEvent;
+import com.gallery.model.PictureSort;
+import com.gallery.model.PictureType;
+import com.gallery.model.SaveResult;
+import com.gallery.model.StoredFile;
+import com.gallery.util.ByteBufferResource;
+import com.gallery.util.ContentHash;
 import com.gallery.util.StorageException;
 import com.gallery.util.StorageFileNotFoundException;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 import org.springframework.util.FileSystemUtils;
 
-import java.io.File;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
-
 @Service
-public class StorageServiceImpl implements StorageService, InitService, DestroyService {
+public class StorageServiceImpl implements StorageService, InitService, DestroyService,
+        ApplicationEventPublisherAware {
     private static final Logger LOG = LoggerFactory.getLogger(StorageServiceImpl.class);
-    private final Path storagePath = Paths.get("server-storage");
-    private final String[] extensions = {"png"};
+    private static final String MANIFEST_DIRECTORY = ".manifest";
+    private static final long DRAIN_POLL_MILLIS = 100;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private final Path storagePath;
+    private final Set<PictureType> acceptedTypes = EnumSet.noneOf(PictureType.class);
+    private final int scanQueueCapacity;
+    private final ChangeDetection changeDetection;
+    private final ExecutorService ingestExecutor;
+    private final StorageIndex index;
+    private final StorageLayout layout;
+    private final HotFileCache cache;
+    private final GalleryMetrics metrics;
+    private final IoScheduler ioScheduler;
+    private final boolean persistent;
+    private final int manifestCompaction;
+    private StorageWatcher watcher;
+    private ApplicationEventPublisher publisher;
+    private StorageManifest manifest;
+
+    @Autowired
+    public StorageServiceImpl(final GalleryProperties properties, final HotFileCache cache,
+                              final GalleryMetrics metrics, final IoScheduler ioScheduler) {
+        this.cache = cache;
+        this.metrics = metrics;
+        this.ioScheduler = ioScheduler;
+        this.storagePath = Paths.get(properties.getStorage().getLocation());
+        this.changeDetection = properties.getStorage().getChangeDetection();
+        this.persistent = properties.getStorage().isPersistent();
+        this.manifestCompaction = properties.getStorage().getManifestCompaction();
+        this.acceptedTypes.addAll(properties.getStorage().getAcceptedTypes());
+        this.scanQueueCapacity = Math.max(1, properties.getStorage().getScanQueueCapacity());
+        this.index = new StorageIndex(this.storagePath, path -> !path.getFileName().toString().startsWith("."));
+        this.layout = this.layoutOf(properties.getStorage());
+        this.ingestExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getStorage().getIngestThreads()),
+                new CustomizableThreadFactory("ingest-"));
+    }
+
+    /**
+     * @param publisher publisher of {@link FileStoredEvent}s.
+     */
+    @Override
+    public void setApplicationEventPublisher(final ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    private StorageLayout layoutOf(final GalleryProperties.Storage storage) {
+        switch (storage.getLayout()) {
+            case CONTENT_ADDRESSED:
+                return new ContentAddressedStorageLayout(this.storagePath, this.index);
+            case PACKED:
+                return new PackedStorageLayout(this.storagePath, this.index, storage.getPackSize(),
+                        storage.getPackGarbageRatio());
+            case SHARDED:
+                return new ShardedStorageLayout(this.storagePath, this.index, storage.getShardLevels());
+            default:
+                return new FlatStorageLayout(this.storagePath, this.index);
+        }
+    }
 
     /**
-     * Creates storage directory.
+     * Creates storage directory, indexes its content and, if layout allows,
+     * starts watching it for changes made outside of the application.
+     * Persistent storage loads its index from the manifest written by the
+     * previous run instead of scanning the directory, and journals every
+     * further change to it. Directory the layout reports as modified after
+     * the last snapshot is scanned again, since it was changed while not watched.
+     * Temporary files left in persistent storage by writes interrupted by
+     * the previous run are removed.
      */
     @Override
-    public void init() {
+    public synchronized void init() {
+        this.stopWatching();
+        this.closeManifest(false);
         try {
-            Files.createDirectory(this.storagePath);
+            Files.createDirectories(this.storagePath);
+            if (this.persistent) {
+                this.removeTempFiles();
+            }
+            final StorageManifest manifest = new StorageManifest(this.storagePath.resolve(MANIFEST_DIRECTORY),
+                    this.index, this.manifestCompaction);
+            if (this.persistent && manifest.exists() && !this.layout.isModifiedSince(manifest.getLastSnapshotTime())) {
+                this.loadManifest(manifest);
+            } else {
+                this.layout.rebuild();
+            }
+            if (this.persistent) {
+                manifest.snapshot();
+                this.index.setJournal(manifest);
+                this.manifest = manifest;
+            }
+            if (this.layout.isWatchable()) {
+                this.watcher = new StorageWatcher(this.storagePath, this.index);
+            }
         } catch (IOException e) {
             throw new StorageException("Could not initialize storage.", e);
         }
     }
 
+    /**
+     * Loads index from the manifest. If the manifest can't be read, it is
+     * moved aside and the index is rebuilt from the storage directory,
+     * unless the layout can't recover names of stored files from it, in
+     * which case {@link StorageException} is thrown and the manifest is left
+     * in place, rather than starting with an empty gallery.
+     */
+    private void loadManifest(final StorageManifest manifest) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            manifest.load();
+            LOG.info("Loaded {} stored files from manifest in {} ms.", this.index.size(),
+                    (System.nanoTime() - start) / 1000000);
+        } catch (IOException e) {
+            if (!this.layout.isRebuildable()) {
+                throw new StorageException("Could not load storage manifest, stored files can't be recovered "
+                        + "without it.", e);
+            }
+            final Path damaged = this.storagePath.resolve(MANIFEST_DIRECTORY + "-damaged-"
+                    + System.currentTimeMillis());
+            Files.move(this.storagePath.resolve(MANIFEST_DIRECTORY), damaged);
+            LOG.error("Failed to load storage manifest, moved it to {} and rebuilding index : {}.", damaged,
+                    e.getLocalizedMessage());
+            this.layout.rebuild();
+        }
+        this.metrics.time("storage.manifest.load", start);
+    }
+
+    /**
+     * Removes temporary files left in storage directory by writes of the previous run.
+     */
+    private void removeTempFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.storagePath,
+                AbstractStorageLayout.TMP_PREFIX + "*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+                LOG.debug("Removed stale temporary file {}.", file);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SaveResult save(final Path src) {
+        return this.save(src, this.changeDetection);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SaveResult save(final Path src, final ChangeDetection detection) {
+        return this.save(src, detection, new SaveResult());
+    }
+
     /**
      * {@inheritDoc}
+     * Duration and throughput of the save are recorded to {@link GalleryMetrics}.
      */
     @Override
-    public void save(final Path src) {
+    public SaveResult save(final Path src, final ChangeDetection detection, final SaveResult result) {
         Assert.notNull(src, "Source directory can't be null.");
-        try {
-            final List<Path> files = this.findFilesWithExtensions(src, this.extensions);
-            this.saveFilesOnServer(files);
-        } catch (IOException e) {
-            LOG.error("Failed to store files {} : {}.", e.getClass().getSimpleName(), e.getLocalizedMessage());
-            throw new StorageException("Failed to store files.", e);
+        Assert.notNull(detection, "Change detection can't be null.");
+        Assert.notNull(result, "Result can't be null.");
+        final long start = System.nanoTime();
+        final int found = this.saveFilesOnServer(src, detection, result);
+
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        this.metrics.time("storage.save", start);
+        if (seconds > 0) {
+            this.metrics.histogram("storage.save.files-per-second", found / seconds);
+            this.metrics.histogram("storage.save.bytes-per-second", result.getCopiedBytes() / seconds);
         }
+        return result;
     }
 
     /**
-     * Searches in directory by given path for files with specified extensions
-     * and returns files if any found, otherwise returns empty list.
+     * Walks directory by given path and hands every regular file over to
+     * the ingest threads as soon as it is found, so copying starts before
+     * the scan completes. At most configured number of files wait to be
+     * copied at once, beyond that the walk is paused, so memory used by
+     * a save does not depend on the size of the source tree. If no file
+     * of accepted type is found throws {@link StorageException}.
      *
-     * @param src        path to directory to search files in.
-     * @param extensions file fileExtensions.
-     * @return list of files if any found, otherwise empty list.
+     * @param src       path to directory to search files in.
+     * @param detection strategy used to detect unchanged files.
+     * @param result    result to record outcome to.
+     * @return number of files of accepted type found.
      */
-    private List<Path> findFilesWithExtensions(final Path src, final String[] extensions) {
+    private int saveFilesOnServer(final Path src, final ChangeDetection detection, final SaveResult result) {
         if (!Files.isDirectory(src)) {
             throw new StorageException("Inputted path does not point to any existing directory.");
         }
 
-        final List<Path> files = FileUtils.listFiles(src.toFile(), extensions, true)
-                .stream()
-                .map(File::toPath)
-                .collect(Collectors.toList());
+        final Semaphore pending = new Semaphore(this.scanQueueCapacity);
+        final AtomicInteger found = new AtomicInteger();
+        final ConcurrentMap<String, String> claimed = new ConcurrentHashMap<>();
+        try {
+            Files.walkFileTree(src, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+                                throws IOException {
+                            if (result.isCancelled()) {
+                                return FileVisitResult.TERMINATE;
+                            }
+                            if (attributes.isRegularFile()) {
+                                StorageServiceImpl.this.submit(pending,
+                                        () -> StorageServiceImpl.this.saveFileOnServer(file, detection, claimed,
+                                                found, result));
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                            LOG.warn("Failed to scan {} : {}.", file, e.getLocalizedMessage());
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            throw new StorageException("Failed to scan directory " + src, e);
+        } finally {
+            this.drain(pending);
+        }
+
+        if (found.get() == 0) {
+            LOG.error("File list is empty.");
+            throw new StorageException("Failed to store files. No files provided.");
+        }
+
+        LOG.debug("In directory {} found {} files, copied {}, {} skipped, {} failed.", src.toAbsolutePath(),
+                found.get(), result.getCopiedCount(), result.getSkippedCount(), result.getFailedCount());
+        return found.get();
+    }
 
-        LOG.debug("In directory {} found {} files.", src.toAbsolutePath(), files.size());
-        return files;
+    /**
+     * Runs task on an ingest thread once one of pending permits is free,
+     * blocking the caller until then.
+     *
+     * @param pending permits of files waiting to be copied.
+     * @param task    task copying a single file.
+     * @throws IOException if interrupted while waiting, so the walk stops.
+     */
+    private void submit(final Semaphore pending, final Runnable task) throws IOException {
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for files to be copied.");
+        }
+        final PendingTask pendingTask = new PendingTask(pending, task);
+        try {
+            this.ingestExecutor.execute(pendingTask);
+        } catch (RejectedExecutionException e) {
+            pendingTask.release();
+            throw e;
+        }
     }
 
     /**
-     * If no files are provided throws {@link StorageException}, otherwise
-     * copies all files to server storage.
+     * Waits until all submitted files are copied. Once the storage shuts
+     * down, waits only a bounded time for files being copied, as queued
+     * ones are dropped.
      *
-     * @param files list of files to store.
+     * @param pending permits of files waiting to be copied.
+     */
+    private void drain(final Semaphore pending) {
+        boolean interrupted = false;
+        try {
+            while (!this.ingestExecutor.isShutdown()) {
+                try {
+                    if (pending.tryAcquire(this.scanQueueCapacity, DRAIN_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        pending.release(this.scanQueueCapacity);
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            try {
+                if (!this.ingestExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOG.warn("Stopped waiting for files being copied, storage is shutting down.");
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Copies single file to server storage unless it is not of accepted
+     * type, is already stored or the save was cancelled, and records the outcome.
+     * Copying is scheduled by {@link IoScheduler} as ingest, behind pictures being served.
+     *
+     * @param file      file to store.
+     * @param detection strategy used to detect unchanged files.
+     * @param claimed   names stored during current save mapped to content hashes.
+     * @param found     number of files of accepted type found during current save.
+     * @param result    result to record outcome to.
+     */
+    private void saveFileOnServer(final Path file, final ChangeDetection detection,
+                                  final ConcurrentMap<String, String> claimed, final AtomicInteger found,
+                                  final SaveResult result) {
+        if (result.isCancelled()) {
+            return;
+        }
+
+        final String fileName = file.getFileName().toString();
+        try {
+            if (!this.isAccepted(file)) {
+                return;
+            }
+            found.incrementAndGet();
+            result.found(1);
+
+            final Optional<StoredFile> unchanged = this.findUnchanged(file, fileName, detection);
+            if (unchanged.isPresent()) {
+                if (unchanged.get().getHash() != null) {
+                    claimed.putIfAbsent(fileName, unchanged.get().getHash());
+                }
+                result.skipped(fileName);
+                this.metrics.mark("storage.save.skipped");
+                return;
+            }
+            final StoredFile stored;
+            try (IoScheduler.Permit permit = this.ioScheduler.ingest(Files.size(file))) {
+                stored = this.layout.store(file, fileName, claimed);
+            }
+            this.cache.invalidate(stored.getName());
+            this.published(stored);
+            result.copied(stored.getName(), stored.getSize());
+            this.metrics.mark("storage.save.copied");
+        } catch (IOException e) {
+            LOG.warn("Failed to store file {} {} : {}.", file, e.getClass().getSimpleName(), e.getLocalizedMessage());
+            result.failed(file, e);
+            this.metrics.mark("storage.save.failed");
+        }
+    }
+
+    /**
+     * @param file file to check.
+     * @return true if leading bytes of the file match one of accepted picture types, otherwise false.
      * @throws IOException on error.
      */
-    private void saveFilesOnServer(List<Path> files) throws IOException {
-        if (files.isEmpty()) {
-            LOG.error("File list is empty.");
-            throw new StorageException("Failed to store files. No files provided.");
+    private boolean isAccepted(final Path file) throws IOException {
+        final byte[] header = new byte[PictureType.HEADER_LENGTH];
+        final int length;
+        try (InputStream in = Files.newInputStream(file)) {
+            length = IOUtils.read(in, header);
+        }
+        return PictureType.detect(header, length)
+                .map(this.acceptedTypes::contains)
+                .orElse(false);
+    }
+
+    /**
+     * Announces newly stored content, so listeners can prepare derived data
+     * such as resized variants in background.
+     *
+     * @param stored entry of the stored file.
+     * @return provided entry.
+     */
+    private StoredFile published(final StoredFile stored) {
+        if (this.publisher != null) {
+            this.publisher.publishEvent(new FileStoredEvent(this, stored));
+        }
+        return stored;
+    }
+
+    /**
+     * Compares source file with the stored one of the same name. Stored
+     * file attributes are taken from the index, so the check costs a single
+     * stat of the source unless content has to be hashed.
+     *
+     * @param src       source file.
+     * @param fileName  name of the stored file.
+     * @param detection strategy used to detect unchanged files.
+     * @return stored file if source does not need to be copied, otherwise empty.
+     * @throws IOException on error.
+     */
+    private Optional<StoredFile> findUnchanged(final Path src, final String fileName,
+                                               final ChangeDetection detection) throws IOException {
+        if (detection == ChangeDetection.NONE) {
+            return Optional.empty();
         }
 
-        for (Path file : files) {
-            Files.copy(file, this.storagePath.resolve(file.getFileName()), REPLACE_EXISTING);
+        final Optional<StoredFile> stored = this.index.get(fileName);
+        if (!stored.isPresent()) {
+            return Optional.empty();
         }
 
-        LOG.debug("Copied {} files on server", files.size());
+        final BasicFileAttributes attributes = Files.readAttributes(src, BasicFileAttributes.class);
+        if (attributes.size() != stored.get().getSize()) {
+            return Optional.empty();
+        }
+
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        if (lastModified == stored.get().getLastModified()) {
+            return stored;
+        }
+
+        if (detection == ChangeDetection.CONTENT && ContentHash.of(src).equals(this.layout.hashOf(stored.get()))) {
+            this.layout.touch(stored.get(), lastModified);
+            return stored;
+        }
+        return Optional.empty();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Stream<Path> loadAll() {
+    public Path createStagingFile() {
         try {
-            LOG.info("Loading files from server storage...");
+            return this.layout.createTempFile();
+        } catch (IOException e) {
+            throw new StorageException("Could not create staging file.", e);
+        }
+    }
 
-            return Files.walk(this.storagePath, 1)
-                    .filter(path -> !path.equals(this.storagePath))
-                    .map(this.storagePath::relativize);
+    /**
+     * {@inheritDoc}
+     * Content is checked against accepted picture types the same way as
+     * saved files are, whatever the file name. Moving is scheduled by
+     * {@link IoScheduler} as ingest, as layouts may copy the content.
+     */
+    @Override
+    public StoredFile storeStaged(final Path staged, final String fileName) {
+        Assert.notNull(staged, "Staging file can't be null.");
+        Assert.hasText(fileName, "File name can't be empty.");
+        try {
+            if (!this.isAccepted(staged)) {
+                throw new StorageException("Content of file " + fileName + " is not of an accepted picture type.");
+            }
+            final StoredFile stored;
+            try (IoScheduler.Permit permit = this.ioScheduler.ingest(Files.size(staged))) {
+                stored = this.layout.move(staged, fileName);
+            }
+            this.cache.invalidate(stored.getName());
+            return this.published(stored);
         } catch (IOException e) {
-            LOG.error("Failed during reading stored files {}.", e.getLocalizedMessage());
-            throw new StorageException("Failed to read stored files.", e);
+            throw new StorageException("Failed to store file " + fileName, e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * Files are listed from the in-memory index in name order. Time spent
+     * listing is recorded once the returned stream is closed.
+     */
+    @Override
+    public Stream<Path> loadAll() {
+        LOG.info("Loading files from server storage...");
+        final long start = System.nanoTime();
+        this.metrics.histogram("storage.loadAll.entries", this.index.size());
+        return this.index.stream()
+                .map(StoredFile::getName)
+                .map(Paths::get)
+                .onClose(() -> this.metrics.time("storage.loadAll", start));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Pages are cut from the in-memory index. A page preceding the first
+     * one is completed up to its size, so walking back ends on the first page.
+     */
+    @Override
+    public FilePage loadPage(final String after, final String before, final int size) {
+        Assert.isTrue(size > 0, "Page size must be positive.");
+        final long start = System.nanoTime();
+        List<StoredFile> files = before != null
+                ? this.index.before(before, size)
+                : this.index.after(after, size);
+        if (before != null && files.size() < size) {
+            files = this.index.after(null, size);
+        }
+
+        final boolean hasPrevious = !files.isEmpty() && this.index.hasBefore(files.get(0).getName());
+        final boolean hasNext = !files.isEmpty() && this.index.hasAfter(files.get(files.size() - 1).getName());
+        this.metrics.time("storage.loadPage", start);
+        return new FilePage(files, hasPrevious, hasNext, this.index.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     * The whole index is scanned once, keeping only the page size of
+     * entries on a heap, so a page costs time linear in the number of
+     * stored files and memory bounded by its size. Cursor carries the sort
+     * key along with the name, so the page starts at the same position
+     * even if that file changed or was removed. If the cursor is malformed
+     * {@link StorageException} is thrown.
+     */
+    @Override
+    public FilePage loadPage(final Predicate<StoredFile> filter, final PictureSort order,
+                             final String after, final int size) {
+        Assert.isTrue(size > 0, "Page size must be positive.");
+        final long start = System.nanoTime();
+        final Predicate<StoredFile> cursor;
+        try {
+            cursor = after == null ? file -> true : order.after(after);
+        } catch (IllegalArgumentException e) {
+            throw new StorageException("Invalid cursor " + after, e);
+        }
+        final PriorityQueue<StoredFile> heap = new PriorityQueue<>(size + 1, order.reversed());
+        int total = 0;
+        boolean hasPrevious = false;
+        boolean hasNext = false;
+        for (StoredFile file : (Iterable<StoredFile>) this.index.stream()::iterator) {
+            if (!filter.test(file)) {
+                continue;
+            }
+            total++;
+            if (!cursor.test(file)) {
+                hasPrevious = true;
+                continue;
+            }
+            heap.add(file);
+            if (heap.size() > size) {
+                heap.poll();
+                hasNext = true;
+            }
+        }
+
+        final List<StoredFile> files = new ArrayList<>(heap);
+        files.sort(order);
+        this.metrics.time("storage.loadPage.sorted", start);
+        return new FilePage(files, hasPrevious, hasNext, total, order::cursorOf);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion() {
+        return this.index.getVersion();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Attributes are read from the in-memory index. If for provided fileName
+     * no files found throws {@link StorageFileNotFoundException}.
+     */
+    @Override
+    public StoredFile loadMetadata(final String fileName) {
+        return this.index.get(fileName)
+                .orElseThrow(() -> {
+                    this.metrics.mark("storage.not-found");
+                    return new StorageFileNotFoundException("Could not read file " + fileName);
+                });
+    }
+
     /**
      * {@inheritDoc}
      * If for provided fileName no files found throws {@link StorageFileNotFoundException},
-     * otherwise returns corresponding resource.
+     * otherwise returns corresponding resource. Content the layout keeps in
+     * packs is served as {@link ByteBufferResource} over the mapped pack,
+     * while frequently requested files of their own are served from
+     * {@link HotFileCache} the same way. Either is wrapped in
+     * {@link ScheduledResource}, so every read of stored content, whether
+     * served, resized or exported, is scheduled by {@link IoScheduler}.
+     * Latency, size and missing files are recorded to {@link GalleryMetrics}.
      */
     @Override
     public Resource loadAsResource(final String fileName) {
+        return this.load(fileName, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Resource is loaded as by {@link #loadAsResource(String)}, but its
+     * content is read under background permits of {@link IoScheduler}.
+     */
+    @Override
+    public Resource loadForBackground(final String fileName) {
+        return this.load(fileName, true);
+    }
+
+    private Resource load(final String fileName, final boolean background) {
+        final long start = System.nanoTime();
+        this.metrics.mark("storage.loadAsResource.requests");
+        try {
+            final StoredFile stored = this.loadMetadata(fileName);
+            final Resource resource = new ScheduledResource(this.resourceOf(stored), this.ioScheduler, background);
+            this.metrics.histogram("storage.loadAsResource.bytes", stored.getSize());
+            return resource;
+        } catch (StorageFileNotFoundException e) {
+            this.metrics.mark("storage.loadAsResource.not-found");
+            throw e;
+        } finally {
+            this.metrics.time("storage.loadAsResource", start);
+        }
+    }
+
+    private Resource resourceOf(final StoredFile stored) {
+        final String fileName = stored.getName();
+        try {
+            final ByteBuffer mapped = this.layout.map(stored);
+            if (mapped != null) {
+                return new ByteBufferResource(mapped, fileName, stored.getLastModified());
+            }
+        } catch (IOException e) {
+            throw new StorageFileNotFoundException("Could not read file " + fileName);
+        }
+
+        final Path file = this.layout.resolve(stored);
+        try {
+            final ByteBuffer cached = this.cache.get(stored, file);
+            if (cached != null) {
+                return new ByteBufferResource(cached, stored.getName(), stored.getLastModified());
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to cache file {} : {}.", fileName, e.getLocalizedMessage());
+        }
+
         try {
-            final Path file = this.storagePath.resolve(fileName);
             final Resource resource = new UrlResource(file.toUri());
 
             if (resource.exists() || resource.isReadable()) {
@@ -137,11 +694,98 @@ public class StorageServiceImpl implements StorageService, InitService, DestroyS
     }
 
     /**
-     * Removes storage directory and all inner directories
-     * recursively.
+     * Stops watching storage directory, removes it and all inner
+     * directories recursively.
      */
     @Override
-    public void destroy() {
+    public synchronized void destroy() {
+        this.stopWatching();
+        this.closeManifest(false);
+        this.closeLayout();
         FileSystemUtils.deleteRecursively(this.storagePath.toFile());
+        this.index.clear();
+        this.cache.clear();
+    }
+
+    private void closeLayout() {
+        try {
+            this.layout.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close storage layout {}.", e.getLocalizedMessage());
+        }
+    }
+
+    private void stopWatching() {
+        if (this.watcher != null) {
+            try {
+                this.watcher.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to stop storage watcher {}.", e.getLocalizedMessage());
+            }
+            this.watcher = null;
+        }
+    }
+
+    /**
+     * Detaches manifest from the index.
+     *
+     * @param snapshot whether to write final snapshot, so next start doesn't replay the log.
+     */
+    private void closeManifest(final boolean snapshot) {
+        if (this.manifest != null) {
+            this.index.setJournal(IndexJournal.NONE);
+            try {
+                if (snapshot) {
+                    this.manifest.close();
+                } else {
+                    this.manifest.abandon();
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to close storage manifest {}.", e.getLocalizedMessage());
+            }
+            this.manifest = null;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        this.stopWatching();
+        for (Runnable dropped : this.ingestExecutor.shutdownNow()) {
+            if (dropped instanceof PendingTask) {
+                ((PendingTask) dropped).release();
+            }
+        }
+        this.closeManifest(true);
+        this.closeLayout();
+    }
+
+    /**
+     * Task copying a single file, which returns its pending permit exactly
+     * once, either when run or when dropped without running.
+     */
+    private static final class PendingTask implements Runnable {
+        private final Semaphore pending;
+        private final Runnable task;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PendingTask(final Semaphore pending, final Runnable task) {
+            this.pending = pending;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.task.run();
+            } finally {
+                this.release();
+            }
+        }
+
+        private void release() {
+            if (this.released.compareAndSet(false, true)) {
+                this.pending.release();
+            }
+        }
     }
 }
@@ -0,0 +1,90 @@
+package com.gallery.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * The {@link StorageWatcher} class listens for changes made to the storage
+ * directory outside of the application and applies them to the
+ * {@link StorageIndex} on a background daemon thread.
+ */
+public class StorageWatcher implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(StorageWatcher.class);
+
+    private final Path root;
+    private final StorageIndex index;
+    private final WatchService watchService;
+
+    /**
+     * Registers watcher for provided directory and starts listening.
+     *
+     * @param root  directory to watch.
+     * @param index index to keep in sync.
+     * @throws IOException on error.
+     */
+    public StorageWatcher(final Path root, final StorageIndex index) throws IOException {
+        this.root = root;
+        this.index = index;
+        this.watchService = root.getFileSystem().newWatchService();
+        root.register(this.watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+
+        final Thread thread = new Thread(this::watch, "storage-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                final WatchKey key = this.watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        this.rebuild();
+                    } else {
+                        this.index.refresh(this.root.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    LOG.debug("Storage directory {} is no longer watched.", this.root);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            LOG.trace("Storage watcher closed.");
+        }
+    }
+
+    private void rebuild() {
+        LOG.debug("Storage events overflow, rebuilding index...");
+        try {
+            this.index.rebuild();
+        } catch (IOException e) {
+            LOG.error("Failed to rebuild storage index {}.", e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Stops listening for changes.
+     *
+     * @throws IOException on error.
+     */
+    @Override
+    public void close() throws IOException {
+        this.watchService.close();
+    }
+}
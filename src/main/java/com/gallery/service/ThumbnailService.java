@@ -0,0 +1,71 @@
+package com.gallery.service;
+
+import com.gallery.model.ContactSheet;
+import com.gallery.model.StoredFile;
+import org.springframework.core.io.Resource;
+
+import java.util.List;
+
+/**
+ * The {@link ThumbnailService} interface defines business behaviours
+ * associated with producing resized variants of stored pictures.
+ */
+public interface ThumbnailService {
+    /**
+     * Loads variant of the stored file that fits into provided bounds,
+     * creating and caching it on first request.
+     *
+     * @param fileName name of the stored file.
+     * @param width    maximal width of the variant in pixels.
+     * @param height   maximal height of the variant in pixels.
+     * @return resource containing the resized picture.
+     */
+    Resource loadThumbnail(String fileName, int width, int height);
+
+    /**
+     * @return widths of variants prepared for every stored picture.
+     */
+    List<Integer> getVariantWidths();
+
+    /**
+     * @param fileName name of the stored file.
+     * @return formats variants of the file are available in, e.g. "jpg"
+     * or "png", most compact first.
+     */
+    List<String> getVariantFormats(String fileName);
+
+    /**
+     * Loads variant of the stored file scaled to one of the configured
+     * widths, creating it if it was not prepared in background yet.
+     *
+     * @param fileName name of the stored file.
+     * @param width    width of the variant, one of {@link #getVariantWidths()}.
+     * @param format   format of the variant, one of {@link #getVariantFormats(String)}.
+     * @return resource containing the resized picture.
+     */
+    Resource loadVariant(String fileName, int width, String format);
+
+    /**
+     * Lays thumbnails of provided files out on one or more contact sheets
+     * without building them. Described sheets can be loaded by their key
+     * together with their cell size and pictures.
+     *
+     * @param files  stored files in order of their cells.
+     * @param width  width of a cell in pixels.
+     * @param height height of a cell in pixels.
+     * @return sheets holding thumbnails of all files.
+     * @throws com.gallery.util.StorageException if cells are too large for a contact sheet.
+     */
+    List<ContactSheet> describeContactSheets(List<StoredFile> files, int width, int height);
+
+    /**
+     * Loads contact sheet, building and caching it on first request.
+     *
+     * @param key      key of a sheet described by {@link #describeContactSheets(List, int, int)}.
+     * @param width    width of a cell in pixels.
+     * @param height   height of a cell in pixels.
+     * @param pictures names of pictures on the sheet.
+     * @return resource containing the sheet as JPEG picture.
+     */
+    Resource loadContactSheet(String key, int width, int height, List<String> pictures);
+}
@@ -0,0 +1,681 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ContactSheet;
+import com.gallery.model.FileStoredEvent;
+import com.gallery.model.PictureType;
+import com.gallery.model.StoredFile;
+import com.gallery.util.ContentHash;
+import com.gallery.util.StorageException;
+import com.gallery.util.StorageFileNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+@Service
+public class ThumbnailServiceImpl implements ThumbnailService, InitService, DestroyService {
+    private static final Logger LOG = LoggerFactory.getLogger(ThumbnailServiceImpl.class);
+    private static final String DEFAULT_FORMAT = "png";
+    private static final String JPEG_FORMAT = "jpg";
+    private static final Pattern SHEET_KEY = Pattern.compile("[0-9a-f]{64}");
+
+    private final StorageService storageService;
+    private final GalleryProperties.Thumbnail properties;
+    private final Path variantsPath;
+    private final Path sheetsPath;
+    private final ExecutorService executor;
+    private final ExecutorService variantExecutor;
+    private final ConcurrentMap<Path, Future<Path>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> composedSheets;
+
+    @Autowired
+    public ThumbnailServiceImpl(final StorageService storageService,
+                                final GalleryProperties properties) {
+        this.storageService = storageService;
+        this.properties = properties.getThumbnail();
+        this.variantsPath = Paths.get(this.properties.getLocation());
+        this.sheetsPath = this.variantsPath.resolve("sheets");
+        final int sheetEntries = this.properties.getSheetEntries();
+        this.composedSheets = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                if (this.size() <= sheetEntries) {
+                    return false;
+                }
+                ThumbnailServiceImpl.this.deleteSheet(eldest.getKey());
+                return true;
+            }
+        };
+        this.executor = new ThreadPoolExecutor(this.properties.getThreads(), this.properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.properties.getQueueCapacity()),
+                new CustomizableThreadFactory("thumbnail-"));
+        this.variantExecutor = new ThreadPoolExecutor(this.properties.getVariantThreads(),
+                this.properties.getVariantThreads(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.properties.getVariantQueueCapacity()),
+                new CustomizableThreadFactory("variant-"));
+    }
+
+    /**
+     * Creates variants directory. Contact sheets left by the previous run
+     * are removed, as they are not counted by the cache of composed sheets.
+     * Sheets still linked from pages are composed again on request.
+     */
+    @Override
+    public void init() {
+        try {
+            FileSystemUtils.deleteRecursively(this.sheetsPath.toFile());
+            Files.createDirectories(this.variantsPath);
+        } catch (IOException e) {
+            throw new StorageException("Could not initialize variants storage.", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Variant is regenerated whenever the original file changes. Concurrent
+     * requests for the same variant share a single resize task.
+     */
+    @Override
+    public Resource loadThumbnail(final String fileName, final int width, final int height) {
+        this.checkThumbnailSize(width, height);
+
+        final Resource original = this.storageService.loadAsResource(fileName);
+        final Path variant = this.thumbnailOf(fileName, width, height);
+
+        if (!this.isFresh(variant, original)) {
+            this.render(original, variant, width, height);
+        }
+
+        return new FileSystemResource(variant.toFile());
+    }
+
+    private void checkThumbnailSize(final int width, final int height) {
+        if (width < 1 || height < 1 || width > this.properties.getMaxSize() || height > this.properties.getMaxSize()) {
+            throw new StorageException("Thumbnail size must be within 1x1 and "
+                    + this.properties.getMaxSize() + "x" + this.properties.getMaxSize() + ".");
+        }
+    }
+
+    /**
+     * @return path of the thumbnail, named after the original with extension
+     * of its format appended if the original is named otherwise.
+     */
+    private Path thumbnailOf(final String fileName, final int width, final int height) {
+        final String name = Paths.get(fileName).getFileName().toString();
+        final String format = this.formatOf(fileName);
+        return this.variantsPath
+                .resolve(width + "x" + height)
+                .resolve(format.equals(this.formatOf(Paths.get(name))) ? name : name + "." + format);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> getVariantWidths() {
+        return this.properties.getVariantWidths();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getVariantFormats(final String fileName) {
+        final String format = this.formatOf(fileName);
+        return this.properties.isJpegVariants() && !this.isJpeg(format)
+                ? Arrays.asList(JPEG_FORMAT, format)
+                : Collections.singletonList(format);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only configured widths and formats are served, so the number of
+     * variants kept per picture stays bounded, otherwise {@link StorageException}
+     * is thrown.
+     */
+    @Override
+    public Resource loadVariant(final String fileName, final int width, final String format) {
+        if (!this.getVariantWidths().contains(width) || !this.getVariantFormats(fileName).contains(format)) {
+            throw new StorageException("No " + format + " variant of width " + width + " is available.");
+        }
+
+        final Resource original = this.storageService.loadAsResource(fileName);
+        final Path variant = this.variantOf(fileName, width, format);
+        if (!this.isFresh(variant, original)) {
+            this.render(original, variant, width, Integer.MAX_VALUE);
+        }
+        return new FileSystemResource(variant.toFile());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Files are split into sheets of at most configured size, each laid
+     * out on a grid close to a square with cells ordered by picture name.
+     * Sheets hold fewer files when their grid would exceed configured
+     * maximum width or height of a sheet.
+     * Key of a sheet is a digest of cell size and of name and content hash
+     * of every file, so it changes whenever any of them does, and can be
+     * derived again from the pictures alone.
+     */
+    @Override
+    public List<ContactSheet> describeContactSheets(final List<StoredFile> files, final int width, final int height) {
+        this.checkSheetCellSize(width, height);
+
+        final int sheetSize = this.sheetSizeOf(width, height);
+        final List<ContactSheet> described = new ArrayList<>();
+        for (int from = 0; from < files.size(); from += sheetSize) {
+            described.add(this.layOut(files.subList(from, Math.min(files.size(), from + sheetSize)),
+                    width, height));
+        }
+        return described;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Missing thumbnails of the sheet are resized in parallel on the worker
+     * pool, then composed by the requesting thread. Concurrent requests for
+     * the same sheet share a single composition. Sheet is composed only if
+     * the key matches the pictures as they are stored now, otherwise
+     * {@link StorageFileNotFoundException} is thrown, as the sheet of that
+     * content can no longer be built.
+     */
+    @Override
+    public Resource loadContactSheet(final String key, final int width, final int height,
+                                     final List<String> pictures) {
+        this.checkSheetCellSize(width, height);
+        if (!SHEET_KEY.matcher(key).matches() || pictures.size() > this.sheetSizeOf(width, height)) {
+            throw new StorageFileNotFoundException("Could not find contact sheet " + key);
+        }
+
+        final Path path = this.sheetOf(key);
+        if (!Files.exists(path)) {
+            final List<StoredFile> files = new ArrayList<>(pictures.size());
+            for (String name : pictures) {
+                files.add(this.storageService.loadMetadata(name));
+            }
+            final ContactSheet sheet = this.layOut(files, width, height);
+            if (!sheet.getKey().equals(key)) {
+                throw new StorageFileNotFoundException("Could not find contact sheet " + key
+                        + ", its pictures have changed.");
+            }
+
+            final FutureTask<Path> task = new FutureTask<>(() -> this.compose(sheet, path));
+            final Future<Path> running = this.inFlight.putIfAbsent(path, task);
+            if (running == null) {
+                task.run();
+            }
+            this.await(running == null ? task : running, path, "contact sheet " + key);
+        }
+        synchronized (this.composedSheets) {
+            this.composedSheets.put(key, Boolean.TRUE);
+        }
+        return new FileSystemResource(path.toFile());
+    }
+
+    private void checkSheetCellSize(final int width, final int height) {
+        this.checkThumbnailSize(width, height);
+        final int max = Math.min(this.properties.getSheetCellMaxSize(), this.properties.getSheetMaxSize());
+        if (width > max || height > max) {
+            throw new StorageException("Contact sheets hold only thumbnails within " + max + "x" + max + ".");
+        }
+    }
+
+    /**
+     * @return number of cells of the given size fitting on a single sheet.
+     */
+    private int sheetSizeOf(final int width, final int height) {
+        final int max = this.properties.getSheetMaxSize();
+        return Math.max(1, Math.min(this.properties.getSheetSize(), (max / width) * (max / height)));
+    }
+
+    /**
+     * Grid is as close to a square as maximum width and height of a sheet
+     * allow, which both hold for no more than {@link #sheetSizeOf(int, int)} cells.
+     */
+    private ContactSheet layOut(final List<StoredFile> files, final int width, final int height) {
+        final List<StoredFile> cells = new ArrayList<>(files);
+        cells.sort(Comparator.comparing(StoredFile::getName));
+        final int rows = Math.max(1, this.properties.getSheetMaxSize() / height);
+        final int columns = Math.min(Math.max(1, this.properties.getSheetMaxSize() / width),
+                Math.max((int) Math.ceil(Math.sqrt(cells.size())), (cells.size() + rows - 1) / rows));
+        return new ContactSheet(this.keyOf(cells, width, height), width, height, columns,
+                cells.stream().map(StoredFile::getName).collect(Collectors.toList()));
+    }
+
+    /**
+     * Files lacking content hash are signed by size and modification time.
+     */
+    private String keyOf(final List<StoredFile> files, final int width, final int height) {
+        final StringBuilder signature = new StringBuilder().append(width).append('x').append(height);
+        for (StoredFile file : files) {
+            signature.append('\n').append(file.getName()).append('\0');
+            if (file.getHash() != null) {
+                signature.append(file.getHash());
+            } else {
+                signature.append(file.getSize()).append('\0').append(file.getLastModified());
+            }
+        }
+        final MessageDigest digest = ContentHash.newDigest();
+        return ContentHash.toHex(digest.digest(signature.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Path sheetOf(final String key) {
+        return this.sheetsPath.resolve(key + "." + JPEG_FORMAT);
+    }
+
+    private void deleteSheet(final String key) {
+        try {
+            Files.deleteIfExists(this.sheetOf(key));
+        } catch (IOException e) {
+            LOG.debug("Failed to delete contact sheet {} : {}.", key, e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Draws thumbnails of the sheet centered in their cells on white
+     * background and atomically writes the result as JPEG.
+     *
+     * @param sheet sheet to compose.
+     * @param path  path to write the sheet to.
+     * @return path to the written sheet.
+     * @throws IOException on error.
+     */
+    private Path compose(final ContactSheet sheet, final Path path) throws IOException {
+        final int width = sheet.getCellWidth();
+        final int height = sheet.getCellHeight();
+        final List<Future<Path>> thumbnails = new ArrayList<>();
+        for (String name : sheet.getPictures()) {
+            thumbnails.add(this.submitThumbnail(name, width, height));
+        }
+
+        final BufferedImage image = new BufferedImage(sheet.getWidth(), sheet.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            final List<ContactSheet.Cell> cells = sheet.getCells();
+            for (int i = 0; i < cells.size(); i++) {
+                final ContactSheet.Cell cell = cells.get(i);
+                if (thumbnails.get(i) == null) {
+                    continue;
+                }
+                try {
+                    final Path thumbnail = this.await(thumbnails.get(i),
+                            this.thumbnailOf(cell.getName(), width, height), cell.getName());
+                    final BufferedImage picture = ImageIO.read(thumbnail.toFile());
+                    if (picture != null) {
+                        g.drawImage(picture, cell.getX() + (width - picture.getWidth()) / 2,
+                                cell.getY() + (height - picture.getHeight()) / 2, null);
+                    }
+                } catch (StorageException e) {
+                    LOG.debug("Leaving cell of {} blank : {}.", cell.getName(), e.getLocalizedMessage());
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+
+        Files.createDirectories(path.getParent());
+        final Path tmp = Files.createTempFile(path.getParent(), ".", ".tmp");
+        try {
+            this.write(image, JPEG_FORMAT, tmp);
+            Files.move(tmp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        LOG.debug("Created contact sheet {} of {} pictures.", sheet.getKey(), sheet.getPictures().size());
+        return path;
+    }
+
+    /**
+     * @return task resizing the thumbnail, completed one if the thumbnail
+     * is up to date, or null if the picture is no longer stored.
+     */
+    private Future<Path> submitThumbnail(final String fileName, final int width, final int height) {
+        try {
+            final Resource original = this.storageService.loadAsResource(fileName);
+            final Path variant = this.thumbnailOf(fileName, width, height);
+            return this.isFresh(variant, original)
+                    ? CompletableFuture.completedFuture(variant)
+                    : this.submit(original, variant, width, height);
+        } catch (StorageFileNotFoundException e) {
+            LOG.debug("Leaving cell of {} blank : {}.", fileName, e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Queues preparation of all variants of a newly stored picture on the
+     * background pool, which is kept apart from the pool serving requests.
+     * If the queue is full the variants are left to be created on first request.
+     *
+     * @param event event of the stored file.
+     */
+    @EventListener
+    public void onFileStored(final FileStoredEvent event) {
+        final String fileName = event.getFile().getName();
+        try {
+            this.variantExecutor.execute(() -> this.prepareVariants(fileName));
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Skipping background variants of {}, queue is full.", fileName);
+        }
+    }
+
+    /**
+     * Creates all stale variants of the picture, decoding the original only once.
+     *
+     * @param fileName name of the stored file.
+     */
+    private void prepareVariants(final String fileName) {
+        try {
+            final Resource original = this.storageService.loadForBackground(fileName);
+            BufferedImage source = null;
+            for (Integer width : this.getVariantWidths()) {
+                for (String format : this.getVariantFormats(fileName)) {
+                    final Path variant = this.variantOf(fileName, width, format);
+                    if (!this.isFresh(variant, original)) {
+                        source = source == null ? this.decode(original) : source;
+                        this.resize(source, original, variant, width, Integer.MAX_VALUE);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to prepare variants of {} : {}.", fileName, e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * @return path of the variant, named after the original with extension
+     * of the format appended if it differs from the original one.
+     */
+    private Path variantOf(final String fileName, final int width, final String format) {
+        final String name = Paths.get(fileName).getFileName().toString();
+        return this.variantsPath
+                .resolve("w" + width)
+                .resolve(format.equals(this.formatOf(Paths.get(name))) ? name : name + "." + format);
+    }
+
+    /**
+     * @return format of the stored picture as recognised by its content, or
+     * guessed from its name if the type was not recorded.
+     */
+    private String formatOf(final String fileName) {
+        final PictureType type = this.storageService.loadMetadata(fileName).getType();
+        return type == null ? this.formatOf(Paths.get(fileName)) : type.getFormat();
+    }
+
+    /**
+     * Checks whether cached variant exists and was created from the current
+     * version of the original. Variants carry modification time of the
+     * original they were made from, as stored files keep modification time
+     * of their sources and thus may be replaced by older ones.
+     *
+     * @param variant  path to the cached variant.
+     * @param original original picture.
+     * @return true if variant can be served as is, otherwise false.
+     */
+    private boolean isFresh(final Path variant, final Resource original) {
+        try {
+            return Files.exists(variant)
+                    && Files.getLastModifiedTime(variant).toMillis() == original.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Submits resize task to the worker pool, or joins the one already
+     * running for the same variant, and waits for its completion.
+     * If the pool is saturated {@link java.util.concurrent.RejectedExecutionException}
+     * is propagated to the caller.
+     *
+     * @param original original picture.
+     * @param variant  path to write the variant to.
+     * @param width    maximal width of the variant.
+     * @param height   maximal height of the variant.
+     */
+    private void render(final Resource original, final Path variant, final int width, final int height) {
+        this.await(this.submit(original, variant, width, height), variant, original.getFilename());
+    }
+
+    private Future<Path> submit(final Resource original, final Path variant, final int width, final int height) {
+        return this.inFlight.computeIfAbsent(variant,
+                key -> this.executor.submit(() -> this.resize(original, key, width, height)));
+    }
+
+    /**
+     * Waits for completion of the task producing provided path and forgets
+     * the task afterwards.
+     *
+     * @param task task producing the path.
+     * @param path path produced by the task.
+     * @param name name of the picture, used in error messages.
+     * @return produced path.
+     */
+    private Path await(final Future<Path> task, final Path path, final String name) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while resizing " + name, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StorageException) {
+                throw (StorageException) e.getCause();
+            }
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw (RejectedExecutionException) e.getCause();
+            }
+            throw new StorageException("Failed to resize " + name, e.getCause());
+        } finally {
+            this.inFlight.remove(path, task);
+        }
+    }
+
+    /**
+     * Decodes original picture, scales it to fit into provided bounds keeping
+     * aspect ratio and atomically writes the result to the variant path.
+     * Pictures that already fit are never upscaled.
+     *
+     * @param original original picture.
+     * @param variant  path to write the variant to.
+     * @param width    maximal width of the variant.
+     * @param height   maximal height of the variant.
+     * @return path to the written variant.
+     * @throws IOException on error.
+     */
+    private Path resize(final Resource original, final Path variant,
+                        final int width, final int height) throws IOException {
+        return this.resize(this.decode(original), original, variant, width, height);
+    }
+
+    private BufferedImage decode(final Resource original) throws IOException {
+        final BufferedImage source;
+        try (InputStream in = original.getInputStream()) {
+            source = ImageIO.read(in);
+        }
+        if (source == null) {
+            throw new StorageException("Unsupported picture format of file " + original.getFilename());
+        }
+        return source;
+    }
+
+    private Path resize(final BufferedImage source, final Resource original, final Path variant,
+                        final int width, final int height) throws IOException {
+        final double scale = Math.min(1.0, Math.min((double) width / source.getWidth(),
+                (double) height / source.getHeight()));
+        final int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        final int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        final String format = this.formatOf(variant);
+        final BufferedImage scaled = this.scale(source, targetWidth, targetHeight, format);
+
+        Files.createDirectories(variant.getParent());
+        final Path tmp = Files.createTempFile(variant.getParent(), ".", ".tmp");
+        try {
+            this.write(scaled, format, tmp);
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(original.lastModified()));
+            Files.move(tmp, variant, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        LOG.debug("Created {}x{} variant of {}.", targetWidth, targetHeight, original.getFilename());
+        return variant;
+    }
+
+    /**
+     * Scales picture to exact size according to configured quality.
+     *
+     * @param source picture to scale.
+     * @param width  target width.
+     * @param height target height.
+     * @param format output format, used to decide whether alpha channel can be kept.
+     * @return scaled picture.
+     */
+    private BufferedImage scale(final BufferedImage source, final int width, final int height, final String format) {
+        final int type = source.getTransparency() == Transparency.OPAQUE || this.isJpeg(format)
+                ? BufferedImage.TYPE_INT_RGB
+                : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+
+        do {
+            if (this.properties.getQuality() == GalleryProperties.Quality.QUALITY) {
+                currentWidth = Math.max(width, currentWidth / 2);
+                currentHeight = Math.max(height, currentHeight / 2);
+            } else {
+                currentWidth = width;
+                currentHeight = height;
+            }
+            current = this.draw(current, currentWidth, currentHeight, type);
+        } while (currentWidth != width || currentHeight != height);
+
+        return current;
+    }
+
+    private BufferedImage draw(final BufferedImage source, final int width, final int height, final int type) {
+        final BufferedImage target = new BufferedImage(width, height, type);
+        final Graphics2D g = target.createGraphics();
+        try {
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    this.properties.getQuality() == GalleryProperties.Quality.SPEED
+                            ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                            : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Writes picture in given format, applying configured compression
+     * quality to JPEG output.
+     *
+     * @param image  picture to write.
+     * @param format output format.
+     * @param target path to write to.
+     * @throws IOException on error.
+     */
+    private void write(final BufferedImage image, final String format, final Path target) throws IOException {
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new StorageException("No writer available for format " + format);
+        }
+
+        final ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            if (this.isJpeg(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(this.properties.getJpegQuality());
+            }
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private String formatOf(final Path file) {
+        final String extension = StringUtils.getFilenameExtension(file.getFileName().toString());
+        return extension == null ? DEFAULT_FORMAT : extension.toLowerCase();
+    }
+
+    private boolean isJpeg(final String format) {
+        return "jpg".equals(format) || "jpeg".equals(format);
+    }
+
+    /**
+     * Removes variants directory and all cached variants.
+     */
+    @Override
+    public void destroy() {
+        FileSystemUtils.deleteRecursively(this.variantsPath.toFile());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdownNow();
+        this.variantExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,32 @@
+package com.gallery.service;
+
+import com.gallery.model.TilePyramid;
+import org.springframework.core.io.Resource;
+
+/**
+ * The {@link TileService} interface defines business behaviours
+ * associated with serving stored pictures as Deep Zoom tile pyramids,
+ * so that viewers fetch only the visible part of a large picture.
+ */
+public interface TileService {
+    /**
+     * Describes the tile pyramid of the stored file. Only the header of the
+     * picture is read.
+     *
+     * @param fileName name of the stored file.
+     * @return tile pyramid of the file.
+     */
+    TilePyramid loadPyramid(String fileName);
+
+    /**
+     * Loads tile of the stored file, creating and caching it on first request.
+     *
+     * @param fileName name of the stored file.
+     * @param level    level of the pyramid.
+     * @param column   column of the tile.
+     * @param row      row of the tile.
+     * @param format   format of the tile, as described by {@link #loadPyramid(String)}.
+     * @return resource containing the tile.
+     */
+    Resource loadTile(String fileName, int level, int column, int row, String format);
+}
@@ -0,0 +1,311 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.PictureType;
+import com.gallery.model.TilePyramid;
+import com.gallery.util.StorageException;
+import com.gallery.util.StorageFileNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+@Service
+public class TileServiceImpl implements TileService, InitService, DestroyService {
+    private static final Logger LOG = LoggerFactory.getLogger(TileServiceImpl.class);
+    private static final String DEFAULT_FORMAT = "png";
+
+    private final StorageService storageService;
+    private final GalleryProperties.Tiles properties;
+    private final Path tilesPath;
+    private final ExecutorService executor;
+    private final ConcurrentMap<Path, Future<Path>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TileServiceImpl(final StorageService storageService,
+                           final GalleryProperties properties) {
+        this.storageService = storageService;
+        this.properties = properties.getTiles();
+        this.tilesPath = Paths.get(this.properties.getLocation());
+        this.executor = new ThreadPoolExecutor(this.properties.getThreads(), this.properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.properties.getQueueCapacity()),
+                new CustomizableThreadFactory("tile-"));
+    }
+
+    /**
+     * Creates tiles directory.
+     */
+    @Override
+    public void init() {
+        try {
+            Files.createDirectories(this.tilesPath);
+        } catch (IOException e) {
+            throw new StorageException("Could not initialize tiles storage.", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tiles keep the format of the original picture.
+     */
+    @Override
+    public TilePyramid loadPyramid(final String fileName) {
+        final Resource original = this.storageService.loadAsResource(fileName);
+        try {
+            return this.read(original, reader ->
+                    this.pyramidOf(reader.getWidth(0), reader.getHeight(0), this.formatOf(fileName)));
+        } catch (IOException e) {
+            throw new StorageException("Failed to read picture " + fileName, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tile is cut again whenever the original file changes. Concurrent
+     * requests for the same tile share a single task. If the pyramid has no
+     * such tile {@link StorageFileNotFoundException} is thrown.
+     */
+    @Override
+    public Resource loadTile(final String fileName, final int level, final int column, final int row,
+                             final String format) {
+        if (!this.formatOf(fileName).equals(format)) {
+            throw new StorageFileNotFoundException("Could not find " + format + " tiles of file " + fileName);
+        }
+
+        final Resource original = this.storageService.loadAsResource(fileName);
+        final Path tile = this.tilesPath
+                .resolve(Paths.get(fileName).getFileName() + "_files")
+                .resolve(String.valueOf(level))
+                .resolve(column + "_" + row + "." + format);
+
+        if (!this.isFresh(tile, original)) {
+            this.render(original, tile, level, column, row, format);
+        }
+
+        return new FileSystemResource(tile.toFile());
+    }
+
+    private TilePyramid pyramidOf(final int width, final int height, final String format) {
+        return new TilePyramid(width, height, this.properties.getTileSize(), this.properties.getOverlap(), format);
+    }
+
+    /**
+     * @param tile     path to the cached tile.
+     * @param original original picture.
+     * @return true if tile exists and was cut from the current version of the original, otherwise false.
+     */
+    private boolean isFresh(final Path tile, final Resource original) {
+        try {
+            return Files.exists(tile)
+                    && Files.getLastModifiedTime(tile).toMillis() == original.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Submits task cutting the tile to the worker pool, or joins the one
+     * already running for the same tile, and waits for its completion.
+     * If the pool is saturated {@link java.util.concurrent.RejectedExecutionException}
+     * is propagated to the caller.
+     */
+    private void render(final Resource original, final Path tile, final int level, final int column, final int row,
+                        final String format) {
+        final Future<Path> task = this.inFlight.computeIfAbsent(tile,
+                key -> this.executor.submit(() -> this.cut(original, key, level, column, row, format)));
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while cutting tile of " + original.getFilename(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StorageException) {
+                throw (StorageException) e.getCause();
+            }
+            throw new StorageException("Failed to cut tile of " + original.getFilename(), e.getCause());
+        } finally {
+            this.inFlight.remove(tile, task);
+        }
+    }
+
+    /**
+     * Decodes only the region of the original covered by the tile and
+     * atomically writes it to the tile path. Lower levels are decoded with
+     * subsampling to twice the tile size and then halved, so the decoded
+     * area stays bounded whatever the size of the original.
+     *
+     * @param original original picture.
+     * @param tile     path to write the tile to.
+     * @param level    level of the pyramid.
+     * @param column   column of the tile.
+     * @param row      row of the tile.
+     * @param format   format of the tile.
+     * @return path to the written tile.
+     * @throws IOException on error.
+     */
+    private Path cut(final Resource original, final Path tile, final int level, final int column, final int row,
+                     final String format) throws IOException {
+        final BufferedImage image = this.read(original, reader -> {
+            final TilePyramid pyramid = this.pyramidOf(reader.getWidth(0), reader.getHeight(0), format);
+            if (!pyramid.hasTile(level, column, row)) {
+                throw new StorageFileNotFoundException("Could not find tile " + level + "/" + column + "_" + row
+                        + " of file " + original.getFilename());
+            }
+
+            final Rectangle bounds = pyramid.boundsOf(level, column, row);
+            final long scale = pyramid.scaleOf(level);
+            final int x = (int) (bounds.x * scale);
+            final int y = (int) (bounds.y * scale);
+            final int subsampling = (int) Math.max(1, scale / 2);
+
+            final ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(x, y,
+                    (int) Math.min(pyramid.getWidth() - x, bounds.width * scale),
+                    (int) Math.min(pyramid.getHeight() - y, bounds.height * scale)));
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            final BufferedImage region = reader.read(0, param);
+            return region.getWidth() == bounds.width && region.getHeight() == bounds.height
+                    ? region
+                    : this.scale(region, bounds.width, bounds.height);
+        });
+
+        Files.createDirectories(tile.getParent());
+        final Path tmp = Files.createTempFile(tile.getParent(), ".", ".tmp");
+        try {
+            if (!ImageIO.write(image, format, tmp.toFile())) {
+                throw new StorageException("No writer available for format " + format);
+            }
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(original.lastModified()));
+            Files.move(tmp, tile, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        LOG.debug("Cut tile {}/{}_{} of {}.", level, column, row, original.getFilename());
+        return tile;
+    }
+
+    private BufferedImage scale(final BufferedImage source, final int width, final int height) {
+        final int type = source.getTransparency() == Transparency.OPAQUE
+                ? BufferedImage.TYPE_INT_RGB
+                : BufferedImage.TYPE_INT_ARGB;
+        final BufferedImage target = new BufferedImage(width, height, type);
+        final Graphics2D g = target.createGraphics();
+        try {
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Opens the original for random access and passes a reader positioned at
+     * its header to provided action, so that pixels are decoded only on request.
+     *
+     * @param original original picture.
+     * @param action   action reading the picture.
+     * @param <T>      type of the result.
+     * @return result of the action.
+     * @throws IOException on error.
+     */
+    private <T> T read(final Resource original, final ReaderAction<T> action) throws IOException {
+        try (ImageInputStream in = this.open(original)) {
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new StorageException("Unsupported picture format of file " + original.getFilename());
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return action.apply(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return stream reading stored content under scheduling, see
+     * {@link ScheduledResource#openImageInputStream()}, or reading the file
+     * backing any other resource.
+     */
+    private ImageInputStream open(final Resource original) throws IOException {
+        if (original instanceof ScheduledResource) {
+            return ((ScheduledResource) original).openImageInputStream();
+        }
+        return new FileImageInputStream(original.getFile());
+    }
+
+    /**
+     * @return format of the stored picture as recognised by its content, or
+     * guessed from its name if the type was not recorded.
+     */
+    private String formatOf(final String fileName) {
+        final PictureType type = this.storageService.loadMetadata(fileName).getType();
+        if (type != null) {
+            return type.getFormat();
+        }
+        final String extension = StringUtils.getFilenameExtension(fileName);
+        return extension == null ? DEFAULT_FORMAT : extension.toLowerCase();
+    }
+
+    /**
+     * Removes tiles directory and all cached tiles.
+     */
+    @Override
+    public void destroy() {
+        FileSystemUtils.deleteRecursively(this.tilesPath.toFile());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface ReaderAction<T> {
+        T apply(ImageReader reader) throws IOException;
+    }
+}
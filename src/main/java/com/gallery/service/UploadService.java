@@ -0,0 +1,48 @@
+package com.gallery.service;
+
+import com.gallery.model.Upload;
+
+import java.io.InputStream;
+
+/**
+ * The {@link UploadService} interface defines behaviours of resumable
+ * uploads, which stream content sent by clients straight into server
+ * storage in one or more parts.
+ */
+public interface UploadService {
+    /**
+     * Starts upload of a file of declared size.
+     *
+     * @param fileName name under which file should be stored.
+     * @param length   size of the file in bytes.
+     * @return started upload.
+     */
+    Upload create(String fileName, long length);
+
+    /**
+     * Loads upload by its identifier, so client can learn where to resume from.
+     *
+     * @param uploadId identifier of the upload.
+     * @return upload.
+     */
+    Upload get(String uploadId);
+
+    /**
+     * Writes part of the file starting at provided offset, which has to
+     * match number of bytes received so far. Once all bytes are received
+     * the file is stored.
+     *
+     * @param uploadId identifier of the upload.
+     * @param offset   offset of the first byte of the part.
+     * @param content  part of the file, read until its end.
+     * @return upload with updated offset.
+     */
+    Upload write(String uploadId, long offset, InputStream content);
+
+    /**
+     * Abandons upload and drops content received so far.
+     *
+     * @param uploadId identifier of the upload.
+     */
+    void abort(String uploadId);
+}
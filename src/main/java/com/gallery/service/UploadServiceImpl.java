@@ -0,0 +1,206 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.Upload;
+import com.gallery.util.StorageException;
+import com.gallery.util.StorageFileNotFoundException;
+import com.gallery.util.UploadConflictException;
+import com.gallery.util.UploadTooLargeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+@Service
+public class UploadServiceImpl implements UploadService {
+    private static final Logger LOG = LoggerFactory.getLogger(UploadServiceImpl.class);
+    private static final long TRANSFER_CHUNK = 64 * 1024;
+
+    private final StorageService storageService;
+    private final long maxSize;
+    private final int maxActive;
+    private final long expiry;
+    private final ConcurrentMap<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UploadServiceImpl(final StorageService storageService, final GalleryProperties properties) {
+        this.storageService = storageService;
+        this.maxSize = properties.getUploads().getMaxSize();
+        this.maxActive = properties.getUploads().getMaxActive();
+        this.expiry = TimeUnit.SECONDS.toMillis(properties.getUploads().getExpiry());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Uploads idle for longer than configured expiry are dropped first. If
+     * the file exceeds configured size limit throws {@link UploadTooLargeException},
+     * if too many uploads are in progress throws {@link RejectedExecutionException}.
+     */
+    @Override
+    public Upload create(final String fileName, final long length) {
+        this.validateFileName(fileName);
+        if (length < 0) {
+            throw new StorageException("Upload length can't be negative.");
+        }
+        if (length > this.maxSize) {
+            throw new UploadTooLargeException("File " + fileName + " exceeds size limit of " + this.maxSize + " bytes.");
+        }
+
+        this.expireIdle();
+        if (this.uploads.size() >= this.maxActive) {
+            throw new RejectedExecutionException("Too many uploads in progress.");
+        }
+
+        final Upload upload = new Upload(UUID.randomUUID().toString(), fileName, length,
+                this.storageService.createStagingFile());
+        this.uploads.put(upload.getId(), upload);
+        LOG.debug("Started upload {}.", upload);
+
+        if (length == 0) {
+            this.complete(upload);
+        }
+        return upload;
+    }
+
+    private void validateFileName(final String fileName) {
+        Assert.hasText(fileName, "File name can't be empty.");
+        if (fileName.startsWith(".") || !fileName.equals(Paths.get(fileName).getFileName().toString())) {
+            throw new StorageException("Invalid file name " + fileName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * If no upload found throws {@link StorageFileNotFoundException}.
+     */
+    @Override
+    public Upload get(final String uploadId) {
+        final Upload upload = this.uploads.get(uploadId);
+        if (upload == null) {
+            throw new StorageFileNotFoundException("Could not find upload " + uploadId);
+        }
+        return upload;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Content is transferred to the staging file in fixed size chunks, so
+     * memory used by an upload does not depend on the file size, and bytes
+     * written before a broken connection are kept for the client to resume.
+     * If offset does not match throws {@link UploadConflictException}, if
+     * content is longer than declared throws {@link UploadTooLargeException}
+     * and drops the upload.
+     */
+    @Override
+    public Upload write(final String uploadId, final long offset, final InputStream content) {
+        final Upload upload = this.get(uploadId);
+        synchronized (upload) {
+            if (upload.isComplete() || offset != upload.getOffset()) {
+                throw new UploadConflictException("Upload " + uploadId + " expects offset " + upload.getOffset()
+                        + " of " + upload.getLength() + " bytes.");
+            }
+
+            long position = offset;
+            try (FileChannel out = FileChannel.open(upload.getStaged(), WRITE)) {
+                final ReadableByteChannel in = Channels.newChannel(content);
+                while (position < upload.getLength()) {
+                    final long transferred = out.transferFrom(in,
+                            position, Math.min(TRANSFER_CHUNK, upload.getLength() - position));
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                    upload.advance(position);
+                }
+                if (position == upload.getLength() && content.read() != -1) {
+                    this.abort(uploadId);
+                    throw new UploadTooLargeException("Upload " + uploadId + " exceeds declared length of "
+                            + upload.getLength() + " bytes.");
+                }
+            } catch (IOException e) {
+                throw new StorageException("Failed to write upload " + uploadId, e);
+            }
+
+            if (position == upload.getLength()) {
+                this.complete(upload);
+            }
+        }
+        return upload;
+    }
+
+    /**
+     * Stores the uploaded file. An upload whose file could not be stored,
+     * for instance as its content is not of an accepted picture type, is
+     * dropped.
+     */
+    private void complete(final Upload upload) {
+        try {
+            upload.complete(this.storageService.storeStaged(upload.getStaged(), upload.getFileName()));
+        } catch (StorageException e) {
+            this.uploads.remove(upload.getId(), upload);
+            this.discard(upload);
+            throw e;
+        }
+        LOG.info("Completed upload {}.", upload);
+    }
+
+    /**
+     * {@inheritDoc}
+     * If no upload found throws {@link StorageFileNotFoundException}.
+     */
+    @Override
+    public void abort(final String uploadId) {
+        final Upload upload = this.get(uploadId);
+        this.uploads.remove(uploadId);
+        this.discard(upload);
+        LOG.debug("Aborted upload {}.", upload);
+    }
+
+    private void expireIdle() {
+        final long deadline = System.currentTimeMillis() - this.expiry;
+        this.uploads.values().stream()
+                .filter(upload -> upload.getLastActivity() < deadline)
+                .forEach(upload -> {
+                    if (this.uploads.remove(upload.getId(), upload)) {
+                        LOG.debug("Expired upload {}.", upload);
+                        this.discard(upload);
+                    }
+                });
+    }
+
+    private void discard(final Upload upload) {
+        synchronized (upload) {
+            if (upload.isComplete()) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(upload.getStaged());
+            } catch (IOException e) {
+                LOG.warn("Failed to delete staging file {} : {}.", upload.getStaged(), e.getLocalizedMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.uploads.values().forEach(this::discard);
+        this.uploads.clear();
+    }
+}
@@ -0,0 +1,83 @@
+package com.gallery.util;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The {@link ByteBufferResource} class exposes content held in a
+ * {@link ByteBuffer}, usually a direct one, as a {@link org.springframework.core.io.Resource}.
+ * Every reader gets its own view of the buffer, so the resource may be
+ * read concurrently and repeatedly.
+ */
+public class ByteBufferResource extends AbstractResource {
+    private final ByteBuffer buffer;
+    private final String fileName;
+    private final long lastModified;
+
+    public ByteBufferResource(final ByteBuffer buffer, final String fileName, final long lastModified) {
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.fileName = fileName;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return read-only view of the content.
+     */
+    public ByteBuffer getByteBuffer() {
+        return this.buffer.duplicate();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        final ByteBuffer content = this.getByteBuffer();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return content.hasRemaining() ? content.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(final byte[] bytes, final int offset, final int length) {
+                if (!content.hasRemaining()) {
+                    return -1;
+                }
+                final int count = Math.min(length, content.remaining());
+                content.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return content.remaining();
+            }
+        };
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return this.buffer.remaining();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return this.lastModified;
+    }
+
+    @Override
+    public String getFilename() {
+        return this.fileName;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Byte buffer resource [" + this.fileName + "]";
+    }
+}
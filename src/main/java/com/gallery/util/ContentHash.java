@@ -0,0 +1,98 @@
+package com.gallery.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The {@link ContentHash} class computes SHA-256 digests of file content.
+ */
+public final class ContentHash {
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private ContentHash() {
+    }
+
+    /**
+     * @return new SHA-256 digest.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not supported by the platform.", e);
+        }
+    }
+
+    /**
+     * Reads whole file through a direct, per thread buffer and returns hex encoded
+     * SHA-256 digest of its content.
+     *
+     * @param file file to hash.
+     * @return hex encoded digest.
+     * @throws IOException on error.
+     */
+    public static String of(final Path file) throws IOException {
+        final MessageDigest digest = newDigest();
+        final ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Copies file content through a direct buffer, hashing it on the way,
+     * so content is read only once.
+     *
+     * @param src    file to copy.
+     * @param target existing file to write to.
+     * @return hex encoded digest of the copied content.
+     * @throws IOException on error.
+     */
+    public static String copy(final Path src, final Path target) throws IOException {
+        final MessageDigest digest = newDigest();
+        final ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        try (FileChannel in = FileChannel.open(src, READ);
+             FileChannel out = FileChannel.open(target, WRITE)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param bytes bytes to encode.
+     * @return lower case hex representation of provided bytes.
+     */
+    public static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,8 @@
+package com.gallery.util;
+
+public class GalleryNotFoundException extends RuntimeException {
+
+    public GalleryNotFoundException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.gallery.util;
+
+public class ImportJobNotFoundException extends RuntimeException {
+
+    public ImportJobNotFoundException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,227 @@
+package com.gallery.util;
+
+import com.gallery.model.PictureType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The {@link PictureHeader} class describes a picture as declared by the
+ * header of its file. Only the leading bytes of the file are read, and for
+ * JPEG the segment headers preceding the frame header, so pixels are never
+ * decoded. Dimensions of formats not understood are zero.
+ */
+public final class PictureHeader {
+    /**
+     * Header of a file that is not a picture of any known type.
+     */
+    public static final PictureHeader UNKNOWN = new PictureHeader(null, 0, 0, 0);
+
+    private static final int HEADER_LENGTH = 32;
+    private static final int MAX_JPEG_SEGMENTS = 256;
+
+    private final PictureType type;
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+
+    /**
+     * @param type     type of the picture, or null if not known.
+     * @param width    width in pixels.
+     * @param height   height in pixels.
+     * @param bitDepth bits per sample for PNG and JPEG, bits per pixel for GIF and BMP.
+     */
+    public PictureHeader(final PictureType type, final int width, final int height, final int bitDepth) {
+        this.type = type;
+        this.width = width;
+        this.height = height;
+        this.bitDepth = bitDepth;
+    }
+
+    public PictureType getType() {
+        return this.type;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getBitDepth() {
+        return this.bitDepth;
+    }
+
+    /**
+     * Reads header of the file.
+     *
+     * @param file file to read.
+     * @return header of the picture, or {@link #UNKNOWN} if file is not a picture of known type.
+     * @throws IOException on error.
+     */
+    public static PictureHeader read(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            readFully(channel, header, 0);
+            final Optional<PictureType> type = PictureType.detect(header.array(), header.limit());
+            if (!type.isPresent()) {
+                return UNKNOWN;
+            }
+
+            switch (type.get()) {
+                case PNG:
+                    return png(header);
+                case GIF:
+                    return gif(header.order(ByteOrder.LITTLE_ENDIAN));
+                case BMP:
+                    return bmp(header.order(ByteOrder.LITTLE_ENDIAN));
+                case WEBP:
+                    return webp(header.order(ByteOrder.LITTLE_ENDIAN));
+                case JPEG:
+                    return jpeg(channel);
+                default:
+                    return new PictureHeader(type.get(), 0, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Reads the IHDR chunk, which always directly follows the signature.
+     */
+    private static PictureHeader png(final ByteBuffer header) {
+        if (header.limit() < 25 || !"IHDR".equals(ascii(header, 12, 4))) {
+            return new PictureHeader(PictureType.PNG, 0, 0, 0);
+        }
+        return new PictureHeader(PictureType.PNG, header.getInt(16), header.getInt(20), header.get(24) & 0xFF);
+    }
+
+    /**
+     * Reads the logical screen descriptor, taking the colour resolution as bit depth.
+     */
+    private static PictureHeader gif(final ByteBuffer header) {
+        if (header.limit() < 11) {
+            return new PictureHeader(PictureType.GIF, 0, 0, 0);
+        }
+        return new PictureHeader(PictureType.GIF, header.getShort(6) & 0xFFFF, header.getShort(8) & 0xFFFF,
+                ((header.get(10) >> 4) & 0x07) + 1);
+    }
+
+    /**
+     * Reads the DIB header, either the OS/2 one of 16 bit dimensions or any
+     * of the Windows ones, whose height is negative for top-down bitmaps.
+     */
+    private static PictureHeader bmp(final ByteBuffer header) {
+        if (header.limit() < 30) {
+            return new PictureHeader(PictureType.BMP, 0, 0, 0);
+        }
+        if (header.getInt(14) == 12) {
+            return new PictureHeader(PictureType.BMP, header.getShort(18) & 0xFFFF, header.getShort(20) & 0xFFFF,
+                    header.getShort(24) & 0xFFFF);
+        }
+        return new PictureHeader(PictureType.BMP, header.getInt(18), Math.abs(header.getInt(22)),
+                header.getShort(28) & 0xFFFF);
+    }
+
+    /**
+     * Reads dimensions from the first chunk, of the extended, lossless or lossy format.
+     */
+    private static PictureHeader webp(final ByteBuffer header) {
+        if (header.limit() < 30) {
+            return new PictureHeader(PictureType.WEBP, 0, 0, 0);
+        }
+        switch (ascii(header, 12, 4)) {
+            case "VP8X":
+                return new PictureHeader(PictureType.WEBP, 1 + uint24(header, 24), 1 + uint24(header, 27), 8);
+            case "VP8L":
+                final int bits = header.getInt(21);
+                return new PictureHeader(PictureType.WEBP, 1 + (bits & 0x3FFF), 1 + ((bits >>> 14) & 0x3FFF), 8);
+            case "VP8 ":
+                return new PictureHeader(PictureType.WEBP, header.getShort(26) & 0x3FFF,
+                        header.getShort(28) & 0x3FFF, 8);
+            default:
+                return new PictureHeader(PictureType.WEBP, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Skips segments up to the start of frame, reading only their headers.
+     * Scan stops at the start of scan, as the frame header always precedes it.
+     */
+    private static PictureHeader jpeg(final FileChannel channel) throws IOException {
+        final ByteBuffer segment = ByteBuffer.allocate(9);
+        long position = 2;
+        for (int i = 0; i < MAX_JPEG_SEGMENTS; i++) {
+            segment.clear();
+            if (readFully(channel, segment, position) < 4 || (segment.get(0) & 0xFF) != 0xFF) {
+                break;
+            }
+
+            final int marker = segment.get(1) & 0xFF;
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            if (marker == 0x01 || marker >= 0xD0 && marker <= 0xD8) {
+                position += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                break;
+            }
+
+            if (isStartOfFrame(marker) && segment.limit() == segment.capacity()) {
+                return new PictureHeader(PictureType.JPEG, segment.getShort(7) & 0xFFFF,
+                        segment.getShort(5) & 0xFFFF, segment.get(4) & 0xFF);
+            }
+            final int length = segment.getShort(2) & 0xFFFF;
+            if (length < 2) {
+                break;
+            }
+            position += 2 + length;
+        }
+        return new PictureHeader(PictureType.JPEG, 0, 0, 0);
+    }
+
+    /**
+     * @return true for start of frame markers, except those of Huffman tables,
+     * arithmetic coding conditioning and the reserved JPG extension, which share the range.
+     */
+    private static boolean isStartOfFrame(final int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    /**
+     * Reads from given position until buffer is full or end of file is reached,
+     * and flips the buffer.
+     *
+     * @return number of bytes read.
+     */
+    private static int readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.limit();
+    }
+
+    private static String ascii(final ByteBuffer header, final int offset, final int length) {
+        return new String(header.array(), offset, length, StandardCharsets.US_ASCII);
+    }
+
+    private static int uint24(final ByteBuffer header, final int offset) {
+        return (header.get(offset) & 0xFF) | (header.get(offset + 1) & 0xFF) << 8
+                | (header.get(offset + 2) & 0xFF) << 16;
+    }
+}
@@ -0,0 +1,8 @@
+package com.gallery.util;
+
+public class UploadConflictException extends StorageException {
+
+    public UploadConflictException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.gallery.util;
+
+public class UploadTooLargeException extends StorageException {
+
+    public UploadTooLargeException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Shows every element with a data-dzi attribute as a Deep Zoom picture.
+ * The picture starts at the smallest level that fills the width of its
+ * container; double click zooms in one level at the clicked point and
+ * double click with Shift zooms out. Tiles of the shown level are laid out
+ * on a grid and loaded lazily, so the browser fetches only tiles near the
+ * visible area instead of the whole picture.
+ */
+(function () {
+    'use strict';
+
+    function sizeOf(picture, level) {
+        var scale = Math.pow(2, picture.maxLevel - level);
+        return {
+            width: Math.ceil(picture.width / scale),
+            height: Math.ceil(picture.height / scale)
+        };
+    }
+
+    function fittingLevel(picture, containerWidth) {
+        var level = 0;
+        while (level < picture.maxLevel && sizeOf(picture, level).width < containerWidth) {
+            level++;
+        }
+        return level;
+    }
+
+    function planeOf(picture, level) {
+        var size = sizeOf(picture, level);
+        var base = picture.href.replace(/\.dzi$/, '_files/') + level + '/';
+        var plane = document.createElement('div');
+        plane.className = 'deep-zoom-plane';
+        plane.style.width = size.width + 'px';
+        plane.style.height = size.height + 'px';
+
+        for (var row = 0; row * picture.tileSize < size.height; row++) {
+            for (var column = 0; column * picture.tileSize < size.width; column++) {
+                var tile = document.createElement('img');
+                tile.setAttribute('loading', 'lazy');
+                tile.alt = '';
+                tile.style.left = (column * picture.tileSize - (column ? picture.overlap : 0)) + 'px';
+                tile.style.top = (row * picture.tileSize - (row ? picture.overlap : 0)) + 'px';
+                tile.src = base + column + '_' + row + '.' + picture.format;
+                plane.appendChild(tile);
+            }
+        }
+        return plane;
+    }
+
+    function show(container, descriptor) {
+        var image = descriptor.documentElement;
+        var size = image.getElementsByTagName('Size')[0];
+        var picture = {
+            href: container.getAttribute('data-dzi'),
+            width: +size.getAttribute('Width'),
+            height: +size.getAttribute('Height'),
+            tileSize: +image.getAttribute('TileSize'),
+            overlap: +image.getAttribute('Overlap'),
+            format: image.getAttribute('Format'),
+            maxLevel: 0
+        };
+        while (Math.pow(2, picture.maxLevel) < Math.max(picture.width, picture.height)) {
+            picture.maxLevel++;
+        }
+
+        var level = fittingLevel(picture, container.clientWidth);
+        var plane = planeOf(picture, level);
+        container.appendChild(plane);
+
+        container.addEventListener('dblclick', function (event) {
+            var next = level + (event.shiftKey ? -1 : 1);
+            if (next < 0 || next > picture.maxLevel) {
+                return;
+            }
+            var bounds = container.getBoundingClientRect();
+            var x = event.clientX - bounds.left;
+            var y = event.clientY - bounds.top;
+            var factor = Math.pow(2, next - level);
+            var left = (container.scrollLeft + x) * factor - x;
+            var top = (container.scrollTop + y) * factor - y;
+
+            var zoomed = planeOf(picture, next);
+            container.replaceChild(zoomed, plane);
+            plane = zoomed;
+            level = next;
+            container.scrollLeft = left;
+            container.scrollTop = top;
+            event.preventDefault();
+        });
+    }
+
+    var containers = document.querySelectorAll('[data-dzi]');
+    Array.prototype.forEach.call(containers, function (container) {
+        var request = new XMLHttpRequest();
+        request.onload = function () {
+            if (request.status === 200 && request.responseXML) {
+                show(container, request.responseXML);
+            }
+        };
+        request.open('GET', container.getAttribute('data-dzi'));
+        request.send();
+    });
+})();
@@ -0,0 +1,75 @@
+package com.gallery.controller;
+
+import com.gallery.service.GalleryMetrics;
+import com.gallery.service.GalleryService;
+import com.gallery.service.StorageService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class GalleryPageCacheFilterTest {
+    private StorageService storageService;
+    private GalleryPageCacheFilter filter;
+    private AtomicInteger renders;
+    private FilterChain chain;
+
+    @Before
+    public void setUp() throws Exception {
+        this.storageService = mock(StorageService.class);
+        this.filter = new GalleryPageCacheFilter(this.storageService, mock(GalleryService.class),
+                mock(GalleryMetrics.class), 16);
+        this.renders = new AtomicInteger();
+        this.chain = (request, response) -> {
+            response.setContentType("text/html;charset=UTF-8");
+            response.getWriter().write("page-" + this.renders.incrementAndGet());
+        };
+    }
+
+    @Test
+    public void shouldServeRenderedPageUntilStorageChanges() throws Exception {
+        // given
+        given(storageService.getVersion())
+                .willReturn(1L, 1L, 2L);
+
+        // when
+        final String first = this.render("after=a.png");
+        final String cached = this.render("after=a.png");
+        final String changed = this.render("after=a.png");
+
+        // then
+        assertEquals("page-1", first);
+        assertEquals("page-1", cached);
+        assertEquals("page-2", changed);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void shouldCacheEveryPageSeparately() throws Exception {
+        // given
+        given(storageService.getVersion())
+                .willReturn(1L);
+
+        // when
+        this.render("after=a.png");
+        final String other = this.render("after=b.png");
+
+        // then
+        assertEquals("page-2", other);
+    }
+
+    private String render(final String query) throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/photo/gallery");
+        request.setQueryString(query);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        this.filter.doFilter(request, response, this.chain);
+        return response.getContentAsString();
+    }
+}
@@ -0,0 +1,275 @@
+package com.gallery.controller;
+
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.ContactSheet;
+import com.gallery.model.FilePage;
+import com.gallery.model.ImportJob;
+import com.gallery.model.PictureOrder;
+import com.gallery.model.PictureSort;
+import com.gallery.model.PictureType;
+import com.gallery.model.Upload;
+import com.gallery.model.StoredFile;
+import com.gallery.service.DestroyService;
+import com.gallery.service.GalleryMetrics;
+import com.gallery.service.GalleryService;
+import com.gallery.service.ImportService;
+import com.gallery.service.InitService;
+import com.gallery.service.StorageService;
+import com.gallery.service.ThumbnailService;
+import com.gallery.service.UploadService;
+import com.gallery.util.ImportJobNotFoundException;
+import com.gallery.util.UploadConflictException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Predicate;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(PhotoApiController.class)
+public class PhotoApiControllerTest {
+    private static final String PICTURES_URI = "/photo/api/pictures";
+    private static final String IMPORTS_URI = "/photo/api/imports";
+    private static final String UPLOADS_URI = "/photo/api/uploads";
+    private static final StoredFile FIRST_FILE =
+            new StoredFile("a.png", 3, 1000L, "image/png", "a.png", null);
+    private static final StoredFile SECOND_FILE =
+            new StoredFile("b.png", 5, 2000L, "image/png", "b.png", null);
+    @Autowired
+    private MockMvc mvc;
+    @MockBean
+    private StorageService storageService;
+    @MockBean
+    private ThumbnailService thumbnailService;
+    @MockBean
+    private ImportService importService;
+    @MockBean
+    private GalleryService galleryService;
+    @MockBean
+    private UploadService uploadService;
+    @MockBean
+    private GalleryMetrics galleryMetrics;
+    @MockBean
+    private InitService initService;
+    @MockBean
+    private DestroyService destroyService;
+
+    @Test
+    public void shouldListPageOfPicturesWithCursorLinks() throws Exception {
+        // given
+        given(storageService.loadPage("0.png", null, 2))
+                .willReturn(new FilePage(Arrays.asList(FIRST_FILE, SECOND_FILE), true, true, 10));
+
+        // when
+        this.mvc.perform(get(PICTURES_URI).param("after", "0.png").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.pictureResourceList", hasSize(2)))
+                .andExpect(jsonPath("$._embedded.pictureResourceList[0].name", is("a.png")))
+                .andExpect(jsonPath("$._embedded.pictureResourceList[0]._links.self.href",
+                        endsWith("/photo/gallery/picture/a.png")))
+                .andExpect(jsonPath("$._links.prev.href", endsWith(PICTURES_URI + "?before=a.png&size=2")))
+                .andExpect(jsonPath("$._links.next.href", endsWith(PICTURES_URI + "?after=b.png&size=2")));
+
+        // then
+        verify(galleryMetrics).time(eq("http.PhotoApiController.listPictures"), anyLong());
+        verify(galleryMetrics).increment("http.PhotoApiController.listPictures.status.200");
+    }
+
+    @Test
+    public void shouldOmitLinksToMissingPagesAndCapPageSize() throws Exception {
+        // given
+        given(storageService.loadPage(null, null, 500))
+                .willReturn(new FilePage(Collections.singletonList(FIRST_FILE), false, false, 1));
+
+        // when
+        this.mvc.perform(get(PICTURES_URI).param("size", "100000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._links.prev").doesNotExist())
+                .andExpect(jsonPath("$._links.next").doesNotExist());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldListPicturesSortedAndFilteredByDimensions() throws Exception {
+        // given
+        final StoredFile wide = new StoredFile("w.png", 3, 1000L, "image/png", "w.png", null, 800, 400, 8,
+                PictureType.PNG);
+        given(storageService.loadPage(any(Predicate.class), any(PictureSort.class), eq("400:a.png"), eq(2)))
+                .willReturn(new FilePage(Collections.singletonList(wide), true, true, 5,
+                        PictureOrder.parse("-width")::cursorOf));
+
+        // when
+        this.mvc.perform(get(PICTURES_URI).param("after", "400:a.png").param("size", "2")
+                .param("sort", "-width").param("minWidth", "500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.pictureResourceList[0].width", is(800)))
+                .andExpect(jsonPath("$._embedded.pictureResourceList[0].height", is(400)))
+                .andExpect(jsonPath("$._embedded.pictureResourceList[0].bitDepth", is(8)))
+                .andExpect(jsonPath("$._links.prev").doesNotExist())
+                .andExpect(jsonPath("$._links.next.href",
+                        endsWith(PICTURES_URI + "?after=800:w.png&size=2&sort=-width&minWidth=500")));
+
+        // then
+        final ArgumentCaptor<Predicate> filter = ArgumentCaptor.forClass(Predicate.class);
+        final ArgumentCaptor<PictureSort> order = ArgumentCaptor.forClass(PictureSort.class);
+        verify(storageService).loadPage(filter.capture(), order.capture(), eq("400:a.png"), eq(2));
+        assertTrue(filter.getValue().test(wide));
+        assertFalse(filter.getValue().test(FIRST_FILE));
+        assertTrue(order.getValue().compare(wide, FIRST_FILE) < 0);
+    }
+
+    @Test
+    public void shouldRejectUnknownSortOrder() throws Exception {
+        // when
+        this.mvc.perform(get(PICTURES_URI).param("sort", "colour"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldListContactSheetsWithCellOffsets() throws Exception {
+        // given
+        final String key = String.format("%064d", 7);
+        given(storageService.loadPage(null, null, 48))
+                .willReturn(new FilePage(Arrays.asList(FIRST_FILE, SECOND_FILE), false, false, 2));
+        given(thumbnailService.describeContactSheets(Arrays.asList(FIRST_FILE, SECOND_FILE), 100, 100))
+                .willReturn(Collections.singletonList(
+                        new ContactSheet(key, 100, 100, 2, Arrays.asList("a.png", "b.png"))));
+
+        // when
+        this.mvc.perform(get("/photo/api/sheets").param("width", "100").param("height", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.contactSheetResourceList[0].width", is(200)))
+                .andExpect(jsonPath("$._embedded.contactSheetResourceList[0].cells[1].name", is("b.png")))
+                .andExpect(jsonPath("$._embedded.contactSheetResourceList[0].cells[1].x", is(100)))
+                .andExpect(jsonPath("$._embedded.contactSheetResourceList[0]._links.image.href",
+                        endsWith("/photo/gallery/sheets/100x100/" + key + ".jpg?picture=a.png&picture=b.png")));
+    }
+
+    @Test
+    public void shouldAcceptImportAndPointToItsStatus() throws Exception {
+        // given
+        final ImportJob job = new ImportJob("job-1", Paths.get("pics"), ChangeDetection.METADATA);
+        given(importService.submit(Paths.get("pics"), null, null))
+                .willReturn(job);
+
+        // when
+        this.mvc.perform(post(IMPORTS_URI).param("path", "pics"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", endsWith(IMPORTS_URI + "/job-1")))
+                .andExpect(jsonPath("$.jobId", is("job-1")))
+                .andExpect(jsonPath("$.state", is("QUEUED")));
+    }
+
+    @Test
+    public void shouldReportProgressOfImport() throws Exception {
+        // given
+        final ImportJob job = new ImportJob("job-1", Paths.get("pics"), ChangeDetection.METADATA);
+        job.start();
+        job.getResult().found(3);
+        job.getResult().copied("a.png", 10);
+        job.getResult().failed(Paths.get("b.png"), new IOException("broken"));
+        given(importService.getJob("job-1"))
+                .willReturn(job);
+
+        // when
+        this.mvc.perform(get(IMPORTS_URI + "/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state", is("RUNNING")))
+                .andExpect(jsonPath("$.found", is(3)))
+                .andExpect(jsonPath("$.copied", is(1)))
+                .andExpect(jsonPath("$.failed", is(1)))
+                .andExpect(jsonPath("$.copiedBytes", is(10)));
+    }
+
+    @Test
+    public void shouldCancelImport() throws Exception {
+        // given
+        final ImportJob job = new ImportJob("job-1", Paths.get("pics"), ChangeDetection.METADATA);
+        given(importService.cancel("job-1"))
+                .willAnswer(invocation -> {
+                    job.cancel();
+                    return job;
+                });
+
+        // when
+        this.mvc.perform(delete(IMPORTS_URI + "/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state", is("CANCELLED")));
+
+        // then
+        verify(importService).cancel("job-1");
+    }
+
+    @Test
+    public void shouldNotFindUnknownImport() throws Exception {
+        // given
+        given(importService.getJob("missing"))
+                .willThrow(new ImportJobNotFoundException("missing"));
+
+        // when
+        this.mvc.perform(get(IMPORTS_URI + "/missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldStreamPartOfUploadAndReportNextOffset() throws Exception {
+        // given
+        final Upload upload = new Upload("upload-1", "a.png", 5, Paths.get("staged"));
+        given(uploadService.write(eq("upload-1"), eq(2L), any(InputStream.class)))
+                .willAnswer(invocation -> {
+                    upload.advance(5);
+                    upload.complete(FIRST_FILE);
+                    return upload;
+                });
+
+        // when
+        this.mvc.perform(patch(UPLOADS_URI + "/upload-1")
+                .header("Upload-Offset", 2)
+                .content(new byte[]{3, 4, 5}))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Upload-Offset", "5"))
+                .andExpect(jsonPath("$.complete", is(true)))
+                .andExpect(jsonPath("$._links.picture.href", endsWith("/photo/gallery/picture/a.png")));
+    }
+
+    @Test
+    public void shouldRejectPartAtUnexpectedOffset() throws Exception {
+        // given
+        given(uploadService.write(eq("upload-1"), eq(1L), any(InputStream.class)))
+                .willThrow(new UploadConflictException("conflict"));
+
+        // when
+        this.mvc.perform(patch(UPLOADS_URI + "/upload-1")
+                .header("Upload-Offset", 1)
+                .content(new byte[]{1}))
+                .andExpect(status().isConflict());
+    }
+}
@@ -1,8 +1,21 @@
 package com.gallery.controller;
 
+import com.gallery.model.FilePage;
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.ContactSheet;
+import com.gallery.model.ImportJob;
+import com.gallery.model.StoredFile;
+import com.gallery.model.TilePyramid;
 import com.gallery.service.DestroyService;
+import com.gallery.service.ExportService;
+import com.gallery.service.GalleryMetrics;
+import com.gallery.service.GalleryService;
+import com.gallery.service.ImportService;
 import com.gallery.service.InitService;
 import com.gallery.service.StorageService;
+import com.gallery.service.ThumbnailService;
+import com.gallery.service.TileService;
+import com.gallery.util.GalleryNotFoundException;
 import com.gallery.util.StorageException;
 import com.gallery.util.StorageFileNotFoundException;
 import org.junit.Before;
@@ -13,21 +26,40 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
-import java.nio.file.Path;
+import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.stream.Stream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertArrayEquals;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -40,6 +72,8 @@ public class PhotoControllerTest {
     private static final String HOME_URI = "/photo";
     private static final String GALLERY_URI = "/photo/gallery";
     private static final String ERROR_MSG = "test-error";
+    private static final StoredFile STORED_FILE =
+            new StoredFile("test-file.png", 3, 1000L, "image/png", "test-file.png", "abc");
     @Rule
     public TemporaryFolder tf = new TemporaryFolder();
     @Autowired
@@ -51,6 +85,18 @@ public class PhotoControllerTest {
     @MockBean
     private StorageService storageService;
     @MockBean
+    private ThumbnailService thumbnailService;
+    @MockBean
+    private TileService tileService;
+    @MockBean
+    private ExportService exportService;
+    @MockBean
+    private ImportService importService;
+    @MockBean
+    private GalleryService galleryService;
+    @MockBean
+    private GalleryMetrics galleryMetrics;
+    @MockBean
     private InitService initService;
     @MockBean
     private DestroyService destroyService;
@@ -61,6 +107,9 @@ public class PhotoControllerTest {
         this.mvc = standaloneSetup(photoController)
                 .setControllerAdvice(photoControllerAdvice)
                 .build();
+
+        given(storageService.loadPage(any(), any(), anyInt()))
+                .willReturn(new FilePage(Collections.emptyList(), false, false, 0));
     }
 
     @Test
@@ -72,26 +121,23 @@ public class PhotoControllerTest {
                 .andExpect(model().hasNoErrors());
     }
 
-    /**
-     * TODO should test that links are being created as well.
-     */
     @Test
     public void shouldUploadPicturesAndRedirectToGallery() throws Exception {
         // given
         String path = tf.newFolder().getAbsolutePath();
-        Stream<Path> stream = Stream.of(Paths.get("file1"), Paths.get("file1"));
 
-        given(storageService.loadAll())
-                .willReturn(stream);
+        given(importService.submit(Paths.get(path), null, null))
+                .willReturn(new ImportJob("job-1", Paths.get(path), ChangeDetection.METADATA));
 
         // when
         this.mvc.perform(post(HOME_URI).param("path", path))
                 .andExpect(status().isFound())
-                .andExpect(redirectedUrl(GALLERY_URI));
+                .andExpect(redirectedUrl(GALLERY_URI))
+                .andExpect(flash().attribute("job", "job-1"));
 
         // then
-        verify(storageService, atLeastOnce()).save(Paths.get(path));
-        verify(storageService, atLeastOnce()).loadAll();
+        verify(importService, atLeastOnce()).submit(Paths.get(path), null, null);
+        verify(storageService, never()).save(Paths.get(path));
     }
 
     @Test
@@ -100,7 +146,7 @@ public class PhotoControllerTest {
         String path = tf.newFolder().getAbsolutePath();
 
         doThrow(new StorageException(ERROR_MSG))
-                .when(storageService).save(Paths.get(path));
+                .when(importService).submit(Paths.get(path), null, null);
 
         // when
         this.mvc.perform(post(HOME_URI).param("path", path))
@@ -109,7 +155,7 @@ public class PhotoControllerTest {
                 .andExpect(model().attribute("description", containsString(ERROR_MSG)));
 
         // then
-        verify(storageService, atLeastOnce()).save(Paths.get(path));
+        verify(importService, atLeastOnce()).submit(Paths.get(path), null, null);
         verify(storageService, never()).loadAll();
     }
 
@@ -118,7 +164,7 @@ public class PhotoControllerTest {
         // given
         String fileName = "test-file";
 
-        given(storageService.loadAsResource(fileName))
+        given(storageService.loadMetadata(fileName))
                 .willThrow(new StorageFileNotFoundException(ERROR_MSG));
 
         // when
@@ -128,9 +174,241 @@ public class PhotoControllerTest {
                 .andExpect(model().attribute("description", containsString(ERROR_MSG)));
 
         // then
-        verify(storageService, atLeastOnce()).loadAsResource(fileName);
+        verify(storageService, atLeastOnce()).loadMetadata(fileName);
+        verify(storageService, never()).loadAsResource(fileName);
+    }
+
+    @Test
+    public void shouldRenderPictureWithValidatorsAndCachingPolicy() throws Exception {
+        // given
+        given(storageService.loadMetadata(STORED_FILE.getName()))
+                .willReturn(STORED_FILE);
+        given(storageService.loadAsResource(STORED_FILE.getName()))
+                .willReturn(new ByteArrayResource(new byte[]{1, 2, 3}));
+
+        // when
+        this.mvc.perform(get("/photo/gallery/picture/" + STORED_FILE.getName()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(header().string("Cache-Control", containsString("max-age=86400")))
+                .andExpect(header().string("Content-Type", "image/png"));
+    }
+
+    @Test
+    public void shouldRenderRequestedRangeOfPicture() throws Exception {
+        // given
+        final File file = tf.newFile();
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+
+        given(storageService.loadMetadata(STORED_FILE.getName()))
+                .willReturn(STORED_FILE);
+        given(storageService.loadAsResource(STORED_FILE.getName()))
+                .willReturn(new FileSystemResource(file));
+
+        // when
+        this.mvc.perform(get("/photo/gallery/picture/" + STORED_FILE.getName())
+                .header("Range", "bytes=1-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 1-2/3"))
+                .andExpect(header().string("Content-Length", "2"))
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(content().bytes(new byte[]{2, 3}));
+    }
+
+    @Test
+    public void shouldRejectUnsatisfiableRange() throws Exception {
+        // given
+        given(storageService.loadMetadata(STORED_FILE.getName()))
+                .willReturn(STORED_FILE);
+        given(storageService.loadAsResource(STORED_FILE.getName()))
+                .willReturn(new FileSystemResource(tf.newFile()));
+
+        // when
+        this.mvc.perform(get("/photo/gallery/picture/" + STORED_FILE.getName())
+                .header("Range", "bytes=5-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */3"));
+    }
+
+    @Test
+    public void shouldHandPictureOverToSendfileWhenSupported() throws Exception {
+        // given
+        final File file = tf.newFile();
+
+        given(storageService.loadMetadata(STORED_FILE.getName()))
+                .willReturn(STORED_FILE);
+        given(storageService.loadAsResource(STORED_FILE.getName()))
+                .willReturn(new FileSystemResource(file));
+
+        // when
+        this.mvc.perform(get("/photo/gallery/picture/" + STORED_FILE.getName())
+                .requestAttr("org.apache.tomcat.sendfile.support", true))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Length", "3"))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", file.getAbsolutePath()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 0L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", 3L));
+    }
+
+    @Test
+    public void shouldNotLoadPictureWhenClientHoldsCurrentVersion() throws Exception {
+        // given
+        given(storageService.loadMetadata(STORED_FILE.getName()))
+                .willReturn(STORED_FILE);
+
+        // when
+        this.mvc.perform(get("/photo/gallery/picture/" + STORED_FILE.getName())
+                .header("If-None-Match", "\"abc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Cache-Control", containsString("max-age=86400")));
+
+        // then
+        verify(storageService, never()).loadAsResource(STORED_FILE.getName());
+    }
+
+    @Test
+    public void shouldServeVariantInMostCompactAcceptedFormat() throws Exception {
+        // given
+        given(storageService.loadMetadata(STORED_FILE.getName()))
+                .willReturn(STORED_FILE);
+        given(thumbnailService.getVariantFormats(STORED_FILE.getName()))
+                .willReturn(Arrays.asList("jpg", "png"));
+        given(thumbnailService.loadVariant(STORED_FILE.getName(), 320, "jpg"))
+                .willReturn(new FileSystemResource(
+                        Files.write(tf.newFile("variant.jpg").toPath(), new byte[]{1}).toFile()));
+        given(thumbnailService.loadVariant(STORED_FILE.getName(), 320, "png"))
+                .willReturn(new FileSystemResource(
+                        Files.write(tf.newFile("variant.png").toPath(), new byte[]{2}).toFile()));
+
+        // when
+        this.mvc.perform(get("/photo/gallery/picture/" + STORED_FILE.getName()).param("w", "320")
+                .header("Accept", "image/*"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(header().string("ETag", "\"abc-320w.jpg\""));
+        this.mvc.perform(get("/photo/gallery/picture/" + STORED_FILE.getName()).param("w", "320")
+                .header("Accept", "image/png, image/*;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/png"))
+                .andExpect(content().bytes(new byte[]{2}));
+    }
+
+    @Test
+    public void shouldDescribeTilePyramidOfPicture() throws Exception {
+        // given
+        given(storageService.loadMetadata(STORED_FILE.getName()))
+                .willReturn(STORED_FILE);
+        given(tileService.loadPyramid(STORED_FILE.getName()))
+                .willReturn(new TilePyramid(1000, 500, 254, 1, "png"));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI + "/tiles/" + STORED_FILE.getName() + ".dzi"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString("application/xml")))
+                .andExpect(header().string("ETag", "\"abc-dzi\""))
+                .andExpect(content().string(containsString("TileSize=\"254\" Overlap=\"1\" Format=\"png\"")))
+                .andExpect(content().string(containsString("<Size Width=\"1000\" Height=\"500\"/>")));
+    }
+
+    @Test
+    public void shouldServeTileOfPicture() throws Exception {
+        // given
+        given(storageService.loadMetadata(STORED_FILE.getName()))
+                .willReturn(STORED_FILE);
+        given(tileService.loadTile(STORED_FILE.getName(), 10, 1, 0, "png"))
+                .willReturn(new ByteArrayResource(new byte[]{1, 2}));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI + "/tiles/" + STORED_FILE.getName() + "_files/10/1_0.png"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc-10-1_0\""))
+                .andExpect(content().bytes(new byte[]{1, 2}));
+    }
+
+
+    @Test
+    public void shouldDrawThumbnailsOfGalleryPageFromContactSheets() throws Exception {
+        // given
+        final String key = String.format("%064d", 7);
+        given(storageService.loadPage(any(), any(), anyInt()))
+                .willReturn(new FilePage(Collections.singletonList(STORED_FILE), false, false, 1));
+        given(thumbnailService.describeContactSheets(Collections.singletonList(STORED_FILE), 200, 200))
+                .willReturn(Collections.singletonList(
+                        new ContactSheet(key, 200, 200, 1, Collections.singletonList(STORED_FILE.getName()))));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("sprites", hasEntry(equalTo(STORED_FILE.getName()),
+                        containsString("/photo/gallery/sheets/200x200/" + key + ".jpg?picture=" + STORED_FILE.getName()
+                                + ");background-position:-0px -0px"))));
+    }
+
+    @Test
+    public void shouldOfferThumbnailsOfDoubleSizeToHighDensityScreens() throws Exception {
+        // given
+        given(storageService.loadPage(any(), any(), anyInt()))
+                .willReturn(new FilePage(Collections.singletonList(STORED_FILE), false, false, 1));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI + "/wh/120x80"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("thumbnailSrcsets", hasEntry(equalTo(STORED_FILE.getName()),
+                        containsString("/photo/gallery/thumbnail/240x160/" + STORED_FILE.getName() + " 2x"))));
+    }
+
+    @Test
+    public void shouldServeContactSheetWithItsKeyAsETag() throws Exception {
+        // given
+        final String key = String.format("%064d", 7);
+        given(thumbnailService.loadContactSheet(key, 200, 200, Collections.singletonList("a.png")))
+                .willReturn(new ByteArrayResource(new byte[]{1}));
+
+        // when
+        final String uri = GALLERY_URI + "/sheets/200x200/" + key + ".jpg?picture=a.png";
+        this.mvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(header().string("ETag", "\"" + key + "\""));
+        this.mvc.perform(get(uri).header("If-None-Match", "\"" + key + "\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void shouldStreamExportedArchiveAsynchronously() throws Exception {
+        // given
+        given(exportService.exportZip("trip", "*.png"))
+                .willReturn(out -> out.write(new byte[]{1, 2, 3}));
+
+        // when
+        final MvcResult result = this.mvc.perform(get(GALLERY_URI + "/export.zip")
+                .param("gallery", "trip").param("match", "*.png"))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string("Content-Type", "application/zip"))
+                .andExpect(header().string("Content-Disposition",
+                        "attachment; filename=\"trip.zip\"; filename*=UTF-8''trip.zip"))
+                .andReturn();
+        result.getAsyncResult();
+        this.mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        // then
+        assertArrayEquals(new byte[]{1, 2, 3}, result.getResponse().getContentAsByteArray());
     }
 
+    @Test
+    public void shouldEncodeGalleryNameInExportedFileName() throws Exception {
+        // given
+        final String gallery = "trip\"\r\nX-\u00c9vora";
+        given(exportService.exportZip(gallery, null))
+                .willReturn(out -> out.write(new byte[]{1}));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI + "/export.zip").param("gallery", gallery))
+                .andExpect(header().string("Content-Disposition",
+                        "attachment; filename=\"trip___X-_vora.zip\"; filename*=UTF-8''trip%22%0D%0AX-%C3%89vora.zip"));
+    }
 
     @Test
     public void shouldRenderErrorPageWithInternalServerErrorStatus() throws Exception {
@@ -138,7 +416,7 @@ public class PhotoControllerTest {
         String path = "/smth";
 
         doThrow(new NullPointerException(ERROR_MSG))
-                .when(storageService).save(Paths.get(path));
+                .when(importService).submit(Paths.get(path), null, null);
 
         // when
         this.mvc.perform(post(HOME_URI).param("path", path))
@@ -147,7 +425,7 @@ public class PhotoControllerTest {
                 .andExpect(model().attribute("description", containsString(ERROR_MSG)));
 
         // then
-        verify(storageService, atLeastOnce()).save(Paths.get(path));
+        verify(importService, atLeastOnce()).submit(Paths.get(path), null, null);
         verify(storageService, never()).loadAll();
     }
 
@@ -160,6 +438,52 @@ public class PhotoControllerTest {
                 .andExpect(model().hasNoErrors());
     }
 
+    @Test
+    public void shouldRenderSingleGalleryPageWithCursorLinks() throws Exception {
+        // given
+        given(storageService.loadPage("a.png", null, 48))
+                .willReturn(new FilePage(Collections.singletonList(STORED_FILE), true, true, 10));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI).param("after", "a.png"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("links", hasSize(1)))
+                .andExpect(model().attribute("total", 10))
+                .andExpect(model().attribute("previous", endsWith(GALLERY_URI + "?before=test-file.png")))
+                .andExpect(model().attribute("next", endsWith(GALLERY_URI + "?after=test-file.png")));
+
+        // then
+        verify(storageService, never()).loadAll();
+    }
+
+    @Test
+    public void shouldRenderPageOfNamedGalleryKeepingItsNameInCursorLinks() throws Exception {
+        // given
+        given(galleryService.loadPage("holidays", null, null, 48))
+                .willReturn(new FilePage(Collections.singletonList(STORED_FILE), false, true, 2));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI).param("gallery", "holidays"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("galleryName", "holidays"))
+                .andExpect(model().attribute("total", 2))
+                .andExpect(model().attribute("next", endsWith(GALLERY_URI + "?gallery=holidays&after=test-file.png")));
+
+        // then
+        verify(storageService, never()).loadPage(any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldRespondWithNotFoundForUnknownGallery() throws Exception {
+        // given
+        given(galleryService.loadPage(eq("missing"), any(), any(), anyInt()))
+                .willThrow(new GalleryNotFoundException("Could not find gallery missing"));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI).param("gallery", "missing"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void shouldApplyDarkTheme() throws Exception {
         // when
@@ -184,4 +508,39 @@ public class PhotoControllerTest {
                 .andExpect(model().attribute("height", "500"))
                 .andExpect(model().hasNoErrors());
     }
+
+    @Test
+    public void shouldRenderThumbnail() throws Exception {
+        // given
+        String fileName = STORED_FILE.getName();
+
+        given(storageService.loadMetadata(fileName))
+                .willReturn(STORED_FILE);
+        given(thumbnailService.loadThumbnail(fileName, 200, 100))
+                .willReturn(new ByteArrayResource(new byte[]{1, 2, 3}));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI + "/thumbnail/200x100/" + fileName))
+                .andExpect(status().isOk());
+
+        // then
+        verify(thumbnailService, atLeastOnce()).loadThumbnail(fileName, 200, 100);
+    }
+
+    @Test
+    public void shouldRenderErrorPageWithServiceUnavailableStatusWhenThumbnailEngineIsBusy() throws Exception {
+        // given
+        String fileName = STORED_FILE.getName();
+
+        given(storageService.loadMetadata(fileName))
+                .willReturn(STORED_FILE);
+        given(thumbnailService.loadThumbnail(fileName, 200, 200))
+                .willThrow(new RejectedExecutionException(ERROR_MSG));
+
+        // when
+        this.mvc.perform(get(GALLERY_URI + "/thumbnail/200x200/" + fileName))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(view().name("error"))
+                .andExpect(model().attribute("description", containsString(ERROR_MSG)));
+    }
 }
@@ -0,0 +1,94 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContentAddressedStorageLayoutTest {
+    private static final byte[] CONTENT = {1, 2, 3};
+    private static final byte[] OTHER_CONTENT = {4, 5, 6};
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    private Path root;
+    private Path src;
+    private StorageIndex index;
+    private ContentAddressedStorageLayout layout;
+
+    @Before
+    public void setUp() throws Exception {
+        this.root = tf.newFolder().toPath();
+        this.src = tf.newFolder().toPath();
+        this.index = new StorageIndex(this.root, path -> true);
+        this.layout = new ContentAddressedStorageLayout(this.root, this.index);
+        this.layout.rebuild();
+    }
+
+    @Test
+    public void shouldStoreEqualContentOnce() throws Exception {
+        // given
+        final Path first = Files.write(src.resolve("a.png"), CONTENT);
+        final Path second = Files.write(src.resolve("b.png"), CONTENT);
+
+        // when
+        final StoredFile a = layout.store(first, "a.png", new ConcurrentHashMap<>());
+        final StoredFile b = layout.store(second, "b.png", new ConcurrentHashMap<>());
+
+        // then
+        assertEquals(a.getLocation(), b.getLocation());
+        assertEquals(1, this.countBlobs());
+        assertArrayEquals(CONTENT, Files.readAllBytes(layout.resolve(index.get("b.png").get())));
+    }
+
+    @Test
+    public void shouldKeepDifferentContentOfEqualNamesWithinSingleSave() throws Exception {
+        // given
+        final Path first = Files.write(Files.createDirectory(src.resolve("x")).resolve("a.png"), CONTENT);
+        final Path second = Files.write(Files.createDirectory(src.resolve("y")).resolve("a.png"), OTHER_CONTENT);
+        final ConcurrentMap<String, String> claimed = new ConcurrentHashMap<>();
+
+        // when
+        final StoredFile a = layout.store(first, "a.png", claimed);
+        final StoredFile renamed = layout.store(second, "a.png", claimed);
+
+        // then
+        assertEquals("a.png", a.getName());
+        assertNotEquals("a.png", renamed.getName());
+        assertTrue(renamed.getName().startsWith("a-") && renamed.getName().endsWith(".png"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void shouldRemoveContentNoLongerReferenced() throws Exception {
+        // given
+        final Path file = Files.write(src.resolve("a.png"), CONTENT);
+        final StoredFile original = layout.store(file, "a.png", new ConcurrentHashMap<>());
+        Files.write(file, OTHER_CONTENT);
+
+        // when
+        layout.store(file, "a.png", new ConcurrentHashMap<>());
+
+        // then
+        assertFalse(Files.exists(layout.resolve(original)));
+        assertEquals(1, this.countBlobs());
+    }
+
+    private long countBlobs() throws Exception {
+        try (Stream<Path> blobs = Files.list(root.resolve("blobs"))) {
+            return blobs.count();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.gallery.service;
+
+import com.gallery.model.FilePage;
+import com.gallery.model.StoredFile;
+import com.gallery.util.GalleryNotFoundException;
+import com.gallery.util.StorageException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+
+public class ExportServiceImplTest {
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    private StorageService storageService;
+    private GalleryService galleryService;
+    private ExportServiceImpl exportService;
+
+    @Before
+    public void setUp() throws Exception {
+        this.storageService = mock(StorageService.class);
+        this.galleryService = mock(GalleryService.class);
+        this.exportService = new ExportServiceImpl(this.storageService, this.galleryService,
+                mock(GalleryMetrics.class));
+    }
+
+    @Test
+    public void shouldStreamAllPagesOfFilesStoringCompressedOnes() throws Exception {
+        // given
+        final StoredFile first = this.stored("a.png", new byte[]{1, 2, 3});
+        final StoredFile second = this.stored("b.svg", new byte[]{4, 5});
+        given(storageService.loadPage(eq(null), eq(null), anyInt()))
+                .willReturn(new FilePage(Collections.singletonList(first), false, true, 2));
+        given(storageService.loadPage(eq("a.png"), eq(null), anyInt()))
+                .willReturn(new FilePage(Collections.singletonList(second), true, false, 2));
+
+        // when
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportZip(null, null).writeTo(out);
+
+        // then
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals("a.png", entry.getName());
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertArrayEquals(new byte[]{1, 2, 3}, StreamUtils.copyToByteArray(zip));
+
+            entry = zip.getNextEntry();
+            assertEquals("b.svg", entry.getName());
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            assertArrayEquals(new byte[]{4, 5}, StreamUtils.copyToByteArray(zip));
+
+            assertNull(zip.getNextEntry());
+        }
+    }
+
+    @Test
+    public void shouldExportOnlyFilesOfGalleryMatchingPattern() throws Exception {
+        // given
+        final StoredFile png = this.stored("a.png", new byte[]{1});
+        final StoredFile jpg = this.stored("b.jpg", new byte[]{2});
+        given(galleryService.loadPage(eq("trip"), eq(null), eq(null), anyInt()))
+                .willReturn(new FilePage(Arrays.asList(png, jpg), false, false, 2));
+
+        // when
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportZip("trip", "*.jpg").writeTo(out);
+
+        // then
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals("b.jpg", zip.getNextEntry().getName());
+            assertNull(zip.getNextEntry());
+        }
+    }
+
+    @Test
+    public void shouldNotPrepareExportOfUnknownGallery() throws Exception {
+        // given
+        given(galleryService.getGallery("unknown"))
+                .willThrow(new GalleryNotFoundException("Could not find gallery unknown"));
+
+        thrown.expect(GalleryNotFoundException.class);
+
+        // when
+        exportService.exportZip("unknown", null);
+    }
+
+    @Test
+    public void shouldNotPrepareExportOfMalformedPattern() throws Exception {
+        // given
+        thrown.expect(StorageException.class);
+        thrown.expectMessage("Invalid file name pattern *.{png");
+
+        // when
+        exportService.exportZip(null, "*.{png");
+    }
+
+    private StoredFile stored(final String name, final byte[] content) throws Exception {
+        final Path file = Files.write(tf.getRoot().toPath().resolve(name), content);
+        given(storageService.loadForBackground(name))
+                .willReturn(new FileSystemResource(file.toFile()));
+        return new StoredFile(name, content.length, 1000L, "image/png", name, null);
+    }
+}
@@ -0,0 +1,121 @@
+package com.gallery.service;
+
+import com.gallery.model.FilePage;
+import com.gallery.model.Gallery;
+import com.gallery.model.StoredFile;
+import com.gallery.util.GalleryNotFoundException;
+import com.gallery.util.StorageException;
+import com.gallery.util.StorageFileNotFoundException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+
+public class GalleryServiceImplTest {
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    private StorageService storageService;
+    private GalleryServiceImpl galleryService;
+
+    @Before
+    public void setUp() throws Exception {
+        this.storageService = mock(StorageService.class);
+        this.galleryService = new GalleryServiceImpl(this.storageService);
+        given(storageService.loadMetadata(anyString()))
+                .willAnswer(invocation -> new StoredFile((String) invocation.getArguments()[0], 1, 1,
+                        "image/png", (String) invocation.getArguments()[0], null));
+    }
+
+    @Test
+    public void shouldKeepAllPicturesAddedConcurrently() throws Exception {
+        // given
+        final Gallery empty = galleryService.addPictures("shared", Collections.emptyList());
+
+        // when
+        IntStream.range(0, 1000).parallel()
+                .forEach(i -> galleryService.addPictures("shared", Collections.singletonList(i + ".png")));
+
+        // then
+        assertEquals(0, empty.size());
+        assertEquals(1000, galleryService.getGallery("shared").size());
+    }
+
+    @Test
+    public void shouldPageGalleryByCursorsSkippingMissingPictures() throws Exception {
+        // given
+        galleryService.addPictures("holidays", Arrays.asList("d.png", "a.png", "c.png", "b.png", "a.png"));
+        given(storageService.loadMetadata("b.png"))
+                .willThrow(new StorageFileNotFoundException("Could not read file b.png"));
+
+        // when
+        final FilePage first = galleryService.loadPage("holidays", null, null, 2);
+        final FilePage last = galleryService.loadPage("holidays", "c.png", null, 2);
+
+        // then
+        assertEquals(Arrays.asList("a.png", "c.png"),
+                first.getFiles().stream().map(StoredFile::getName).collect(Collectors.toList()));
+        assertFalse(first.hasPrevious());
+        assertTrue(first.hasNext());
+        assertEquals(3, first.getTotal());
+        assertEquals(Collections.singletonList("d.png"),
+                last.getFiles().stream().map(StoredFile::getName).collect(Collectors.toList()));
+        assertTrue(last.hasPrevious());
+        assertFalse(last.hasNext());
+    }
+
+    @Test
+    public void shouldKeepPagingPastPageOfMissingPicturesAndRemoveThem() throws Exception {
+        // given
+        galleryService.addPictures("holidays", Arrays.asList("a.png", "b.png", "c.png", "d.png", "e.png"));
+        given(storageService.loadMetadata("b.png"))
+                .willThrow(new StorageFileNotFoundException("Could not read file b.png"));
+        given(storageService.loadMetadata("c.png"))
+                .willThrow(new StorageFileNotFoundException("Could not read file c.png"));
+
+        // when
+        final FilePage next = galleryService.loadPage("holidays", "a.png", null, 2);
+        final FilePage previous = galleryService.loadPage("holidays", null, "d.png", 1);
+
+        // then
+        assertEquals(Arrays.asList("d.png", "e.png"),
+                next.getFiles().stream().map(StoredFile::getName).collect(Collectors.toList()));
+        assertTrue(next.hasPrevious());
+        assertFalse(next.hasNext());
+        assertEquals(Collections.singletonList("a.png"),
+                previous.getFiles().stream().map(StoredFile::getName).collect(Collectors.toList()));
+        assertFalse(previous.hasPrevious());
+        assertTrue(previous.hasNext());
+        assertEquals(3, galleryService.getGallery("holidays").size());
+        assertFalse(galleryService.getGallery("holidays").contains("b.png"));
+    }
+
+    @Test
+    public void shouldRejectInvalidGalleryName() throws Exception {
+        // given
+        thrown.expect(StorageException.class);
+
+        // when
+        galleryService.addPictures("../other", Collections.emptyList());
+    }
+
+    @Test
+    public void shouldNotFindUnknownGallery() throws Exception {
+        // given
+        thrown.expect(GalleryNotFoundException.class);
+
+        // when
+        galleryService.getGallery("missing");
+    }
+}
@@ -0,0 +1,92 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.StoredFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class HotFileCacheTest {
+    private static final byte[] CONTENT = {1, 2, 3, 4};
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    private GalleryProperties properties;
+
+    @Before
+    public void setUp() throws Exception {
+        this.properties = new GalleryProperties();
+        this.properties.getCache().setEnabled(true);
+        this.properties.getCache().setMaxBytes(8);
+    }
+
+    @Test
+    public void shouldAdmitFileOnSecondMissAndServeItAfterwards() throws Exception {
+        // given
+        final HotFileCache cache = new HotFileCache(properties);
+        final Path path = Files.write(tf.newFile("a.png").toPath(), CONTENT);
+        final StoredFile file = storedFile("a.png", 1000L);
+
+        // when
+        final ByteBuffer first = cache.get(file, path);
+        final ByteBuffer second = cache.get(file, path);
+        final ByteBuffer third = cache.get(file, path);
+
+        // then
+        assertNull(first);
+        assertNotNull(second);
+        assertEquals(ByteBuffer.wrap(CONTENT), third);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(CONTENT.length, cache.getBytes());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedFilesAboveSizeLimit() throws Exception {
+        // given
+        final HotFileCache cache = new HotFileCache(properties);
+        for (String name : new String[]{"a.png", "b.png", "c.png"}) {
+            final Path path = Files.write(tf.newFile(name).toPath(), CONTENT);
+            cache.get(storedFile(name, 1000L), path);
+
+            // when
+            cache.get(storedFile(name, 1000L), path);
+        }
+
+        // then
+        assertEquals(2, cache.getEntries());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(8, cache.getBytes());
+    }
+
+    @Test
+    public void shouldNotServeStaleOrInvalidatedContent() throws Exception {
+        // given
+        final HotFileCache cache = new HotFileCache(properties);
+        final Path path = Files.write(tf.newFile("a.png").toPath(), CONTENT);
+        cache.get(storedFile("a.png", 1000L), path);
+        cache.get(storedFile("a.png", 1000L), path);
+
+        // when
+        final ByteBuffer modified = cache.get(storedFile("a.png", 2000L), path);
+        cache.get(storedFile("a.png", 2000L), path);
+        cache.invalidate("a.png");
+
+        // then
+        assertNull(modified);
+        assertEquals(0, cache.getEntries());
+        assertEquals(0, cache.getBytes());
+    }
+
+    private static StoredFile storedFile(final String name, final long lastModified) {
+        return new StoredFile(name, CONTENT.length, lastModified, "image/png", name, null);
+    }
+}
@@ -0,0 +1,119 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.ImportJob;
+import com.gallery.model.SaveResult;
+import com.gallery.util.StorageException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ImportServiceImplTest {
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    private StorageService storageService;
+    private GalleryService galleryService;
+    private ImportServiceImpl importService;
+
+    @Before
+    public void setUp() throws Exception {
+        final GalleryProperties properties = new GalleryProperties();
+        properties.getJobs().setThreads(1);
+        this.storageService = mock(StorageService.class);
+        this.galleryService = mock(GalleryService.class);
+        this.importService = new ImportServiceImpl(this.storageService, this.galleryService, properties);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.importService.shutdown();
+    }
+
+    @Test
+    public void shouldRunImportInBackgroundAndCancelQueuedOne() throws Exception {
+        // given
+        final Path first = tf.newFolder().toPath();
+        final Path second = tf.newFolder().toPath();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        given(storageService.save(eq(first), eq(ChangeDetection.CONTENT), any(SaveResult.class)))
+                .willAnswer(invocation -> {
+                    running.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return invocation.getArguments()[2];
+                });
+
+        // when
+        final ImportJob runningJob = importService.submit(first, ChangeDetection.CONTENT);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        final ImportJob queuedJob = importService.submit(second, null);
+        importService.cancel(queuedJob.getId());
+        release.countDown();
+        awaitFinished(runningJob);
+
+        // then
+        assertEquals(ImportJob.State.COMPLETED, importService.getJob(runningJob.getId()).getState());
+        assertEquals(ImportJob.State.CANCELLED, importService.getJob(queuedJob.getId()).getState());
+        verify(storageService, never()).save(eq(second), any(ChangeDetection.class), any(SaveResult.class));
+    }
+
+    @Test
+    public void shouldRejectMissingDirectoryBeforeSchedulingJob() throws Exception {
+        // given
+        thrown.expect(StorageException.class);
+
+        // when
+        importService.submit(Paths.get("does-not-exist"), null);
+    }
+
+    @Test
+    public void shouldAddCopiedAndSkippedFilesToGalleryOfJob() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        given(storageService.save(eq(src), any(ChangeDetection.class), any(SaveResult.class)))
+                .willAnswer(invocation -> {
+                    final SaveResult result = (SaveResult) invocation.getArguments()[2];
+                    result.copied("a.png", 1);
+                    result.skipped("b.png");
+                    return result;
+                });
+
+        // when
+        final ImportJob job = importService.submit(src, null, "holidays");
+        awaitFinished(job);
+
+        // then
+        assertEquals(ImportJob.State.COMPLETED, job.getState());
+        verify(galleryService).addPictures("holidays", Collections.emptyList());
+        verify(galleryService).addPictures("holidays", Arrays.asList("a.png", "b.png"));
+    }
+
+    private static void awaitFinished(final ImportJob job) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!job.getState().isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class IoSchedulerTest {
+    private GalleryProperties properties;
+
+    @Before
+    public void setUp() throws Exception {
+        this.properties = new GalleryProperties();
+        this.properties.getIo().setIngestConcurrency(1);
+        this.properties.getIo().setIngestYield(10000);
+    }
+
+    @Test
+    public void shouldHoldIngestBackWhilePicturesAreServed() throws Exception {
+        // given
+        final IoScheduler scheduler = new IoScheduler(properties, mock(GalleryMetrics.class));
+        final IoScheduler.Permit served = scheduler.interactive();
+
+        // when
+        final CompletableFuture<Void> ingest = CompletableFuture.runAsync(() -> this.write(scheduler, 1));
+        Thread.sleep(100);
+        final boolean heldBack = !ingest.isDone();
+        served.close();
+
+        // then
+        assertTrue(heldBack);
+        ingest.get(5, TimeUnit.SECONDS);
+        assertEquals(0, scheduler.getInteractive());
+    }
+
+    @Test
+    public void shouldHoldBackgroundReadsBackWhilePicturesAreServed() throws Exception {
+        // given
+        properties.getIo().setBackgroundYield(10000);
+        final IoScheduler scheduler = new IoScheduler(properties, mock(GalleryMetrics.class));
+        final IoScheduler.Permit served = scheduler.interactive();
+
+        // when
+        final CompletableFuture<Void> read = CompletableFuture.runAsync(() -> this.read(scheduler));
+        Thread.sleep(100);
+        final boolean heldBack = !read.isDone();
+        served.close();
+
+        // then
+        assertTrue(heldBack);
+        read.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldNotHoldIngestBackForBackgroundReads() throws Exception {
+        // given
+        final IoScheduler scheduler = new IoScheduler(properties, mock(GalleryMetrics.class));
+
+        // when
+        try (IoScheduler.Permit read = scheduler.background()) {
+            CompletableFuture.runAsync(() -> this.write(scheduler, 1)).get(5, TimeUnit.SECONDS);
+        }
+
+        // then
+        assertEquals(0, scheduler.getBackgroundQueueLength());
+    }
+
+    @Test
+    public void shouldLimitConcurrentIngest() throws Exception {
+        // given
+        final IoScheduler scheduler = new IoScheduler(properties, mock(GalleryMetrics.class));
+        final IoScheduler.Permit first = scheduler.ingest(1);
+
+        // when
+        final CompletableFuture<Void> second = CompletableFuture.runAsync(() -> this.write(scheduler, 1));
+        Thread.sleep(100);
+        final boolean waiting = !second.isDone();
+        first.close();
+
+        // then
+        assertTrue(waiting);
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldPaceIngestToBandwidthBudget() throws Exception {
+        // given
+        properties.getIo().setIngestBytesPerSecond(1000);
+        final IoScheduler scheduler = new IoScheduler(properties, mock(GalleryMetrics.class));
+        scheduler.ingest(1200).close();
+
+        // when
+        final long start = System.nanoTime();
+        scheduler.ingest(1).close();
+        final long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // then
+        assertTrue("Waited " + waited + " ms", waited >= 150);
+        assertFalse(waited > 2000);
+    }
+
+    private void read(final IoScheduler scheduler) {
+        try (IoScheduler.Permit permit = scheduler.background()) {
+            assertEquals(0, scheduler.getInteractive());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void write(final IoScheduler scheduler, final long bytes) {
+        try (IoScheduler.Permit permit = scheduler.ingest(bytes)) {
+            assertEquals(0, scheduler.getInteractive());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
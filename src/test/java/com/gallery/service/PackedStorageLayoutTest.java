@@ -0,0 +1,136 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PackedStorageLayoutTest {
+    private static final byte[] CONTENT = {1, 2, 3};
+    private static final byte[] OTHER_CONTENT = {4, 5, 6, 7};
+    private static final long PACK_SIZE = 100;
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    private Path root;
+    private Path src;
+    private StorageIndex index;
+    private PackedStorageLayout layout;
+
+    @Before
+    public void setUp() throws Exception {
+        this.root = tf.newFolder().toPath();
+        this.src = tf.newFolder().toPath();
+        this.index = new StorageIndex(this.root, path -> true);
+        this.layout = new PackedStorageLayout(this.root, this.index, PACK_SIZE, 0.5);
+        this.layout.rebuild();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.layout.close();
+    }
+
+    @Test
+    public void shouldServeStoredContentFromSharedPack() throws Exception {
+        // given
+        final Path first = Files.write(src.resolve("a.png"), CONTENT);
+        final Path second = Files.write(src.resolve("b.png"), OTHER_CONTENT);
+
+        // when
+        final StoredFile a = layout.store(first, "a.png", new ConcurrentHashMap<>());
+        final StoredFile b = layout.store(second, "b.png", new ConcurrentHashMap<>());
+
+        // then
+        assertEquals(layout.resolve(a), layout.resolve(b));
+        assertArrayEquals(CONTENT, bytesOf(layout.map(index.get("a.png").get())));
+        assertArrayEquals(OTHER_CONTENT, bytesOf(layout.map(index.get("b.png").get())));
+        assertEquals(3, a.getSize());
+    }
+
+    @Test
+    public void shouldRebuildIndexFromPackedRecords() throws Exception {
+        // given
+        layout.store(Files.write(src.resolve("a.png"), CONTENT), "a.png", new ConcurrentHashMap<>());
+        layout.store(Files.write(src.resolve("b.png"), CONTENT), "b.png", new ConcurrentHashMap<>());
+        final Path replaced = Files.write(src.resolve("a.png"), OTHER_CONTENT);
+        Files.setLastModifiedTime(replaced, FileTime.fromMillis(1000L));
+        layout.store(replaced, "a.png", new ConcurrentHashMap<>());
+        layout.close();
+
+        // when
+        final StorageIndex rebuilt = new StorageIndex(this.root, path -> true);
+        final PackedStorageLayout reopened = new PackedStorageLayout(this.root, rebuilt, PACK_SIZE, 0.5);
+        reopened.rebuild();
+
+        // then
+        assertEquals(2, rebuilt.size());
+        final StoredFile a = rebuilt.get("a.png").get();
+        assertEquals(1000L, a.getLastModified());
+        assertArrayEquals(OTHER_CONTENT, bytesOf(reopened.map(a)));
+        assertArrayEquals(CONTENT, bytesOf(reopened.map(rebuilt.get("b.png").get())));
+        reopened.close();
+    }
+
+    @Test
+    public void shouldCutOffTornRecordAtEndOfLastPack() throws Exception {
+        // given
+        final StoredFile a = layout.store(Files.write(src.resolve("a.png"), CONTENT), "a.png",
+                new ConcurrentHashMap<>());
+        layout.close();
+        final long valid = Files.size(layout.resolve(a));
+        Files.write(layout.resolve(a), new byte[]{0x47, 0x50, 0x4B}, StandardOpenOption.APPEND);
+
+        // when
+        layout.rebuild();
+        layout.store(Files.write(src.resolve("b.png"), OTHER_CONTENT), "b.png", new ConcurrentHashMap<>());
+        layout.rebuild();
+
+        // then
+        assertEquals(2, index.size());
+        assertTrue(Files.size(layout.resolve(a)) > valid);
+        assertArrayEquals(OTHER_CONTENT, bytesOf(layout.map(index.get("b.png").get())));
+    }
+
+    @Test
+    public void shouldCompactPackOfReplacedRecords() throws Exception {
+        // given
+        final StoredFile a = layout.store(Files.write(src.resolve("a.png"), CONTENT), "a.png",
+                new ConcurrentHashMap<>());
+        layout.store(Files.write(src.resolve("b.png"), CONTENT), "b.png", new ConcurrentHashMap<>());
+        final StoredFile replaced = layout.store(Files.write(src.resolve("c.png"), OTHER_CONTENT), "a.png",
+                new ConcurrentHashMap<>());
+
+        // when
+        layout.compact();
+
+        // then
+        final Path sealed = layout.resolve(a);
+        assertNotEquals(sealed, layout.resolve(replaced));
+        assertFalse(Files.exists(sealed));
+        final StoredFile b = index.get("b.png").get();
+        assertEquals(layout.resolve(replaced), layout.resolve(b));
+        assertArrayEquals(CONTENT, bytesOf(layout.map(b)));
+        assertArrayEquals(OTHER_CONTENT, bytesOf(layout.map(index.get("a.png").get())));
+    }
+
+    private static byte[] bytesOf(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,127 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.util.ByteBufferResource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class ScheduledResourceTest {
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5};
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    private IoScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        this.scheduler = new IoScheduler(new GalleryProperties(), mock(GalleryMetrics.class));
+    }
+
+    @Test
+    public void shouldExposeFileWhileNothingIsIngested() throws Exception {
+        // given
+        final File file = Files.write(tf.newFile().toPath(), CONTENT).toFile();
+
+        // when
+        final ScheduledResource resource = new ScheduledResource(new FileSystemResource(file), this.scheduler);
+
+        // then
+        assertEquals(file, resource.getFile());
+    }
+
+    @Test
+    public void shouldHideFileWhileIngesting() throws Exception {
+        // given
+        final File file = Files.write(tf.newFile().toPath(), CONTENT).toFile();
+        final ScheduledResource resource = new ScheduledResource(new FileSystemResource(file), this.scheduler);
+        thrown.expect(FileNotFoundException.class);
+
+        // when
+        try (IoScheduler.Permit permit = this.scheduler.ingest(1)) {
+            resource.getFile();
+        }
+    }
+
+    @Test
+    public void shouldReadFileByRandomAccessWhileIngesting() throws Exception {
+        // given
+        final File file = Files.write(tf.newFile().toPath(), CONTENT).toFile();
+        final ScheduledResource resource = new ScheduledResource(new FileSystemResource(file), this.scheduler);
+        final byte[] read = new byte[2];
+
+        // when
+        try (IoScheduler.Permit permit = this.scheduler.ingest(1);
+             ImageInputStream in = resource.openImageInputStream()) {
+            in.seek(3);
+            in.readFully(read);
+
+            // then
+            assertEquals(CONTENT.length, in.length());
+            assertArrayEquals(new byte[]{4, 5}, read);
+            assertEquals(-1, in.read());
+        }
+        assertEquals(0, this.scheduler.getInteractive());
+    }
+
+    @Test
+    public void shouldReadBufferByRandomAccess() throws Exception {
+        // given
+        final ScheduledResource resource = new ScheduledResource(
+                new ByteBufferResource(ByteBuffer.wrap(CONTENT), "a.png", 1000L), this.scheduler);
+
+        // when
+        try (ImageInputStream in = resource.openImageInputStream()) {
+            in.seek(1);
+
+            // then
+            assertEquals(2, in.read());
+            assertEquals(CONTENT.length, in.length());
+        }
+    }
+
+    @Test
+    public void shouldCopyRangeOfFileReleasingPermits() throws Exception {
+        // given
+        final File file = Files.write(tf.newFile().toPath(), CONTENT).toFile();
+        final ScheduledResource resource = new ScheduledResource(new FileSystemResource(file), this.scheduler);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        resource.copyTo(1, 3, Channels.newChannel(out));
+
+        // then
+        assertArrayEquals(new byte[]{2, 3, 4}, out.toByteArray());
+        assertEquals(0, this.scheduler.getInteractive());
+    }
+
+    @Test
+    public void shouldCopyRangeOfBuffer() throws Exception {
+        // given
+        final ScheduledResource resource = new ScheduledResource(
+                new ByteBufferResource(ByteBuffer.wrap(CONTENT), "a.png", 1000L), this.scheduler);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        resource.copyTo(3, 2, Channels.newChannel(out));
+
+        // then
+        assertArrayEquals(new byte[]{4, 5}, out.toByteArray());
+    }
+}
@@ -0,0 +1,68 @@
+package com.gallery.service;
+
+import com.gallery.model.StoredFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedStorageLayoutTest {
+    private static final byte[] CONTENT = {1, 2, 3};
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    private Path root;
+    private StorageIndex index;
+    private ShardedStorageLayout layout;
+
+    @Before
+    public void setUp() throws Exception {
+        this.root = tf.newFolder().toPath();
+        this.index = new StorageIndex(this.root, path -> !path.getFileName().toString().startsWith("."));
+        this.layout = new ShardedStorageLayout(this.root, this.index, 2);
+    }
+
+    @Test
+    public void shouldStoreFileInItsShard() throws Exception {
+        // given
+        layout.rebuild();
+        final Path src = Files.write(tf.newFolder().toPath().resolve("a.png"), CONTENT);
+
+        // when
+        final StoredFile stored = layout.store(src, "a.png", new ConcurrentHashMap<>());
+
+        // then
+        assertEquals(layout.locationOf("a.png"), stored.getLocation());
+        assertTrue(stored.getLocation().matches("[0-9a-f]{2}/[0-9a-f]{2}/a\\.png"));
+        assertArrayEquals(CONTENT, Files.readAllBytes(layout.resolve(index.get("a.png").get())));
+    }
+
+    @Test
+    public void shouldMigrateFlatFilesIntoShardsOnRebuild() throws Exception {
+        // given
+        Files.write(root.resolve("a.png"), CONTENT);
+        Files.write(root.resolve("b.png"), CONTENT);
+        Files.createDirectory(root.resolve(".manifest"));
+        Files.write(root.resolve(".manifest").resolve("snapshot"), CONTENT);
+        assertTrue(layout.isModifiedSince(FileTime.fromMillis(0)));
+
+        // when
+        layout.rebuild();
+
+        // then
+        assertEquals(2, index.size());
+        assertFalse(Files.exists(root.resolve("a.png")));
+        assertTrue(Files.isRegularFile(root.resolve(layout.locationOf("b.png"))));
+        assertEquals(layout.locationOf("b.png"), index.get("b.png").get().getLocation());
+        assertFalse(layout.isModifiedSince(FileTime.fromMillis(0)));
+    }
+}
@@ -0,0 +1,141 @@
+package com.gallery.service;
+
+import com.gallery.model.PictureType;
+import com.gallery.model.StoredFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StorageManifestTest {
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    private Path directory;
+    private StorageIndex index;
+    private StorageManifest manifest;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = tf.newFolder().toPath();
+        this.index = new StorageIndex(this.directory, path -> true);
+        this.manifest = new StorageManifest(this.directory, this.index, 100);
+        this.manifest.snapshot();
+        this.index.setJournal(this.manifest);
+    }
+
+    @Test
+    public void shouldRestoreIndexFromSnapshotAndLog() throws Exception {
+        // given
+        index.put(file("a.png", "hash-a").withType(PictureType.JPEG).withDimensions(640, 480, 8));
+        index.put(file("b.png", null));
+        index.put(file("c.png", null));
+        index.remove("b.png");
+        manifest.abandon();
+
+        // when
+        final StorageIndex restored = new StorageIndex(this.directory, path -> true);
+        new StorageManifest(this.directory, restored, 100).load();
+
+        // then
+        assertEquals(2, restored.size());
+        assertEquals("hash-a", restored.get("a.png").get().getHash());
+        assertEquals(640, restored.get("a.png").get().getWidth());
+        assertEquals(480, restored.get("a.png").get().getHeight());
+        assertEquals(PictureType.JPEG, restored.get("a.png").get().getType());
+        assertEquals("image/jpeg", restored.get("a.png").get().getContentType());
+        assertNull(restored.get("c.png").get().getType());
+        assertNull(restored.get("c.png").get().getHash());
+        assertFalse(restored.get("b.png").isPresent());
+        assertTrue(restored.isReferenced("hash-a"));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectSnapshotOfUnknownFormat() throws Exception {
+        // given
+        this.manifest.close();
+        Files.write(this.directory.resolve("snapshot"), new byte[]{0x47, 0x41, 0x4C, 0x32, 0, 0, 0, 0});
+
+        // when
+        new StorageManifest(this.directory, new StorageIndex(this.directory, path -> true), 100).load();
+    }
+
+    @Test
+    public void shouldDropTornRecordAtEndOfLog() throws Exception {
+        // given
+        index.put(file("a.png", null));
+        index.put(file("b.png", null));
+        manifest.abandon();
+        final Path log = this.directory.resolve("log");
+        final long length = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, WRITE)) {
+            channel.truncate(length - 3);
+        }
+
+        // when
+        final StorageIndex restored = new StorageIndex(this.directory, path -> true);
+        final StorageManifest reopened = new StorageManifest(this.directory, restored, 100);
+        reopened.load();
+
+        // then
+        assertEquals(1, restored.size());
+        assertTrue(restored.get("a.png").isPresent());
+        assertTrue(Files.size(log) < length - 3);
+    }
+
+    @Test
+    public void shouldCompactLogIntoSnapshot() throws Exception {
+        // given
+        final StorageManifest compacting = new StorageManifest(this.directory, this.index, 10);
+        compacting.snapshot();
+        this.index.setJournal(compacting);
+
+        index.put(file("0.png", null));
+        final long record = Files.size(this.directory.resolve("log"));
+
+        // when
+        for (int i = 1; i < 25; i++) {
+            index.put(file(i + ".png", null));
+        }
+        compacting.abandon();
+
+        // then
+        final StorageIndex restored = new StorageIndex(this.directory, path -> true);
+        new StorageManifest(this.directory, restored, 10).load();
+        assertEquals(25, restored.size());
+        assertTrue(Files.size(this.directory.resolve("log")) < 25 * record);
+        assertFalse(Files.exists(this.directory.resolve("log.1")));
+    }
+
+    @Test
+    public void shouldReplayLogSetAsideWhenSnapshotWasNotWritten() throws Exception {
+        // given
+        index.put(file("a.png", null));
+        index.put(file("b.png", null));
+        index.remove("a.png");
+        manifest.abandon();
+        Files.move(this.directory.resolve("log"), this.directory.resolve("log.1"));
+
+        // when
+        final StorageIndex restored = new StorageIndex(this.directory, path -> true);
+        new StorageManifest(this.directory, restored, 100).load();
+
+        // then
+        assertEquals(1, restored.size());
+        assertTrue(restored.get("b.png").isPresent());
+    }
+
+    private static StoredFile file(final String name, final String hash) {
+        return new StoredFile(name, 3, 1000, "image/png", name, hash);
+    }
+}
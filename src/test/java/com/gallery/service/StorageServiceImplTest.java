@@ -1,24 +1,57 @@
 package com.gallery.service;
 
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ChangeDetection;
+import com.gallery.model.FilePage;
+import com.gallery.model.PictureOrder;
+import com.gallery.model.PictureSort;
+import com.gallery.model.PictureType;
+import com.gallery.model.SaveResult;
+import com.gallery.model.StoredFile;
 import com.gallery.util.StorageException;
 import com.gallery.util.StorageFileNotFoundException;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(classes = StorageServiceImpl.class)
+@SpringBootTest(classes = {StorageServiceImpl.class, HotFileCache.class, IoScheduler.class,
+        StorageServiceImplTest.Config.class},
+        properties = "gallery.storage.location=build/test-storage")
 public class StorageServiceImplTest {
     private static final String TEST_FILE_NAME = "test-file";
     @Rule
@@ -27,8 +60,23 @@ public class StorageServiceImplTest {
     public ExpectedException thrown = ExpectedException.none();
     @Autowired
     private StorageService storageService;
+    @Autowired
+    private StorageServiceImpl storageServiceImpl;
     @MockBean
     private Resource resource;
+    @MockBean
+    private GalleryMetrics metrics;
+
+    @Before
+    public void setUp() throws Exception {
+        storageServiceImpl.destroy();
+        storageServiceImpl.init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        storageServiceImpl.destroy();
+    }
 
     @Test
     public void shouldNotLoadFileAsResourceIfResourceNotExists() throws Exception {
@@ -89,4 +137,214 @@ public class StorageServiceImplTest {
         // when
         storageService.save(null);
     }
+
+    @Test
+    public void shouldSaveAllFilesOfAcceptedType() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        final byte[] content = png(1, 2, 3);
+        Files.write(src.resolve("a.png"), content);
+        Files.write(Files.createDirectory(src.resolve("nested")).resolve("b.png"), content);
+        Files.write(src.resolve("c.txt"), new byte[]{1, 2, 3});
+
+        // when
+        final SaveResult result = storageService.save(src);
+
+        // then
+        assertEquals(2, result.getCopied().size());
+        assertTrue(result.getFailed().isEmpty());
+        assertThat(storageService.loadAll().map(Path::toString).collect(Collectors.toList()),
+                hasItems("a.png", "b.png"));
+        assertArrayEquals(content, Files.readAllBytes(storageService.loadAsResource("b.png").getFile().toPath()));
+    }
+
+    @Test
+    public void shouldDetectTypeOfFilesByContentRatherThanByExtension() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        Files.write(src.resolve("a.dat"), png(1));
+        Files.write(src.resolve("b.png"), "not a picture".getBytes("UTF-8"));
+        Files.write(src.resolve("c.png"), new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0});
+        Files.write(src.resolve("d.png"), new byte[0]);
+
+        // when
+        final SaveResult result = storageService.save(src);
+
+        // then
+        assertEquals(Collections.singletonList("a.dat"), result.getCopied());
+        assertEquals(1, result.getFound());
+        assertEquals(PictureType.PNG, storageService.loadMetadata("a.dat").getType());
+        assertEquals("image/png", storageService.loadMetadata("a.dat").getContentType());
+    }
+
+    @Test
+    public void shouldRecordSaveMetrics() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        Files.write(src.resolve("a.png"), png(1, 2, 3));
+        Files.write(src.resolve("b.png"), png(4, 5, 6));
+
+        // when
+        storageService.save(src, ChangeDetection.NONE);
+
+        // then
+        verify(metrics, times(2)).mark("storage.save.copied");
+        verify(metrics).time(eq("storage.save"), anyLong());
+    }
+
+    @Test
+    public void shouldSkipUnchangedFilesOnRepeatedSave() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        Files.write(src.resolve("a.png"), png(1, 2, 3));
+        Files.write(src.resolve("b.png"), png(1, 2, 3));
+        storageService.save(src, ChangeDetection.METADATA);
+
+        Files.write(src.resolve("b.png"), png(4, 5, 6, 7));
+        Files.write(src.resolve("c.png"), png(1));
+
+        // when
+        final SaveResult result = storageService.save(src, ChangeDetection.METADATA);
+
+        // then
+        assertThat(result.getCopied(), hasItems("b.png", "c.png"));
+        assertEquals(2, result.getCopied().size());
+        assertThat(result.getSkipped(), hasItems("a.png"));
+        assertEquals(1, result.getSkipped().size());
+    }
+
+    @Test
+    public void shouldSkipTouchedFilesWithSameContentWhenComparingContent() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        final Path file = Files.write(src.resolve("a.png"), png(1, 2, 3));
+        storageService.save(src, ChangeDetection.CONTENT);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60000));
+
+        // when
+        final SaveResult result = storageService.save(src, ChangeDetection.CONTENT);
+
+        // then
+        assertTrue(result.getCopied().isEmpty());
+        assertThat(result.getSkipped(), hasItems("a.png"));
+    }
+
+    @Test
+    public void shouldIndexFilesAlreadyPresentInStorageOnInit() throws Exception {
+        // given
+        final Path storage = Paths.get("build/test-storage");
+        Files.write(storage.resolve("existing.png"), new byte[]{1});
+
+        // when
+        storageServiceImpl.init();
+
+        // then
+        assertThat(storageService.loadAll().map(Path::toString).collect(Collectors.toList()),
+                hasItems("existing.png"));
+    }
+
+    @Test
+    public void shouldWalkPagesForwardAndBackByCursors() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        for (String name : new String[]{"a.png", "b.png", "c.png", "d.png", "e.png"}) {
+            Files.write(src.resolve(name), png(1));
+        }
+        storageService.save(src);
+
+        // when
+        final FilePage first = storageService.loadPage(null, null, 2);
+        final FilePage second = storageService.loadPage(first.getNextCursor(), null, 2);
+        final FilePage last = storageService.loadPage(second.getNextCursor(), null, 2);
+        final FilePage back = storageService.loadPage(null, second.getPreviousCursor(), 2);
+
+        // then
+        assertEquals(Arrays.asList("a.png", "b.png"), namesOf(first));
+        assertFalse(first.hasPrevious());
+        assertEquals(Arrays.asList("c.png", "d.png"), namesOf(second));
+        assertEquals(Collections.singletonList("e.png"), namesOf(last));
+        assertFalse(last.hasNext());
+        assertEquals(namesOf(first), namesOf(back));
+        assertEquals(5, last.getTotal());
+    }
+
+    @Test
+    public void shouldIndexDimensionsReadFromPictureHeader() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        ImageIO.write(new BufferedImage(30, 20, BufferedImage.TYPE_INT_RGB), "png", src.resolve("a.png").toFile());
+
+        // when
+        storageService.save(src);
+
+        // then
+        final StoredFile stored = storageService.loadMetadata("a.png");
+        assertEquals(30, stored.getWidth());
+        assertEquals(20, stored.getHeight());
+        assertEquals(8, stored.getBitDepth());
+    }
+
+    @Test
+    public void shouldWalkFilteredPagesInRequestedOrder() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "png", src.resolve("a.png").toFile());
+        ImageIO.write(new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB), "png", src.resolve("b.png").toFile());
+        ImageIO.write(new BufferedImage(20, 30, BufferedImage.TYPE_INT_RGB), "png", src.resolve("c.png").toFile());
+        storageService.save(src);
+
+        // when
+        final FilePage first = storageService.loadPage(file -> file.getWidth() >= 20, PictureOrder.parse("-height"),
+                null, 1);
+        final FilePage second = storageService.loadPage(file -> file.getWidth() >= 20, PictureOrder.parse("-height"),
+                first.getNextCursor(), 1);
+
+        // then
+        assertEquals(Collections.singletonList("c.png"), namesOf(first));
+        assertTrue(first.hasNext());
+        assertEquals(2, first.getTotal());
+        assertEquals(Collections.singletonList("b.png"), namesOf(second));
+        assertTrue(second.hasPrevious());
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    public void shouldResumeSortedPageAfterPictureNoLongerStored() throws Exception {
+        // given
+        final Path src = tf.newFolder().toPath();
+        ImageIO.write(new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB), "png", src.resolve("b.png").toFile());
+        ImageIO.write(new BufferedImage(20, 30, BufferedImage.TYPE_INT_RGB), "png", src.resolve("c.png").toFile());
+        storageService.save(src);
+        final PictureSort order = PictureOrder.parse("-height");
+        final String cursor = order.cursorOf(
+                new StoredFile("gone.png", 1, 1000L, "image/png", "gone.png", null, 10, 25, 8, PictureType.PNG));
+
+        // when
+        final FilePage page = storageService.loadPage(file -> true, order, cursor, 2);
+
+        // then
+        assertEquals(Collections.singletonList("b.png"), namesOf(page));
+        assertTrue(page.hasPrevious());
+        assertEquals("20:b.png", page.getPreviousCursor());
+        assertFalse(page.hasNext());
+    }
+
+    private static byte[] png(final int... content) {
+        final byte[] signature = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+        final byte[] file = Arrays.copyOf(signature, signature.length + content.length);
+        for (int i = 0; i < content.length; i++) {
+            file[signature.length + i] = (byte) content[i];
+        }
+        return file;
+    }
+
+    private static List<String> namesOf(final FilePage page) {
+        return page.getFiles().stream().map(StoredFile::getName).collect(Collectors.toList());
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(GalleryProperties.class)
+    static class Config {
+    }
 }
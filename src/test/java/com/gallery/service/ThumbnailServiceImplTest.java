@@ -0,0 +1,286 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.ContactSheet;
+import com.gallery.model.PictureType;
+import com.gallery.model.StoredFile;
+import com.gallery.util.StorageException;
+import com.gallery.util.StorageFileNotFoundException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class ThumbnailServiceImplTest {
+    private static final String TEST_FILE_NAME = "test-file.png";
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    private GalleryProperties properties;
+    private StorageService storageService;
+    private ThumbnailServiceImpl thumbnailService;
+
+    @Before
+    public void setUp() throws Exception {
+        this.properties = new GalleryProperties();
+        this.properties.getThumbnail().setLocation(tf.newFolder().getAbsolutePath());
+        this.properties.getThumbnail().setMaxSize(500);
+
+        this.storageService = mock(StorageService.class);
+        this.thumbnailService = new ThumbnailServiceImpl(this.storageService, this.properties);
+        given(storageService.loadMetadata(TEST_FILE_NAME))
+                .willReturn(new StoredFile(TEST_FILE_NAME, 1, 1000L, "image/png", TEST_FILE_NAME, null));
+    }
+
+    @Test
+    public void shouldResizePictureKeepingAspectRatio() throws Exception {
+        // given
+        final File original = tf.newFile(TEST_FILE_NAME);
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png", original);
+
+        given(storageService.loadAsResource(TEST_FILE_NAME))
+                .willReturn(new FileSystemResource(original));
+
+        // when
+        final Resource thumbnail = thumbnailService.loadThumbnail(TEST_FILE_NAME, 100, 100);
+
+        // then
+        final BufferedImage image = ImageIO.read(thumbnail.getFile());
+        assertEquals(100, image.getWidth());
+        assertEquals(50, image.getHeight());
+    }
+
+    @Test
+    public void shouldResizePictureInFormatRecognisedByContent() throws Exception {
+        // given
+        final File original = tf.newFile("a.dat");
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png", original);
+
+        given(storageService.loadAsResource("a.dat"))
+                .willReturn(new FileSystemResource(original));
+        given(storageService.loadMetadata("a.dat"))
+                .willReturn(new StoredFile("a.dat", 1, 1000L, "image/png", "a.dat", null, 400, 200, 8,
+                        PictureType.PNG));
+
+        // when
+        final Resource thumbnail = thumbnailService.loadThumbnail("a.dat", 100, 100);
+
+        // then
+        assertEquals("a.dat.png", thumbnail.getFilename());
+        assertEquals(100, ImageIO.read(thumbnail.getFile()).getWidth());
+    }
+
+    @Test
+    public void shouldNotUpscalePicture() throws Exception {
+        // given
+        final File original = tf.newFile(TEST_FILE_NAME);
+        ImageIO.write(new BufferedImage(40, 20, BufferedImage.TYPE_INT_ARGB), "png", original);
+
+        given(storageService.loadAsResource(TEST_FILE_NAME))
+                .willReturn(new FileSystemResource(original));
+
+        // when
+        final Resource thumbnail = thumbnailService.loadThumbnail(TEST_FILE_NAME, 100, 100);
+
+        // then
+        final BufferedImage image = ImageIO.read(thumbnail.getFile());
+        assertEquals(40, image.getWidth());
+        assertEquals(20, image.getHeight());
+    }
+
+    @Test
+    public void shouldNotResizeToSizeAboveLimit() throws Exception {
+        // given
+        thrown.expect(StorageException.class);
+        thrown.expectMessage("Thumbnail size must be within 1x1 and 500x500.");
+
+        // when
+        thumbnailService.loadThumbnail(TEST_FILE_NAME, 501, 100);
+    }
+
+    @Test
+    public void shouldCreateJpegVariantOfConfiguredWidth() throws Exception {
+        // given
+        final File original = tf.newFile(TEST_FILE_NAME);
+        ImageIO.write(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_ARGB), "png", original);
+
+        given(storageService.loadAsResource(TEST_FILE_NAME))
+                .willReturn(new FileSystemResource(original));
+
+        // when
+        final Resource variant = thumbnailService.loadVariant(TEST_FILE_NAME, 320, "jpg");
+
+        // then
+        assertEquals(Arrays.asList("jpg", "png"), thumbnailService.getVariantFormats(TEST_FILE_NAME));
+        assertEquals(TEST_FILE_NAME + ".jpg", variant.getFilename());
+        final BufferedImage image = ImageIO.read(variant.getFile());
+        assertEquals(320, image.getWidth());
+        assertEquals(160, image.getHeight());
+    }
+
+    @Test
+    public void shouldNotCreateVariantOfWidthNotConfigured() throws Exception {
+        // given
+        thrown.expect(StorageException.class);
+
+        // when
+        thumbnailService.loadVariant(TEST_FILE_NAME, 321, "png");
+    }
+
+    @Test
+    public void shouldComposeContactSheetOfCenteredThumbnails() throws Exception {
+        // given
+        final File wide = tf.newFile("wide.png");
+        ImageIO.write(this.filled(400, 200, Color.RED), "png", wide);
+        final File square = tf.newFile("square.png");
+        ImageIO.write(this.filled(100, 100, Color.BLUE), "png", square);
+
+        final StoredFile wideFile = new StoredFile("wide.png", 1, 1000L, "image/png", "wide.png", null);
+        final StoredFile squareFile = new StoredFile("square.png", 1, 1000L, "image/png", "square.png", null);
+
+        given(storageService.loadAsResource("wide.png"))
+                .willReturn(new FileSystemResource(wide));
+        given(storageService.loadAsResource("square.png"))
+                .willReturn(new FileSystemResource(square));
+        given(storageService.loadMetadata("wide.png"))
+                .willReturn(wideFile);
+        given(storageService.loadMetadata("square.png"))
+                .willReturn(squareFile);
+
+        // when
+        final List<ContactSheet> sheets = thumbnailService.describeContactSheets(
+                Arrays.asList(wideFile, squareFile), 100, 100);
+        final Resource sheet = thumbnailService.loadContactSheet(sheets.get(0).getKey(), 100, 100,
+                sheets.get(0).getPictures());
+
+        // then
+        assertEquals(1, sheets.size());
+        assertEquals(Arrays.asList("square.png", "wide.png"), sheets.get(0).getPictures());
+        assertEquals(100, sheets.get(0).getCells().get(1).getX());
+        final BufferedImage image = ImageIO.read(sheet.getFile());
+        assertEquals(200, image.getWidth());
+        assertEquals(100, image.getHeight());
+        assertTrue(new Color(image.getRGB(50, 50)).getBlue() > 200);
+        assertTrue(new Color(image.getRGB(150, 50)).getRed() > 200);
+        assertTrue(new Color(image.getRGB(150, 5)).getGreen() > 200);
+        assertTrue(new Color(image.getRGB(150, 50)).getBlue() < 60);
+    }
+
+    @Test
+    public void shouldComposeContactSheetAgainAfterRestart() throws Exception {
+        // given
+        final File original = tf.newFile(TEST_FILE_NAME);
+        ImageIO.write(this.filled(100, 100, Color.BLUE), "png", original);
+        final StoredFile file = new StoredFile(TEST_FILE_NAME, 1, 1000L, "image/png", TEST_FILE_NAME, "abc");
+
+        given(storageService.loadAsResource(TEST_FILE_NAME))
+                .willReturn(new FileSystemResource(original));
+        given(storageService.loadMetadata(TEST_FILE_NAME))
+                .willReturn(file);
+        final ContactSheet described = thumbnailService.describeContactSheets(
+                Collections.singletonList(file), 100, 100).get(0);
+        thumbnailService.loadContactSheet(described.getKey(), 100, 100, described.getPictures());
+
+        // when
+        thumbnailService.init();
+        final Resource sheet = thumbnailService.loadContactSheet(described.getKey(), 100, 100,
+                Collections.singletonList(TEST_FILE_NAME));
+
+        // then
+        assertTrue(sheet.exists());
+    }
+
+    @Test
+    public void shouldNotComposeContactSheetOfChangedPictures() throws Exception {
+        // given
+        final StoredFile file = new StoredFile(TEST_FILE_NAME, 1, 1000L, "image/png", TEST_FILE_NAME, "abc");
+        final ContactSheet described = thumbnailService.describeContactSheets(
+                Collections.singletonList(file), 100, 100).get(0);
+        given(storageService.loadMetadata(TEST_FILE_NAME))
+                .willReturn(new StoredFile(TEST_FILE_NAME, 1, 1000L, "image/png", TEST_FILE_NAME, "def"));
+        thrown.expect(StorageFileNotFoundException.class);
+
+        // when
+        thumbnailService.loadContactSheet(described.getKey(), 100, 100, described.getPictures());
+    }
+
+    @Test
+    public void shouldDescribeSheetOfNewKeyWhenPictureChanges() throws Exception {
+        // when
+        final ContactSheet before = thumbnailService.describeContactSheets(Collections.singletonList(
+                new StoredFile(TEST_FILE_NAME, 1, 1000L, "image/png", TEST_FILE_NAME, null)), 100, 100).get(0);
+        final ContactSheet after = thumbnailService.describeContactSheets(Collections.singletonList(
+                new StoredFile(TEST_FILE_NAME, 1, 2000L, "image/png", TEST_FILE_NAME, null)), 100, 100).get(0);
+
+        // then
+        assertNotEquals(before.getKey(), after.getKey());
+    }
+
+    @Test
+    public void shouldSplitFilesToSheetsWithinMaximumSize() throws Exception {
+        // given
+        properties.getThumbnail().setSheetMaxSize(250);
+        final List<StoredFile> files = Arrays.asList(
+                new StoredFile("a.png", 1, 1000L, "image/png", "a.png", null),
+                new StoredFile("b.png", 1, 1000L, "image/png", "b.png", null),
+                new StoredFile("c.png", 1, 1000L, "image/png", "c.png", null),
+                new StoredFile("d.png", 1, 1000L, "image/png", "d.png", null),
+                new StoredFile("e.png", 1, 1000L, "image/png", "e.png", null));
+
+        // when
+        final List<ContactSheet> sheets = thumbnailService.describeContactSheets(files, 100, 100);
+
+        // then
+        assertEquals(2, sheets.size());
+        assertEquals(200, sheets.get(0).getWidth());
+        assertEquals(200, sheets.get(0).getHeight());
+        assertEquals(Collections.singletonList("e.png"), sheets.get(1).getPictures());
+    }
+
+    @Test
+    public void shouldNotDescribeSheetOfLargeThumbnails() throws Exception {
+        // given
+        thrown.expect(StorageException.class);
+
+        // when
+        thumbnailService.describeContactSheets(Collections.singletonList(
+                new StoredFile(TEST_FILE_NAME, 1, 1000L, "image/png", TEST_FILE_NAME, null)), 300, 300);
+    }
+
+    @Test
+    public void shouldNotLoadContactSheetNotDescribed() throws Exception {
+        // given
+        thrown.expect(StorageFileNotFoundException.class);
+
+        // when
+        thumbnailService.loadContactSheet(String.format("%064d", 0), 100, 100, Collections.emptyList());
+    }
+
+    private BufferedImage filled(final int width, final int height, final Color color) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+}
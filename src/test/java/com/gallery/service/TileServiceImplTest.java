@@ -0,0 +1,96 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.StoredFile;
+import com.gallery.model.TilePyramid;
+import com.gallery.util.StorageFileNotFoundException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class TileServiceImplTest {
+    private static final String TEST_FILE_NAME = "test-file.png";
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    private StorageService storageService;
+    private TileServiceImpl tileService;
+
+    @Before
+    public void setUp() throws Exception {
+        final GalleryProperties properties = new GalleryProperties();
+        properties.getTiles().setLocation(tf.newFolder().getAbsolutePath());
+        properties.getTiles().setTileSize(254);
+        properties.getTiles().setOverlap(1);
+
+        this.storageService = mock(StorageService.class);
+        this.tileService = new TileServiceImpl(this.storageService, properties);
+
+        final File original = tf.newFile(TEST_FILE_NAME);
+        final BufferedImage image = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(300, 10, 0xff0000);
+        ImageIO.write(image, "png", original);
+        given(storageService.loadAsResource(TEST_FILE_NAME))
+                .willReturn(new FileSystemResource(original));
+        given(storageService.loadMetadata(TEST_FILE_NAME))
+                .willReturn(new StoredFile(TEST_FILE_NAME, 1, 1000L, "image/png", TEST_FILE_NAME, null));
+    }
+
+    @Test
+    public void shouldDescribePyramidFromPictureHeader() throws Exception {
+        // when
+        final TilePyramid pyramid = tileService.loadPyramid(TEST_FILE_NAME);
+
+        // then
+        assertEquals(1000, pyramid.getWidth());
+        assertEquals(500, pyramid.getHeight());
+        assertEquals(10, pyramid.getMaxLevel());
+        assertEquals("png", pyramid.getFormat());
+    }
+
+    @Test
+    public void shouldCutTileOfFullResolutionWithOverlap() throws Exception {
+        // when
+        final Resource tile = tileService.loadTile(TEST_FILE_NAME, 10, 1, 0, "png");
+
+        // then
+        final BufferedImage image = ImageIO.read(tile.getFile());
+        assertEquals(256, image.getWidth());
+        assertEquals(255, image.getHeight());
+        assertEquals(0xff0000, image.getRGB(300 - 253, 10) & 0xffffff);
+    }
+
+    @Test
+    public void shouldCutTileOfLowerLevelFromScaledRegion() throws Exception {
+        // when
+        final Resource tile = tileService.loadTile(TEST_FILE_NAME, 9, 1, 0, "png");
+
+        // then
+        final BufferedImage image = ImageIO.read(tile.getFile());
+        assertEquals(500 - 253, image.getWidth());
+        assertEquals(250, image.getHeight());
+    }
+
+    @Test
+    public void shouldNotCutTileOutsideOfPyramid() throws Exception {
+        // given
+        thrown.expect(StorageFileNotFoundException.class);
+        thrown.expectMessage("Could not find tile 10/4_0 of file " + TEST_FILE_NAME);
+
+        // when
+        tileService.loadTile(TEST_FILE_NAME, 10, 4, 0, "png");
+    }
+}
@@ -0,0 +1,131 @@
+package com.gallery.service;
+
+import com.gallery.config.GalleryProperties;
+import com.gallery.model.Upload;
+import com.gallery.util.StorageException;
+import com.gallery.util.UploadConflictException;
+import com.gallery.util.UploadTooLargeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class UploadServiceImplTest {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    private StorageServiceImpl storageService;
+    private UploadServiceImpl uploadService;
+
+    @Before
+    public void setUp() throws Exception {
+        final GalleryProperties properties = new GalleryProperties();
+        properties.getStorage().setLocation(tf.newFolder().getAbsolutePath());
+        properties.getUploads().setMaxSize(16);
+        this.storageService = new StorageServiceImpl(properties, new HotFileCache(properties),
+                mock(GalleryMetrics.class), new IoScheduler(properties, mock(GalleryMetrics.class)));
+        this.storageService.init();
+        this.uploadService = new UploadServiceImpl(this.storageService, properties);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.storageService.shutdown();
+    }
+
+    @Test
+    public void shouldStoreFileUploadedInParts() throws Exception {
+        // given
+        final Upload upload = uploadService.create("a.png", PNG_SIGNATURE.length);
+
+        // when
+        uploadService.write(upload.getId(), 0, new ByteArrayInputStream(PNG_SIGNATURE, 0, 2));
+        final boolean completeAfterFirstPart = upload.isComplete();
+        uploadService.write(upload.getId(), uploadService.get(upload.getId()).getOffset(),
+                new ByteArrayInputStream(PNG_SIGNATURE, 2, PNG_SIGNATURE.length - 2));
+
+        // then
+        assertFalse(completeAfterFirstPart);
+        assertTrue(upload.isComplete());
+        assertEquals(PNG_SIGNATURE.length, storageService.loadMetadata("a.png").getSize());
+        assertArrayEquals(PNG_SIGNATURE,
+                Files.readAllBytes(storageService.loadAsResource("a.png").getFile().toPath()));
+        assertFalse(Files.exists(upload.getStaged()));
+    }
+
+    @Test
+    public void shouldAcceptUploadByContentWhateverItsName() throws Exception {
+        // given
+        final Upload upload = uploadService.create("a.jpg", PNG_SIGNATURE.length);
+
+        // when
+        uploadService.write(upload.getId(), 0, new ByteArrayInputStream(PNG_SIGNATURE));
+
+        // then
+        assertTrue(upload.isComplete());
+        assertEquals("image/png", storageService.loadMetadata("a.jpg").getContentType());
+    }
+
+    @Test
+    public void shouldDropUploadOfContentNotAccepted() throws Exception {
+        // given
+        final Upload upload = uploadService.create("a.png", 3);
+        thrown.expect(StorageException.class);
+
+        // when
+        try {
+            uploadService.write(upload.getId(), 0, new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        } finally {
+            // then
+            assertFalse(Files.exists(upload.getStaged()));
+            assertFalse(storageService.loadAll().findAny().isPresent());
+        }
+    }
+
+    @Test
+    public void shouldRejectPartAtUnexpectedOffset() throws Exception {
+        // given
+        final Upload upload = uploadService.create("a.png", 5);
+        thrown.expect(UploadConflictException.class);
+
+        // when
+        uploadService.write(upload.getId(), 2, new ByteArrayInputStream(new byte[]{3}));
+    }
+
+    @Test
+    public void shouldRejectFilesAboveSizeLimit() throws Exception {
+        // given
+        thrown.expect(UploadTooLargeException.class);
+
+        // when
+        uploadService.create("a.png", 17);
+    }
+
+    @Test
+    public void shouldDropUploadLongerThanDeclared() throws Exception {
+        // given
+        final Upload upload = uploadService.create("a.png", 2);
+        thrown.expect(UploadTooLargeException.class);
+
+        // when
+        try {
+            uploadService.write(upload.getId(), 0, new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        } finally {
+            // then
+            assertFalse(Files.exists(upload.getStaged()));
+        }
+    }
+}